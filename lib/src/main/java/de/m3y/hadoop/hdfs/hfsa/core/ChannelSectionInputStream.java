@@ -0,0 +1,65 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file section using positional reads.
+ * <p>
+ * Positional reads do not modify the channel position, so several sections of the same
+ * file channel can be read concurrently, each by its own stream.
+ */
+class ChannelSectionInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long end;
+    private final byte[] singleByte = new byte[1];
+    private long position;
+
+    /**
+     * @param channel the file channel.
+     * @param offset  the section offset in the file.
+     * @param length  the section length.
+     */
+    ChannelSectionInputStream(FileChannel channel, long offset, long length) {
+        this.channel = channel;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(singleByte, 0, 1) < 0 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        final long remaining = end - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        final int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+        if (n < 0) {
+            throw new EOFException("Unexpected end of file at position " + position + ", expected section end at " + end);
+        }
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        final long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(end - position, Integer.MAX_VALUE);
+    }
+}
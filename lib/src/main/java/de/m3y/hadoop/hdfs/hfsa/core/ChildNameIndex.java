@@ -0,0 +1,105 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.util.Arrays;
+
+/**
+ * Index of the children of a large directory by name hash, for looking up a child by name
+ * without decoding the names of all children.
+ * <p>
+ * Stores per child the 32-bit hash of the raw UTF-8 name and the child position relative to the first child,
+ * packed into a single long and sorted. A lookup binary searches the hash, and verifies candidates by comparing
+ * the raw name bytes.
+ */
+final class ChildNameIndex {
+    /**
+     * Directories with more children get a name index, smaller ones get scanned.
+     */
+    static final int THRESHOLD = 256;
+
+    private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final int childrenStart;
+    // (hash << 32) | relative child position, sorted
+    private final long[] entries;
+
+    private ChildNameIndex(int childrenStart, long[] entries) {
+        this.childrenStart = childrenStart;
+        this.entries = entries;
+    }
+
+    /**
+     * Builds the index of a directory.
+     *
+     * @param fsImageData the FSImage data.
+     * @param dirIdx      the directory index.
+     * @return the name index.
+     */
+    static ChildNameIndex build(FsImageData fsImageData, int dirIdx) {
+        final DirectoryIndex directories = fsImageData.getDirectoryIndex();
+        final int start = directories.childrenStart(dirIdx);
+        final long[] entries = new long[directories.childrenEnd(dirIdx) - start];
+        final INodeView child = fsImageData.newINodeView();
+        for (int i = 0; i < entries.length; i++) {
+            final int hash = fsImageData.loadChildView(start + i, child).nameHash();
+            entries[i] = ((long) hash << 32) | i;
+        }
+        Arrays.sort(entries);
+        return new ChildNameIndex(start, entries);
+    }
+
+    /**
+     * Finds a child by name.
+     *
+     * @param fsImageData the FSImage data.
+     * @param name        the UTF-8 encoded name.
+     * @param view        the view to reuse, positioned on the found child.
+     * @return the child position, or a negative value if not found.
+     */
+    int find(FsImageData fsImageData, byte[] name, INodeView view) {
+        final int hash = hash(name);
+        int i = Arrays.binarySearch(entries, (long) hash << 32);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (; i < entries.length && (int) (entries[i] >> 32) == hash; i++) {
+            final int position = childrenStart + (int) entries[i];
+            if (fsImageData.loadChildView(position, view).nameEquals(name)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the FNV-1a hash.
+     *
+     * @param bytes the bytes.
+     * @return the hash.
+     */
+    static int hash(byte[] bytes) {
+        int hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash = hash(hash, b);
+        }
+        return hash;
+    }
+
+    /**
+     * Continues the FNV-1a hash with another byte.
+     *
+     * @param hash the hash so far.
+     * @param b    the byte.
+     * @return the new hash.
+     */
+    static int hash(int hash, byte b) {
+        return (hash ^ (b & 0xff)) * FNV_PRIME;
+    }
+
+    /**
+     * @return the initial hash value, for hashing incrementally.
+     */
+    static int initialHash() {
+        return FNV_OFFSET_BASIS;
+    }
+}
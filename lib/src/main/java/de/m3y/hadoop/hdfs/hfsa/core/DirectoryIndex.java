@@ -0,0 +1,251 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Directory tree in compressed sparse row (CSR) layout.
+ * <p>
+ * Directories are sorted by inode id, and the child inode ids of the i-th directory are stored in
+ * <code>children[childOffsets[i] .. childOffsets[i+1])</code> of a single flat array.
+ * Compared to a map of one array per directory, this avoids per directory object overhead
+ * and keeps children of sibling directories close together.
+ * <p>
+ * Optionally, children are stored as inode repository indexes instead of inode ids,
+ * see {@link #withChildIndexes(FsImageLoader.INodesRepository, boolean)}.
+ */
+final class DirectoryIndex {
+    private static final long[] NO_CHILDREN = new long[0];
+
+    // maps the directory inode id to the directory index
+    private final INodeIdIndex directoryIdIndex;
+    // offsets into children, per directory, plus total number of children
+    private final int[] childOffsets;
+    // child inode ids, or null if using child indexes
+    private final long[] children;
+    // child inode indexes, or null if using child inode ids
+    private final int[] childIndexes;
+    private final FsImageLoader.INodesRepository inodes;
+
+    private DirectoryIndex(long[] sortedDirectoryIds, int[] childOffsets, long[] children) {
+        this(INodeIdIndex.create(sortedDirectoryIds), childOffsets, children, null, null);
+    }
+
+    private DirectoryIndex(INodeIdIndex directoryIdIndex, int[] childOffsets, long[] children, int[] childIndexes,
+                           FsImageLoader.INodesRepository inodes) {
+        this.directoryIdIndex = directoryIdIndex;
+        this.childOffsets = childOffsets;
+        this.children = children;
+        this.childIndexes = childIndexes;
+        this.inodes = inodes;
+    }
+
+    /**
+     * Directory entries decoded from (a chunk of) the INODE_DIR section, in load order.
+     */
+    static final class Part {
+        final LongArrayList directoryIds = new LongArrayList();
+        final IntArrayList childCounts = new IntArrayList();
+        final LongArrayList children = new LongArrayList();
+
+        void add(long directoryId, long[] directoryChildren) {
+            directoryIds.add(directoryId);
+            childCounts.add(directoryChildren.length);
+            children.addElements(children.size(), directoryChildren);
+        }
+    }
+
+    /**
+     * Merges parts into a sorted directory index.
+     *
+     * @param parts    the parts, each directory contained at most once.
+     * @param parallel true, if sorting sparse directory ids in parallel.
+     * @return the index.
+     * @throws IllegalStateException if a directory is contained more than once.
+     */
+    static DirectoryIndex merge(List<Part> parts, boolean parallel) {
+        long numDirectories = 0;
+        long numChildren = 0;
+        for (Part part : parts) {
+            numDirectories += part.directoryIds.size();
+            numChildren += part.children.size();
+        }
+        if (numChildren > Integer.MAX_VALUE - 8 /* max array size */) {
+            throw new IllegalStateException("Number of children " + numChildren + " exceeds max array size");
+        }
+
+        // Concatenate directories, remembering source part, number and offset of children
+        final long[] directoryIds = new long[(int) numDirectories];
+        final int[] partIndex = new int[directoryIds.length];
+        final int[] childCounts = new int[directoryIds.length];
+        final int[] partOffsets = new int[directoryIds.length];
+        int pos = 0;
+        for (int p = 0; p < parts.size(); p++) {
+            final Part part = parts.get(p);
+            final int size = part.directoryIds.size();
+            part.directoryIds.getElements(0, directoryIds, pos, size);
+            part.childCounts.getElements(0, childCounts, pos, size);
+            int offset = 0;
+            for (int i = pos; i < pos + size; i++) {
+                partIndex[i] = p;
+                partOffsets[i] = offset;
+                offset += childCounts[i];
+            }
+            pos += size;
+        }
+
+        // Lay out children in directory id order
+        final int[] order = INodeIdSorter.sortedOrder(directoryIds, parallel);
+        final int[] childOffsets = new int[directoryIds.length + 1];
+        final long[] children = new long[(int) numChildren];
+        int childPos = 0;
+        for (int i = 0; i < order.length; i++) {
+            final int idx = order[i];
+            childOffsets[i] = childPos;
+            System.arraycopy(parts.get(partIndex[idx]).children.elements(), partOffsets[idx],
+                    children, childPos, childCounts[idx]);
+            childPos += childCounts[idx];
+        }
+        childOffsets[order.length] = childPos;
+        return new DirectoryIndex(INodeIdSorter.permute(directoryIds, order), childOffsets, children);
+    }
+
+    /**
+     * Creates an index from a map of directory inode id to child inode ids.
+     *
+     * @param directories the directories.
+     * @return the index.
+     */
+    static DirectoryIndex of(Long2ObjectMap<long[]> directories) {
+        final Part part = new Part();
+        for (Long2ObjectMap.Entry<long[]> entry : directories.long2ObjectEntrySet()) {
+            part.add(entry.getLongKey(), entry.getValue());
+        }
+        return merge(List.of(part), false);
+    }
+
+    /**
+     * Rewrites the children to inode indexes, which are positions in the inode repository sorted by inode id.
+     * <p>
+     * Halves the children storage and saves the inode id lookup for each visited child.
+     *
+     * @param inodes   the inode repository.
+     * @param parallel true, if rewriting in parallel.
+     * @return the new index, with child indexes.
+     */
+    DirectoryIndex withChildIndexes(FsImageLoader.INodesRepository inodes, boolean parallel) {
+        if (null != childIndexes) {
+            return this;
+        }
+        final int[] indexes = new int[children.length];
+        IntStream range = IntStream.range(0, children.length);
+        if (parallel) {
+            range = range.parallel();
+        }
+        range.forEach(i -> {
+            final int idx = inodes.indexOf(children[i]);
+            if (idx < 0) {
+                throw new IllegalStateException("Can not find child inode by id " + children[i]);
+            }
+            indexes[i] = idx;
+        });
+        return new DirectoryIndex(directoryIdIndex, childOffsets, null, indexes, inodes);
+    }
+
+    /**
+     * @return true, if children are stored as inode indexes.
+     */
+    boolean hasChildIndexes() {
+        return null != childIndexes;
+    }
+
+    /**
+     * Looks up the directory.
+     *
+     * @param directoryId the directory inode id.
+     * @return the directory index, or a negative value if directory has no entry.
+     */
+    int indexOf(long directoryId) {
+        return directoryIdIndex.indexOf(directoryId);
+    }
+
+    /**
+     * @param directoryIndex the directory index, see {@link #indexOf(long)}.
+     * @return the directory inode id.
+     */
+    long getDirectoryId(int directoryIndex) {
+        return directoryIdIndex.getInodeId(directoryIndex);
+    }
+
+    /**
+     * @param directoryIndex the directory index, see {@link #indexOf(long)}.
+     * @return the position of the first child.
+     */
+    int childrenStart(int directoryIndex) {
+        return childOffsets[directoryIndex];
+    }
+
+    /**
+     * @param directoryIndex the directory index, see {@link #indexOf(long)}.
+     * @return the position after the last child.
+     */
+    int childrenEnd(int directoryIndex) {
+        return childOffsets[directoryIndex + 1];
+    }
+
+    /**
+     * @param position the child position, within {@link #childrenStart(int)} and {@link #childrenEnd(int)}.
+     * @return the child inode id.
+     */
+    long getChildId(int position) {
+        return null != children ? children[position] : inodes.getInodeId(childIndexes[position]);
+    }
+
+    /**
+     * @param position the child position, within {@link #childrenStart(int)} and {@link #childrenEnd(int)}.
+     * @return the child inode index, if {@link #hasChildIndexes()}.
+     */
+    int getChildIndex(int position) {
+        return childIndexes[position];
+    }
+
+    /**
+     * Gets the number of children.
+     *
+     * @param directoryId the directory inode id.
+     * @return the number of children, or 0 if the directory has no entry.
+     */
+    int getNumChildren(long directoryId) {
+        final int idx = indexOf(directoryId);
+        return idx < 0 ? 0 : childOffsets[idx + 1] - childOffsets[idx];
+    }
+
+    /**
+     * Gets a copy of the child inode ids.
+     *
+     * @param directoryId the directory inode id.
+     * @return the child inode ids, or an empty array.
+     */
+    long[] getChildIds(long directoryId) {
+        final int idx = indexOf(directoryId);
+        if (idx < 0 || childOffsets[idx] == childOffsets[idx + 1]) {
+            return NO_CHILDREN;
+        }
+        final long[] childIds = new long[childOffsets[idx + 1] - childOffsets[idx]];
+        for (int i = 0; i < childIds.length; i++) {
+            childIds[i] = getChildId(childOffsets[idx] + i);
+        }
+        return childIds;
+    }
+
+    /**
+     * @return the number of directories with an entry.
+     */
+    int size() {
+        return directoryIdIndex.size();
+    }
+}
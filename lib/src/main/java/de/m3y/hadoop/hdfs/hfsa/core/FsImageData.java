@@ -2,9 +2,14 @@ package de.m3y.hadoop.hdfs.hfsa.core;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
@@ -24,15 +29,45 @@ public class FsImageData {
     public static final char PATH_SEPARATOR = '/';
 
     private final SerialNumberManager.StringTable stringTable;
+    private final SerialNames serialNames;
     private final FsImageLoader.INodesRepository inodes;
-    private final Long2ObjectLinkedOpenHashMap<long[]> dirMap;
+    private final DirectoryIndex directories;
+    private final INodeColumns columns;
+    // Built on demand, unless loaded
+    private volatile ParentIndex parentIndex;
+    // Name indexes of large directories, built on demand
+    private final Map<Integer, ChildNameIndex> nameIndexes = new ConcurrentHashMap<>();
 
     public FsImageData(SerialNumberManager.StringTable stringTable,
                        FsImageLoader.INodesRepository inodes,
                        Long2ObjectLinkedOpenHashMap<long[]> dirMap) {
+        this(stringTable, inodes, DirectoryIndex.of(dirMap));
+    }
+
+    FsImageData(SerialNumberManager.StringTable stringTable,
+                FsImageLoader.INodesRepository inodes,
+                DirectoryIndex directories) {
+        this(stringTable, inodes, directories, null);
+    }
+
+    FsImageData(SerialNumberManager.StringTable stringTable,
+                FsImageLoader.INodesRepository inodes,
+                DirectoryIndex directories,
+                INodeColumns columns) {
+        this(stringTable, inodes, directories, columns, null);
+    }
+
+    FsImageData(SerialNumberManager.StringTable stringTable,
+                FsImageLoader.INodesRepository inodes,
+                DirectoryIndex directories,
+                INodeColumns columns,
+                ParentIndex parentIndex) {
         this.stringTable = stringTable;
+        this.serialNames = SerialNames.of(stringTable);
         this.inodes = inodes;
-        this.dirMap = dirMap;
+        this.directories = directories;
+        this.columns = columns;
+        this.parentIndex = parentIndex;
     }
 
 
@@ -48,13 +83,14 @@ public class FsImageData {
         if (!FsUtil.isDirectory(nodeId)) {
             throw new IllegalArgumentException("Expected directory but <" + path + "> is of type " + nodeId.getType());
         }
-        long[] children = dirMap.get(nodeId.getId());
-        if (children.length == 0) {
+        final int dirIdx = directories.indexOf(nodeId.getId());
+        if (dirIdx < 0) {
             return Collections.emptyList();
         } else {
-            List<FsImageProto.INodeSection.INode> files = new ArrayList<>(children.length);
-            for (long cid : children) {
-                final FsImageProto.INodeSection.INode inode = inodes.getInode(cid);
+            final int end = directories.childrenEnd(dirIdx);
+            List<FsImageProto.INodeSection.INode> files = new ArrayList<>(end - directories.childrenStart(dirIdx));
+            for (int i = directories.childrenStart(dirIdx); i < end; i++) {
+                final FsImageProto.INodeSection.INode inode = getChildInode(i);
                 if (FsUtil.isFile(inode)) {
                     files.add(inode);
                 }
@@ -67,6 +103,234 @@ public class FsImageData {
         return inodes.getInode(id);
     }
 
+    /**
+     * Gets an inode by its index, avoiding the inode id lookup.
+     * <p>
+     * The index is the position of the inode in the repository sorted by inode id,
+     * ranging from 0 to the number of inodes - 1.
+     *
+     * @param index the inode index.
+     * @return the inode.
+     * @throws IOException on error.
+     */
+    public FsImageProto.INodeSection.INode getInodeByIndex(int index) throws IOException {
+        return inodes.getInodeByIndex(index);
+    }
+
+    /**
+     * Gets a view of an inode, decoding fields on demand instead of parsing the complete inode.
+     *
+     * @param id the inode id.
+     * @return a new view.
+     * @see #getINodeViewByIndex(int)
+     */
+    public INodeView getINodeView(long id) {
+        final int index = inodes.indexOf(id);
+        if (index < 0) {
+            throw new IllegalArgumentException("Can not find inode by id " + id);
+        }
+        return getINodeViewByIndex(index);
+    }
+
+    /**
+     * Gets a view of an inode by its index, see {@link #getInodeByIndex(int)}.
+     *
+     * @param index the inode index.
+     * @return a new view.
+     */
+    public INodeView getINodeViewByIndex(int index) {
+        return inodes.loadView(index, newINodeView());
+    }
+
+    /**
+     * @return a new, not yet positioned view, using the pre-computed inode columns if available.
+     */
+    INodeView newINodeView() {
+        return new INodeView(columns);
+    }
+
+    /**
+     * Checks if per-inode values got pre-computed at load time.
+     *
+     * @return true, if available.
+     * @see FsImageLoader.Builder#inodeColumns()
+     */
+    public boolean hasINodeColumns() {
+        return null != columns;
+    }
+
+    /**
+     * Gets the per-inode values pre-computed at load time, indexed by inode index.
+     * <p>
+     * Note: Views handed out by {@link FsVisitor.Builder#visit(FsImageData, INodeViewVisitor)} use these columns
+     * transparently.
+     *
+     * @return the columns.
+     * @throws IllegalStateException if not loaded, see {@link FsImageLoader.Builder#inodeColumns()}.
+     */
+    public INodeColumns getINodeColumns() {
+        if (null == columns) {
+            throw new IllegalStateException("INode columns not loaded, see FsImageLoader.Builder.inodeColumns()");
+        }
+        return columns;
+    }
+
+    /**
+     * Positions a view on an inode.
+     *
+     * @param index the inode index.
+     * @param view  the view to reuse.
+     * @return the view.
+     */
+    INodeView loadINodeView(int index, INodeView view) {
+        return inodes.loadView(index, view);
+    }
+
+    /**
+     * Positions a view on a child inode.
+     *
+     * @param position the child position in the directory index.
+     * @param view     the view to reuse.
+     * @return the view.
+     */
+    INodeView loadChildView(int position, INodeView view) {
+        if (directories.hasChildIndexes()) {
+            return inodes.loadView(directories.getChildIndex(position), view);
+        }
+        final long childId = directories.getChildId(position);
+        final int index = inodes.indexOf(childId);
+        if (index < 0) {
+            throw new IllegalArgumentException("Can not find inode by id " + childId);
+        }
+        return inodes.loadView(index, view);
+    }
+
+    /**
+     * Gets the number of loaded inodes, which are indexed from 0 to count (exclusive).
+     *
+     * @return the number of inodes.
+     */
+    public int getINodeCount() {
+        return inodes.getSize();
+    }
+
+    /**
+     * Scans all inodes sequentially by index, without traversing the directory tree.
+     *
+     * @param consumer the consumer.
+     * @see #scan(int, int, Consumer)
+     */
+    public void scan(Consumer<INodeView> consumer) {
+        scan(0, getINodeCount(), consumer);
+    }
+
+    /**
+     * Scans a range of inodes sequentially by index, without traversing the directory tree.
+     * <p>
+     * Much faster than visiting for statistics not depending on paths, as the inodes get read in storage order.
+     * Unlike visiting, the scan also covers any loaded inode not reachable from root,
+     * e.g. inodes only referenced by snapshots. Disjoint ranges can be scanned concurrently,
+     * see {@link FsVisitor.Builder#scan(FsImageData, INodeViewBatchVisitor)}.
+     * <p>
+     * The consumer receives one reused view, only valid during the callback.
+     *
+     * @param fromIndex the first inode index (inclusive).
+     * @param toIndex   the last inode index (exclusive).
+     * @param consumer  the consumer.
+     */
+    public void scan(int fromIndex, int toIndex, Consumer<INodeView> consumer) {
+        Objects.checkFromToIndex(fromIndex, toIndex, getINodeCount());
+        final INodeView view = newINodeView();
+        for (int i = fromIndex; i < toIndex; i++) {
+            consumer.accept(inodes.loadView(i, view));
+        }
+    }
+
+    /**
+     * Resolves the absolute path of an inode, without traversing the tree.
+     * <p>
+     * Uses the child to parent index, which gets built on first use unless loaded,
+     * see {@link FsImageLoader.Builder#parentIndex()}.
+     * Recently resolved directory paths are cached, so resolving paths of files in the same directory is cheap.
+     *
+     * @param inodeId the inode id.
+     * @return the path, or null if the inode is not reachable from root, e.g. only referenced by a snapshot.
+     * @throws IllegalArgumentException if no inode exists for given id.
+     */
+    public String getPath(long inodeId) {
+        final int index = inodes.indexOf(inodeId);
+        if (index < 0) {
+            throw new IllegalArgumentException("Can not find inode by id " + inodeId);
+        }
+        return getParentIndex().getPath(index);
+    }
+
+    /**
+     * Resolves the absolute path of an inode, e.g. for a view handed out by a scan or visit of this fsimage.
+     * <p>
+     * Streamed views, see {@link FsImageLoader#stream(java.io.RandomAccessFile, INodeViewBatchVisitor)},
+     * are not supported, as their index is the position within the INODE section.
+     *
+     * @param inode the inode view.
+     * @return the path, or null if the inode is not reachable from root.
+     * @throws IllegalArgumentException if the view index does not belong to the view inode in this fsimage.
+     * @see #getPath(long)
+     */
+    public String getPath(INodeView inode) {
+        final int index = inode.getIndex();
+        if (index < 0 || index >= inodes.getSize() || inodes.getInodeId(index) != inode.getId()) {
+            throw new IllegalArgumentException("Inode view index " + index + " does not match inode id "
+                    + inode.getId() + ", e.g. for a streamed view");
+        }
+        return getParentIndex().getPath(index);
+    }
+
+    ParentIndex getParentIndex() {
+        ParentIndex index = parentIndex;
+        if (null == index) {
+            synchronized (this) {
+                index = parentIndex;
+                if (null == index) {
+                    index = ParentIndex.build(directories, inodes, false);
+                    parentIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the inode index.
+     *
+     * @param id the inode id.
+     * @return the index, or a negative value if not found.
+     */
+    int getINodeIndex(long id) {
+        return inodes.indexOf(id);
+    }
+
+    /**
+     * Gets a child inode.
+     *
+     * @param position the child position in the directory index.
+     * @return the child inode.
+     * @throws IOException on error.
+     */
+    FsImageProto.INodeSection.INode getChildInode(int position) throws IOException {
+        return directories.hasChildIndexes()
+                ? inodes.getInodeByIndex(directories.getChildIndex(position))
+                : inodes.getInode(directories.getChildId(position));
+    }
+
+    /**
+     * Gets the mode used for looking up inodes by id, depending on the density of inode ids.
+     *
+     * @return the lookup mode.
+     */
+    public FsImageLoader.INodeLookupMode getINodeLookupMode() {
+        return inodes.getLookupMode();
+    }
+
     /**
      * Returns the INode of a directory, file or symlink for the specified path.
      *
@@ -75,46 +339,75 @@ public class FsImageData {
      * @throws IOException on error.
      */
     public FsImageProto.INodeSection.INode getINodeFromPath(String path) throws IOException {
+        return inodes.getInodeByIndex(lookupINodeIndex(path));
+    }
+
+    /**
+     * Resolves the inode index of a path, comparing raw names without parsing inodes.
+     * <p>
+     * Directories with many children get looked up by a name index, built on first lookup.
+     *
+     * @param path the absolute path.
+     * @return the inode index.
+     * @throws FileNotFoundException if the path does not exist.
+     */
+    private int lookupINodeIndex(String path) throws FileNotFoundException {
         if (!path.startsWith(ROOT_PATH)) {
             throw new IllegalArgumentException("Expected path <" + path + "> to start with " + PATH_SEPARATOR);
         }
         String normalizedPath = normalizePath(path);
-        long id = INodeId.ROOT_INODE_ID;
+        int index = inodes.indexOf(INodeId.ROOT_INODE_ID);
         // Root node?
         if (ROOT_PATH.equals(normalizedPath)) {
-            return inodes.getInode(id);
+            return index;
         }
 
         // Walk the hierarchy for each path segment
+        final INodeView child = newINodeView();
         int startIdx = 1;
         int endIdx = startIdx;
-        FsImageProto.INodeSection.INode node = null;
+        long id = INodeId.ROOT_INODE_ID;
         while (endIdx > 0) {
             endIdx = normalizedPath.indexOf(PATH_SEPARATOR, startIdx);
             String pathSegment = endIdx >= 0 ? normalizedPath.substring(startIdx, endIdx) /* dir */ : normalizedPath.substring(startIdx) /* file */;
 
-            final long[] children = dirMap.get(id);
-            if (children.length == 0) {
+            final int dirIdx = directories.indexOf(id);
+            if (dirIdx < 0) {
                 throw new FileNotFoundException(path);
             }
-
-            boolean found = false;
-            for (long cid : children) {
-                node = inodes.getInode(cid);
-                if (pathSegment.equals(node.getName().toStringUtf8())) {
-                    found = true;
-                    id = node.getId();
-                    break;
-                }
-            }
-            if (!found) {
+            if (findChild(dirIdx, pathSegment.getBytes(StandardCharsets.UTF_8), child) < 0) {
                 throw new FileNotFoundException(path);
             }
+            id = child.getId();
+            index = child.getIndex();
 
             startIdx = endIdx + 1;
         }
 
-        return node;
+        return index;
+    }
+
+    /**
+     * Finds a directory child by name.
+     *
+     * @param dirIdx the directory index.
+     * @param name   the UTF-8 encoded child name.
+     * @param view   the view to reuse, positioned on the found child.
+     * @return the child position, or a negative value if not found.
+     */
+    int findChild(int dirIdx, byte[] name, INodeView view) {
+        final int start = directories.childrenStart(dirIdx);
+        final int end = directories.childrenEnd(dirIdx);
+        if (end - start > ChildNameIndex.THRESHOLD) {
+            return nameIndexes.computeIfAbsent(dirIdx, idx -> ChildNameIndex.build(this, idx))
+                    .find(this, name, view);
+        }
+        for (int i = start; i < end; i++) {
+            if (loadChildView(i, view).nameEquals(name)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
 
@@ -156,17 +449,22 @@ public class FsImageData {
      */
     public List<String> getChildDirectories(String path, Predicate<FsImageProto.INodeSection.INode> filter) throws IOException {
         final long parentNodeId = lookupInodeId(path);
-        long[] children = dirMap.get(parentNodeId);
-        if (children.length == 0) {
+        final int dirIdx = directories.indexOf(parentNodeId);
+        if (dirIdx < 0) {
             return Collections.emptyList();
         } else {
             List<String> childPaths = new ArrayList<>();
             final String pathWithTrailingSlash = path.lastIndexOf(PATH_SEPARATOR) == path.length() - 1
                     ? path
                     : path + PATH_SEPARATOR;
-            for (long cid : children) {
-                final FsImageProto.INodeSection.INode inode = inodes.getInode(cid);
-                if (FsUtil.isDirectory(inode) && filter.test(inode)) {
+            final INodeView child = newINodeView();
+            for (int i = directories.childrenStart(dirIdx), end = directories.childrenEnd(dirIdx); i < end; i++) {
+                // Only parse directories
+                if (!loadChildView(i, child).isDirectory()) {
+                    continue;
+                }
+                final FsImageProto.INodeSection.INode inode = child.toINode();
+                if (filter.test(inode)) {
                     childPaths.add(pathWithTrailingSlash + inode.getName().toStringUtf8());
                 }
             }
@@ -195,7 +493,7 @@ public class FsImageData {
      * @return true, if child inodes exist.
      */
     public boolean hasChildren(long nodeId) {
-        return dirMap.get(nodeId).length > 0;
+        return directories.getNumChildren(nodeId) > 0;
     }
 
     /**
@@ -251,8 +549,7 @@ public class FsImageData {
      * @return the permission status.
      */
     public PermissionStatus getPermissionStatus(FsImageProto.INodeSection.INode inode) {
-        return FSImageFormatPBINode.Loader.loadPermission(
-                getPermission(inode), stringTable);
+        return getPermissionStatus(getPermission(inode));
     }
 
     /**
@@ -285,17 +582,81 @@ public class FsImageData {
      * @return the inode id.
      */
     private long lookupInodeId(String path) throws IOException {
-        return getINodeFromPath(path).getId();
+        return inodes.getInodeId(lookupINodeIndex(path));
     }
 
     /**
      * Loads the permission status
      *
      * @param permission the permission.
-     * @return the permission status.
+     * @return the permission status, with a null user or group name if the id is missing in the string table.
      */
     public PermissionStatus getPermissionStatus(long permission) {
-        return FSImageFormatPBINode.Loader.loadPermission(permission, stringTable);
+        return serialNames.toPermissionStatus(permission);
+    }
+
+    SerialNumberManager.StringTable getStringTable() {
+        return stringTable;
+    }
+
+    /**
+     * Extracts the user serial number of a numeric permission.
+     * <p>
+     * Aggregating by serial number avoids decoding the permission status and hashing user names per inode.
+     *
+     * @param permission the numeric permission.
+     * @return the user id.
+     * @see #getUserName(int)
+     * @see #getUserNames()
+     */
+    public static int getUserId(long permission) {
+        return SerialNames.getUserId(permission);
+    }
+
+    /**
+     * Extracts the group serial number of a numeric permission.
+     *
+     * @param permission the numeric permission.
+     * @return the group id.
+     * @see #getGroupName(int)
+     * @see #getGroupNames()
+     */
+    public static int getGroupId(long permission) {
+        return SerialNames.getGroupId(permission);
+    }
+
+    /**
+     * @param userId the user id, see {@link #getUserId(long)}.
+     * @return the user name, or null if the id is missing in the string table. Reports should fall back to the id.
+     */
+    public String getUserName(int userId) {
+        return serialNames.getUserName(userId);
+    }
+
+    /**
+     * @param groupId the group id, see {@link #getGroupId(long)}.
+     * @return the group name, or null if the id is missing in the string table. Reports should fall back to the id.
+     */
+    public String getGroupName(int groupId) {
+        return serialNames.getGroupName(groupId);
+    }
+
+    /**
+     * Gets the user names indexed by user id, e.g. for sizing per user arrays.
+     *
+     * @return a copy of the user names, containing null for unused ids.
+     */
+    public String[] getUserNames() {
+        return serialNames.getUserNames();
+    }
+
+    /**
+     * Gets the group names indexed by group id.
+     *
+     * @return a copy of the group names, containing null for unused ids.
+     */
+    public String[] getGroupNames() {
+        return serialNames.getGroupNames();
     }
 
     /**
@@ -305,17 +666,23 @@ public class FsImageData {
      * @return the number of children or 0 (e.g. when type FILE or SYMLINK).
      */
     public int getNumChildren(FsImageProto.INodeSection.INode inode) {
-        return dirMap.get(inode.getId()).length;
+        return directories.getNumChildren(inode.getId());
     }
 
     /**
      * Gets the inode IDs of the children, or empty array.
+     * <p>
+     * Note: Returns a copy, use {@link #getNumChildren(FsImageProto.INodeSection.INode)} if only the number is required.
      *
      * @param pathNodeId the node id of parent directory
      * @return array of child node IDs or empty array.
      */
     public long[] getChildINodeIds(long pathNodeId) {
-        return dirMap.get(pathNodeId);
+        return directories.getChildIds(pathNodeId);
+    }
+
+    DirectoryIndex getDirectoryIndex() {
+        return directories;
     }
 
     private static final Pattern DOUBLE_SLASH = Pattern.compile("//+");
@@ -326,7 +693,7 @@ public class FsImageData {
      * @param path the path to normalize
      * @return the normalized path
      */
-    static String normalizePath(String path) {
+    public static String normalizePath(String path) {
         String pathWithoutDoubleSlashes = DOUBLE_SLASH.matcher(path).replaceAll("/");
         final int length = pathWithoutDoubleSlashes.length();
         if (length > 1 && pathWithoutDoubleSlashes.endsWith("/")) {
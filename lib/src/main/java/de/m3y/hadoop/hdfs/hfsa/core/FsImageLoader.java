@@ -20,16 +20,27 @@ package de.m3y.hadoop.hdfs.hfsa.core;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 import java.nio.channels.FileChannel;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import com.google.common.primitives.ImmutableLongArray;
 import it.unimi.dsi.fastutil.io.FastBufferedInputStream;
-import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.server.namenode.FSImageFormatProtobuf.SectionName;
 import org.apache.hadoop.hdfs.server.namenode.FSImageUtil;
@@ -41,12 +52,10 @@ import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.thirdparty.protobuf.CodedInputStream;
 import org.apache.hadoop.thirdparty.protobuf.InvalidProtocolBufferException;
 import org.apache.hadoop.thirdparty.protobuf.Parser;
-import org.apache.hadoop.util.LimitInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.apache.hadoop.hdfs.server.namenode.SerialNumberManager.StringTable;
-import static org.apache.hadoop.hdfs.server.namenode.SerialNumberManager.newStringTable;
 
 /**
  * FSImageLoader loads fsimage and provides methods to return
@@ -69,9 +78,65 @@ import static org.apache.hadoop.hdfs.server.namenode.SerialNumberManager.newStri
 public class FsImageLoader {
     private static final Logger LOG = LoggerFactory.getLogger(FsImageLoader.class);
     private final Builder.LoadingStrategy loadingStrategy;
+    private final Builder.MappedLoadingStrategy mappedLoadingStrategy;
+    private final boolean parallelSections;
+    private final int parallelism;
+    private final boolean childIndexes;
+    private final boolean inodeColumns;
+    private final boolean parentIndex;
+    private final boolean pipelinedDecompression;
+    private final ForkJoinPool forkJoinPool;
+    private final int poolParallelism;
 
     public FsImageLoader(Builder.LoadingStrategy loadingStrategy) {
+        this(loadingStrategy, null, false, 1, false, false, false, false, null, 0);
+    }
+
+    FsImageLoader(Builder.LoadingStrategy loadingStrategy, Builder.MappedLoadingStrategy mappedLoadingStrategy) {
+        this(loadingStrategy, mappedLoadingStrategy, false, 1, false, false, false, false, null, 0);
+    }
+
+    /**
+     * @param loadingStrategy       the strategy for loading inodes from a stream.
+     * @param mappedLoadingStrategy the optional strategy for memory mapping inodes of uncompressed fsimages, or null.
+     * @param parallelSections      true, if independent sections should be loaded concurrently.
+     * @param parallelism           the max number of threads for loading sub-sections.
+     * @param childIndexes          true, if directory children should be rewritten to inode indexes after loading.
+     * @param inodeColumns          true, if per-inode values should be pre-computed after loading.
+     * @param parentIndex           true, if the child to parent index should be built after loading.
+     * @param pipelinedDecompression true, if compressed sections should be decompressed ahead on a separate thread.
+     * @param forkJoinPool          the pool for parallel sorting and processing, or null. Not shut down.
+     * @param poolParallelism       the parallelism of a pool created and shut down per load if no pool is given,
+     *                              or 0 for the common pool.
+     */
+    FsImageLoader(Builder.LoadingStrategy loadingStrategy, Builder.MappedLoadingStrategy mappedLoadingStrategy,
+                  boolean parallelSections, int parallelism, boolean childIndexes, boolean inodeColumns,
+                  boolean parentIndex, boolean pipelinedDecompression, ForkJoinPool forkJoinPool,
+                  int poolParallelism) {
         this.loadingStrategy = loadingStrategy;
+        this.mappedLoadingStrategy = mappedLoadingStrategy;
+        this.parallelSections = parallelSections;
+        this.parallelism = parallelism;
+        this.childIndexes = childIndexes;
+        this.inodeColumns = inodeColumns;
+        this.parentIndex = parentIndex;
+        this.pipelinedDecompression = pipelinedDecompression;
+        this.forkJoinPool = forkJoinPool;
+        this.poolParallelism = poolParallelism;
+    }
+
+    /**
+     * Lookup of inodes by inode id.
+     */
+    public enum INodeLookupMode {
+        /**
+         * Direct index by inode id, used for dense inode ids.
+         */
+        DIRECT,
+        /**
+         * Binary search over sorted inode ids.
+         */
+        BINARY_SEARCH
     }
 
     /**
@@ -87,16 +152,78 @@ public class FsImageLoader {
          */
         INode getInode(long inodeId) throws IOException;
 
+        /**
+         * Gets the index of an inode, which is its position in the repository sorted by inode id.
+         *
+         * @param inodeId the inode id.
+         * @return the index, or a negative value if not found.
+         */
+        int indexOf(long inodeId);
+
+        /**
+         * Gets an inode by index, avoiding the inode id lookup.
+         *
+         * @param index the index, see {@link #indexOf(long)}.
+         * @return the inode.
+         * @throws IOException on error.
+         */
+        INode getInodeByIndex(int index) throws IOException;
+
+        /**
+         * Gets the inode id by index.
+         *
+         * @param index the index, see {@link #indexOf(long)}.
+         * @return the inode id.
+         */
+        long getInodeId(int index);
+
+        /**
+         * Positions a view on an inode, without parsing the inode.
+         *
+         * @param index the index, see {@link #indexOf(long)}.
+         * @param view  the view to reuse.
+         * @return the view.
+         */
+        INodeView loadView(int index, INodeView view);
+
         /**
          * Gets the number of inodes in this repository.
          *
          * @return the number of inodes.
          */
         int getSize();
+
+        /**
+         * Gets the mode used for looking up inodes by id.
+         *
+         * @return the lookup mode.
+         */
+        INodeLookupMode getLookupMode();
     }
 
     interface INodesRepositoryBuilder {
         INodesRepository build(FsImageProto.INodeSection s, InputStream in, long length) throws IOException;
+
+        /**
+         * Builds the repository from INODE_SUB sub-sections, each containing inodes until end of stream.
+         * <p>
+         * Default implementation reads the sub-sections one after the other.
+         *
+         * @param s               the inode section header, already read from the first sub-section.
+         * @param subSections     the sub-section streams.
+         * @param length          the total length of all sub-sections.
+         * @param executorService the executor for decoding sub-sections concurrently.
+         * @return the repository.
+         * @throws IOException on error reading the sub-sections.
+         */
+        default INodesRepository build(FsImageProto.INodeSection s, List<InputStream> subSections, long length,
+                                       ExecutorService executorService) throws IOException {
+            return build(s, new SequenceInputStream(Collections.enumeration(subSections)), length);
+        }
+    }
+
+    interface MappedINodesRepositoryBuilder {
+        INodesRepository build(FileChannel channel, FileSummary.Section section) throws IOException;
     }
 
     /**
@@ -104,17 +231,15 @@ public class FsImageLoader {
      */
     static class PrimitiveArrayINodesRepository implements INodesRepository {
         private static final Parser<INode> INODE_PARSER = INode.parser();
-        private static final Comparator<byte[]> INODE_BYTES_COMPARATOR =
-                Comparator.comparingLong(PrimitiveArrayINodesRepository::extractNodeId);
         // byte representation of inodes, sorted by id
         private final byte[][] inodes;
-        // inodesIdxToIdCache contains the INode ID, to avoid redundant parsing when using fromINodeId
-        private final long[] inodesIdxToIdCache;
+        // inodeIdIndex maps the INode ID to the inodes index, to avoid redundant parsing when using fromINodeId
+        private final INodeIdIndex inodeIdIndex;
         private final INode rootInode;
 
-        PrimitiveArrayINodesRepository(byte[][] buf, long[] inodeOffsets) throws InvalidProtocolBufferException {
+        PrimitiveArrayINodesRepository(byte[][] buf, long[] inodeIds) throws InvalidProtocolBufferException {
             inodes = buf;
-            this.inodesIdxToIdCache = inodeOffsets;
+            this.inodeIdIndex = INodeIdIndex.create(inodeIds);
             rootInode = INODE_PARSER.parseFrom(getInodeAsBytes(INodeId.ROOT_INODE_ID));
         }
 
@@ -122,71 +247,103 @@ public class FsImageLoader {
             @Override
             public INodesRepository build(FsImageProto.INodeSection s, InputStream in, long length) throws IOException {
                 long start = System.currentTimeMillis();
-                final byte[][] inodes = new byte[(int) s.getNumInodes()][];
                 // Check for overflow
                 if (s.getNumInodes() > Integer.MAX_VALUE) {
                     throw new IOException("Number of inodes " + s.getNumInodes() + " exceeds Integer.MAX_VALUE");
                 }
                 int numInodes = (int) s.getNumInodes(); // Ok to downcast, checked above
+                final byte[][] inodes = new byte[numInodes][];
+                // Extract each inode id once, while reading
+                final long[] inodeIds = new long[numInodes];
                 for (int i = 0; i < numInodes; ++i) {
                     int size = CodedInputStream.readRawVarint32(in.read(), in);
                     byte[] bytes = new byte[size];
                     IOUtils.readFully(in, bytes, 0, size);
                     inodes[i] = bytes;
+                    inodeIds[i] = extractNodeId(bytes);
                 }
                 LOG.debug("Loaded {} inodes [{}ms] of length {} bytes",
                         numInodes, System.currentTimeMillis() - start, length);
-                start = System.currentTimeMillis();
-                sortINodes(inodes);
-                LOG.debug("Sorted {} inodes [{}ms]", inodes.length, System.currentTimeMillis() - start);
-                return new PrimitiveArrayINodesRepository(inodes, computeInodesIdxToIdCache(inodes));
+                return createSorted(inodes, inodeIds);
+            }
+
+            PrimitiveArrayINodesRepository createSorted(byte[][] inodes, long[] inodeIds)
+                    throws InvalidProtocolBufferException {
+                final long start = System.currentTimeMillis();
+                final int numInodes = inodes.length;
+                final int[] order = sortedOrder(inodeIds);
+                final byte[][] sortedInodes = new byte[numInodes][];
+                for (int i = 0; i < numInodes; i++) {
+                    sortedInodes[i] = inodes[order[i]];
+                }
+                LOG.debug("Sorted {} inodes [{}ms]", numInodes, System.currentTimeMillis() - start);
+                return new PrimitiveArrayINodesRepository(sortedInodes, INodeIdSorter.permute(inodeIds, order));
             }
 
-            protected void sortINodes(byte[][] inodes) {
-                // TODO: Cache INodes?
-                Arrays.sort(inodes, INODE_BYTES_COMPARATOR);
+            protected int[] sortedOrder(long[] inodeIds) {
+                return INodeIdSorter.sortedOrder(inodeIds, false);
             }
+        }
 
-            protected long[] computeInodesIdxToIdCache(byte[][] buf) {
+        static class ParallelBuilder extends Builder {
+            @Override
+            public INodesRepository build(FsImageProto.INodeSection s, List<InputStream> subSections, long length,
+                                          ExecutorService executorService) throws IOException {
                 long start = System.currentTimeMillis();
-                long[] cache = new long[buf.length];
-                // Compute inode idx to inode id cache
-                for (int i = 0; i < cache.length; i++) { // TODO: Parallel?
-                    cache[i] = extractNodeId(buf[i]);
+                final List<SubSectionINodes> parts = loadSubSections(subSections, executorService,
+                        SubSectionINodes::read);
+                final long numInodes = parts.stream().mapToLong(p -> p.inodeIds.size()).sum();
+                if (numInodes != s.getNumInodes()) {
+                    throw new IOException("Expected " + s.getNumInodes() + " inodes but sub-sections contain "
+                            + numInodes);
                 }
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Computed inodes idx to id cache[len={}] in {}ms",
-                            cache.length, System.currentTimeMillis() - start);
+                final byte[][] inodes = new byte[(int) numInodes][];
+                final long[] inodeIds = new long[(int) numInodes];
+                int pos = 0;
+                for (SubSectionINodes part : parts) {
+                    final int size = part.inodeIds.size();
+                    part.inodes.getElements(0, inodes, pos, size);
+                    part.inodeIds.getElements(0, inodeIds, pos, size);
+                    pos += size;
                 }
-                return cache;
+                LOG.debug("Loaded {} inodes [{}ms] of length {} bytes from {} sub-sections",
+                        numInodes, System.currentTimeMillis() - start, length, subSections.size());
+                return createSorted(inodes, inodeIds);
             }
-        }
 
-        static class ParallelBuilder extends Builder {
             @Override
-            protected void sortINodes(byte[][] inodes) {
-                Arrays.parallelSort(inodes, INODE_BYTES_COMPARATOR);
+            protected int[] sortedOrder(long[] inodeIds) {
+                return INodeIdSorter.sortedOrder(inodeIds, true);
             }
         }
 
+        /**
+         * Inodes of a single sub-section, in load order.
+         */
+        private static final class SubSectionINodes {
+            final ObjectArrayList<byte[]> inodes = new ObjectArrayList<>();
+            final LongArrayList inodeIds = new LongArrayList();
 
-        private byte[] getInodeAsBytes(final long inodeId) {
-            // Binary search over sorted node id array
-            int l = 0;
-            int r = inodes.length - 1;
-            while (l <= r) {
-                int mid = (l + r) >>> 1;
-                long currentInodeId = inodesIdxToIdCache[mid];
-
-                if (currentInodeId < inodeId) {
-                    l = mid + 1;
-                } else if (currentInodeId > inodeId) {
-                    r = mid - 1;
-                } else {
-                    return inodes[mid];
+            static SubSectionINodes read(InputStream in) throws IOException {
+                final SubSectionINodes part = new SubSectionINodes();
+                int firstByte;
+                while ((firstByte = in.read()) >= 0) {
+                    int size = CodedInputStream.readRawVarint32(firstByte, in);
+                    byte[] bytes = new byte[size];
+                    IOUtils.readFully(in, bytes, 0, size);
+                    part.inodes.add(bytes);
+                    part.inodeIds.add(extractNodeId(bytes));
                 }
+                return part;
+            }
+        }
+
+        private byte[] getInodeAsBytes(final long inodeId) {
+            final int idx = inodeIdIndex.indexOf(inodeId);
+            if (idx < 0) {
+                throw new IllegalArgumentException("Can not find inode by id " + inodeId);
             }
-            throw new IllegalArgumentException("Can not find inode by id " + inodeId);
+            return inodes[idx];
         }
 
         @Override
@@ -197,12 +354,41 @@ public class FsImageLoader {
             return INODE_PARSER.parseFrom(getInodeAsBytes(inodeId));
         }
 
+        @Override
+        public int indexOf(long inodeId) {
+            return inodeIdIndex.indexOf(inodeId);
+        }
+
+        @Override
+        public INode getInodeByIndex(int index) throws IOException {
+            if (INodeId.ROOT_INODE_ID == inodeIdIndex.getInodeId(index)) {
+                return rootInode;
+            }
+            return INODE_PARSER.parseFrom(inodes[index]);
+        }
+
+        @Override
+        public long getInodeId(int index) {
+            return inodeIdIndex.getInodeId(index);
+        }
+
+        @Override
+        public INodeView loadView(int index, INodeView view) {
+            final byte[] bytes = inodes[index];
+            return view.reset(index, bytes, 0, bytes.length);
+        }
+
         @Override
         public int getSize() {
             return inodes.length;
         }
 
-        private static long extractNodeId(byte[] buf) {
+        @Override
+        public INodeLookupMode getLookupMode() {
+            return inodeIdIndex.getLookupMode();
+        }
+
+        static long extractNodeId(byte[] buf) {
             // Pretty much of a hack, as Protobuf 2.5 does not partial parsing
             // In a micro benchmark, it is several times(!) faster than
             // FsImageProto.INodeSection.INode.parseFrom(o2).getId()
@@ -244,12 +430,70 @@ public class FsImageLoader {
                 sectionList.stream().map(FileSummary.Section::getName).collect(Collectors.joining(", ")));
     }
 
+    private static List<FileSummary.Section> findSubSections(
+            List<FileSummary.Section> sectionList, SectionName subSectionName) {
+        final List<FileSummary.Section> subSections = new ArrayList<>();
+        for (FileSummary.Section section : sectionList) {
+            if (subSectionName.name().equals(section.getName())) {
+                subSections.add(section);
+            }
+        }
+        return subSections;
+    }
+
+    @FunctionalInterface
+    interface SubSectionLoader<R> {
+        R load(InputStream in) throws IOException;
+    }
+
+    /**
+     * Loads sub-sections concurrently.
+     *
+     * @param subSections     the sub-section streams.
+     * @param executorService the executor.
+     * @param loader          loads a single sub-section.
+     * @param <R>             the sub-section result type.
+     * @return the results, in sub-section order.
+     * @throws IOException if loading any sub-section fails.
+     */
+    static <R> List<R> loadSubSections(List<InputStream> subSections, ExecutorService executorService,
+                                       SubSectionLoader<R> loader) throws IOException {
+        final List<Future<R>> futures = new ArrayList<>(subSections.size());
+        for (InputStream in : subSections) {
+            futures.add(executorService.submit(() -> loader.load(in)));
+        }
+        final List<R> results = new ArrayList<>(subSections.size());
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading sub-sections");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Can not load sub-section", e.getCause());
+        } finally {
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
     @FunctionalInterface
     private interface IOFunction<R> {
         R apply(InputStream t, long length) throws IOException;
     }
 
-    private <T> T loadSection(FileInputStream fin,
+    @FunctionalInterface
+    private interface SubSectionsFunction<R> {
+        R apply(List<InputStream> subSections, long length) throws IOException;
+    }
+
+    private <T> T loadSection(FileChannel channel,
                               String codec,
                               FileSummary.Section section,
                               IOFunction<T> f) {
@@ -257,22 +501,61 @@ public class FsImageLoader {
             LOG.debug("Loading fsimage section {} of {} bytes", section.getName(), section.getLength());
         }
         long startTime = System.currentTimeMillis();
-        try {
-            FileChannel fc = fin.getChannel();
-            fc.position(section.getOffset());
+        try (InputStream in = openSection(channel, codec, section)) {
+            final T apply = f.apply(in, section.getLength());
+            LOG.debug("Loaded fsimage section {} in {}ms", section.getName(), System.currentTimeMillis() - startTime);
+            return apply;
+        } catch (Throwable ex) { // Can be IOException or NoClassDefFoundError
+            throw new IllegalStateException("Can not load fsimage section " + section.getName(), ex);
+        }
+    }
 
-            // Min 8 KiB, max 1024 KiB buffer
-            final int bufferSize = Math.max(
-                    (int) Math.min(section.getLength(), 1024L * 1024L /* 1024KiB */),
-                    8 * 1024 /* 8KiB */);
-            InputStream is = FSImageUtil.wrapInputStreamForCompression(new Configuration(), codec,
-                    new FastBufferedInputStream(new LimitInputStream(fin, section.getLength()), bufferSize));
+    private InputStream openSection(FileChannel channel, String codec, FileSummary.Section section)
+            throws IOException {
+        // Min 8 KiB, max 1024 KiB buffer
+        final int bufferSize = Math.max(
+                (int) Math.min(section.getLength(), 1024L * 1024L /* 1024KiB */),
+                8 * 1024 /* 8KiB */);
+        final InputStream in = FSImageUtil.wrapInputStreamForCompression(new Configuration(), codec,
+                new FastBufferedInputStream(
+                        new ChannelSectionInputStream(channel, section.getOffset(), section.getLength()),
+                        bufferSize));
+        if (pipelinedDecompression && !codec.isEmpty()) {
+            return new PipelinedInputStream(in, PipelinedInputStream.DEFAULT_BUFFER_SIZE,
+                    PipelinedInputStream.DEFAULT_NUM_BUFFERS, "hfsa-decompress-" + section.getName());
+        }
+        return in;
+    }
 
-            final T apply = f.apply(is, section.getLength());
+    /**
+     * Loads a section split into sub-sections, such as INODE_SUB.
+     * <p>
+     * Every sub-section is compressed separately and gets read by its own stream.
+     */
+    private <T> T loadSectionFromSubSections(FileChannel channel,
+                                             String codec,
+                                             FileSummary.Section section,
+                                             List<FileSummary.Section> subSections,
+                                             SubSectionsFunction<T> f) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loading fsimage section {} of {} bytes in {} sub-sections",
+                    section.getName(), section.getLength(), subSections.size());
+        }
+        long startTime = System.currentTimeMillis();
+        final List<InputStream> streams = new ArrayList<>(subSections.size());
+        try {
+            for (FileSummary.Section subSection : subSections) {
+                streams.add(openSection(channel, codec, subSection));
+            }
+            final T apply = f.apply(streams, section.getLength());
             LOG.debug("Loaded fsimage section {} in {}ms", section.getName(), System.currentTimeMillis() - startTime);
             return apply;
         } catch (Throwable ex) { // Can be IOException or NoClassDefFoundError
             throw new IllegalStateException("Can not load fsimage section " + section.getName(), ex);
+        } finally {
+            for (InputStream in : streams) {
+                IOUtils.closeStream(in);
+            }
         }
     }
 
@@ -284,6 +567,39 @@ public class FsImageLoader {
      * @throws IOException if failed to load fsimage.
      */
     public FsImageData load(RandomAccessFile file) throws IOException {
+        if (null == forkJoinPool && 0 == poolParallelism) {
+            return doLoad(file, null);
+        }
+        final ForkJoinPool pool = null != forkJoinPool ? forkJoinPool : new ForkJoinPool(poolParallelism);
+        try {
+            if (ForkJoinTask.getPool() == pool) {
+                // Already running within the pool
+                return doLoad(file, pool);
+            }
+            // Parallel sorts and streams use the pool of the calling thread
+            return pool.submit(() -> doLoad(file, pool)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading fsimage");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("Can not load fsimage", e.getCause());
+        } finally {
+            if (pool != forkJoinPool) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private FsImageData doLoad(RandomAccessFile file, ForkJoinPool pool) throws IOException {
         if (!FSImageUtil.checkFileFormat(file)) {
             throw new IOException("Unrecognized FSImage format (no magic header?)");
         }
@@ -291,52 +607,239 @@ public class FsImageLoader {
         FileSummary summary = FSImageUtil.loadSummary(file);
         String codec = summary.getCodec();
         try (FileInputStream fin = new FileInputStream(file.getFD())) {
+            final FileChannel channel = fin.getChannel();
             // Section list only
             final List<FileSummary.Section> sectionsList = summary.getSectionsList();
+            final FileSummary.Section sectionStringTable = findSectionByName(sectionsList, SectionName.STRING_TABLE);
+            final FileSummary.Section sectionInodeRef = findSectionByName(sectionsList, SectionName.INODE_REFERENCE);
+            final FileSummary.Section sectionInode = findSectionByName(sectionsList, SectionName.INODE);
+            final FileSummary.Section sectionInodeDir = findSectionByName(sectionsList, SectionName.INODE_DIR);
+            // Sub-sections, if fsimage got saved with dfs.image.parallel.save
+            final List<FileSummary.Section> inodeSubSections = findSubSections(sectionsList, SectionName.INODE_SUB);
+            final List<FileSummary.Section> inodeDirSubSections =
+                    findSubSections(sectionsList, SectionName.INODE_DIR_SUB);
 
-            FileSummary.Section sectionStringTable = findSectionByName(sectionsList, SectionName.STRING_TABLE);
-            StringTable stringTable = loadSection(fin, codec, sectionStringTable, this::loadStringTable);
+            if (parallelSections) {
+                return loadParallel(channel, codec, sectionStringTable, sectionInodeRef,
+                        sectionInode, inodeSubSections, sectionInodeDir, inodeDirSubSections, pool);
+            }
 
-            FileSummary.Section sectionInodeRef = findSectionByName(sectionsList, SectionName.INODE_REFERENCE);
-            ImmutableLongArray refIdList = loadSection(fin, codec, sectionInodeRef, this::loadINodeReferenceSection);
+            StringTable stringTable = loadSection(channel, codec, sectionStringTable, this::loadStringTable);
+            ImmutableLongArray refIdList = loadSection(channel, codec, sectionInodeRef,
+                    this::loadINodeReferenceSection);
+            INodesRepository inodes = loadINodes(channel, codec, sectionInode, inodeSubSections); // SLOW!!!
+            DirectoryIndex directories =
+                    loadINodeDirs(channel, codec, sectionInodeDir, inodeDirSubSections, refIdList); // SLOW!!!
 
-            FileSummary.Section sectionInode = findSectionByName(sectionsList, SectionName.INODE);
-            INodesRepository inodes = loadSection(fin, codec, sectionInode, this::loadINodeSection); // SLOW!!!
+            return createFsImageData(stringTable, inodes, directories);
+        }
+    }
 
-            FileSummary.Section sectionInodeDir = findSectionByName(sectionsList, SectionName.INODE_DIR);
+    /**
+     * Streams all inodes of an fsimage once to the visitor, without loading the fsimage.
+     * <p>
+     * Only reads the STRING_TABLE and INODE sections, and drops every inode after its batch got visited.
+     * So heap usage does not grow with the fsimage size, e.g. for computing per user or group totals of huge
+     * fsimages. As for {@link FsVisitor.Builder#scan(FsImageData, INodeViewBatchVisitor)}, batches contain all
+     * inodes including inodes only referenced by snapshots, without paths.
+     * <p>
+     * Visits chunks of inodes concurrently if loading in parallel, see {@link Builder#parallel()}.
+     * Views are not backed by inode columns, and their index is the position within the INODE section.
+     *
+     * @param file    the fsimage file.
+     * @param visitor the visitor.
+     * @param <A>     the accumulator type.
+     * @return the merged accumulator, and the names for resolving user and group ids.
+     * @throws IOException if failed to read the fsimage.
+     */
+    public <A> StreamedFsImage<A> stream(RandomAccessFile file, INodeViewBatchVisitor<A> visitor) throws IOException {
+        if (!FSImageUtil.checkFileFormat(file)) {
+            throw new IOException("Unrecognized FSImage format (no magic header?)");
+        }
 
-            Long2ObjectLinkedOpenHashMap<long[]> dirMap = loadSection(fin, codec, sectionInodeDir,
-                    (InputStream is, long length) -> loadINodeDirectorySection(is, refIdList)); // SLOW!!!
+        FileSummary summary = FSImageUtil.loadSummary(file);
+        String codec = summary.getCodec();
+        try (FileInputStream fin = new FileInputStream(file.getFD())) {
+            final FileChannel channel = fin.getChannel();
+            final List<FileSummary.Section> sectionsList = summary.getSectionsList();
+            final FileSummary.Section sectionStringTable = findSectionByName(sectionsList, SectionName.STRING_TABLE);
+            final FileSummary.Section sectionInode = findSectionByName(sectionsList, SectionName.INODE);
+            final List<FileSummary.Section> inodeSubSections = findSubSections(sectionsList, SectionName.INODE_SUB);
 
-            return new FsImageData(stringTable, inodes, dirMap);
+            final SerialNames serialNames = SerialNames.of(
+                    loadSection(channel, codec, sectionStringTable, this::loadStringTable));
+            if (inodeSubSections.isEmpty()) {
+                return loadSection(channel, codec, sectionInode,
+                        (InputStream in, long length) -> streamINodes(List.of(in), visitor, serialNames));
+            }
+            return loadSectionFromSubSections(channel, codec, sectionInode, inodeSubSections,
+                    (List<InputStream> subSections, long length) -> streamINodes(subSections, visitor, serialNames));
         }
     }
 
-    private Long2ObjectLinkedOpenHashMap<long[]> loadINodeDirectorySection(InputStream in, ImmutableLongArray refIdList)
-            throws IOException {
-        Long2ObjectLinkedOpenHashMap<long[]> dirs = new Long2ObjectLinkedOpenHashMap<>(512 * 1024 /* 512K */);
-        dirs.defaultReturnValue(new long[0] /* Empty array, to avoid null */);
-        while (true) {
-            FsImageProto.INodeDirectorySection.DirEntry e =
-                    FsImageProto.INodeDirectorySection.DirEntry.parseDelimitedFrom(in);
-            // note that in is a LimitedInputStream
-            if (e == null) {
-                break;
+    private <A> StreamedFsImage<A> streamINodes(List<InputStream> subSections, INodeViewBatchVisitor<A> visitor,
+                                                SerialNames serialNames) throws IOException {
+        long start = System.currentTimeMillis();
+        final InputStream in = new SequenceInputStream(Collections.enumeration(subSections));
+        // First (sub-)section starts with the section header
+        final FsImageProto.INodeSection s = FsImageProto.INodeSection.parseDelimitedFrom(in);
+        final A result;
+        if (parallelism <= 1) {
+            result = INodeSectionStreamer.stream(in, s.getNumInodes(), visitor, null, 0);
+        } else {
+            final ExecutorService executorService = newExecutor(parallelism);
+            try {
+                result = INodeSectionStreamer.stream(in, s.getNumInodes(), visitor, executorService,
+                        2 * parallelism);
+            } finally {
+                executorService.shutdownNow();
             }
+        }
+        LOG.debug("Streamed {} inodes [{}ms]", s.getNumInodes(), System.currentTimeMillis() - start);
+        return new StreamedFsImage<>(result, s.getNumInodes(), serialNames);
+    }
+
+    /**
+     * Loads STRING_TABLE, INODE_REFERENCE and INODE sections concurrently, and INODE_DIR section
+     * as soon as the inode references are available.
+     * <p>
+     * Every section is read by its own stream using positional reads, so the sections do not share a file position.
+     *
+     * @param pool the pool for loading the sections, or null for a temporary pool.
+     */
+    private FsImageData loadParallel(FileChannel channel, String codec,
+                                     FileSummary.Section sectionStringTable,
+                                     FileSummary.Section sectionInodeRef,
+                                     FileSummary.Section sectionInode,
+                                     List<FileSummary.Section> inodeSubSections,
+                                     FileSummary.Section sectionInodeDir,
+                                     List<FileSummary.Section> inodeDirSubSections,
+                                     ForkJoinPool pool) {
+        long startTime = System.currentTimeMillis();
+        final ExecutorService executorService = null != pool ? pool : Executors.newFixedThreadPool(3);
+        try {
+            final CompletableFuture<StringTable> stringTableFuture = CompletableFuture.supplyAsync(
+                    () -> loadSection(channel, codec, sectionStringTable, this::loadStringTable), executorService);
+            final CompletableFuture<DirectoryIndex> directoriesFuture = CompletableFuture.supplyAsync(
+                    () -> loadSection(channel, codec, sectionInodeRef, this::loadINodeReferenceSection),
+                    executorService
+            ).thenApplyAsync(refIdList -> loadINodeDirs(channel, codec, sectionInodeDir, inodeDirSubSections,
+                    refIdList), executorService);
+            final CompletableFuture<INodesRepository> inodesFuture = CompletableFuture.supplyAsync(
+                    () -> loadINodes(channel, codec, sectionInode, inodeSubSections), executorService);
 
-            final int childrenCount = e.getChildrenCount();
-            final long[] l = new long[childrenCount + e.getRefChildrenCount()];
-            for (int i = 0; i < childrenCount; ++i) {
-                l[i] = e.getChildren(i);
+            final FsImageData fsImageData = createFsImageData(stringTableFuture.join(), inodesFuture.join(),
+                    directoriesFuture.join());
+            LOG.debug("Loaded fsimage sections in parallel [{}ms]", System.currentTimeMillis() - startTime);
+            return fsImageData;
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
             }
-            for (int i = childrenCount; i < l.length; i++) {
-                int refId = e.getRefChildren(i - childrenCount);
-                l[i] = refIdList.get(refId);
+            throw ex;
+        } finally {
+            if (executorService != pool) {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    private FsImageData createFsImageData(StringTable stringTable, INodesRepository inodes,
+                                          DirectoryIndex directories) {
+        if (childIndexes) {
+            long start = System.currentTimeMillis();
+            directories = directories.withChildIndexes(inodes, parallelism > 1);
+            LOG.debug("Rewrote directory children to inode indexes [{}ms]", System.currentTimeMillis() - start);
+        }
+        INodeColumns columns = null;
+        if (inodeColumns) {
+            long start = System.currentTimeMillis();
+            columns = INodeColumns.build(inodes, parallelism > 1);
+            LOG.debug("Computed inode columns for {} inodes [{}ms]", columns.size(), System.currentTimeMillis() - start);
+        }
+        ParentIndex parents = null;
+        if (parentIndex) {
+            long start = System.currentTimeMillis();
+            parents = ParentIndex.build(directories, inodes, parallelism > 1);
+            LOG.debug("Built parent index [{}ms]", System.currentTimeMillis() - start);
+        }
+        return new FsImageData(stringTable, inodes, directories, columns, parents);
+    }
+
+    private INodesRepository loadINodes(FileChannel channel, String codec, FileSummary.Section sectionInode,
+                                        List<FileSummary.Section> inodeSubSections) {
+        final INodesRepository inodes;
+        if (null != mappedLoadingStrategy && codec.isEmpty()) {
+            // Uncompressed sub-sections are contiguous within the INODE section
+            inodes = loadMappedINodeSection(channel, sectionInode);
+        } else if (!inodeSubSections.isEmpty()) {
+            inodes = loadSectionFromSubSections(channel, codec, sectionInode, inodeSubSections,
+                    this::loadINodeSubSections);
+        } else {
+            inodes = loadSection(channel, codec, sectionInode, this::loadINodeSection);
+        }
+        LOG.debug("Using {} lookup for {} inodes", inodes.getLookupMode(), inodes.getSize());
+        return inodes;
+    }
+
+    private DirectoryIndex loadINodeDirs(FileChannel channel, String codec,
+                                         FileSummary.Section sectionInodeDir,
+                                         List<FileSummary.Section> inodeDirSubSections,
+                                         ImmutableLongArray refIdList) {
+        if (inodeDirSubSections.isEmpty()) {
+            return loadSection(channel, codec, sectionInodeDir,
+                    (InputStream is, long length) -> loadINodeDirectorySection(is, refIdList));
+        }
+        return loadSectionFromSubSections(channel, codec, sectionInodeDir, inodeDirSubSections,
+                (List<InputStream> subSections, long length) -> loadINodeDirectorySubSections(subSections, refIdList));
+    }
+
+    private DirectoryIndex loadINodeDirectorySubSections(List<InputStream> subSections, ImmutableLongArray refIdList)
+            throws IOException {
+        if (parallelism <= 1) {
+            return loadINodeDirectorySection(new SequenceInputStream(Collections.enumeration(subSections)), refIdList);
+        }
+        final ExecutorService executorService = newExecutor(subSections.size());
+        try {
+            // Sub-sections already decode concurrently, so each decodes its chunks on its own thread
+            final List<DirectoryIndex.Part> parts = new ArrayList<>();
+            for (List<DirectoryIndex.Part> subSectionParts : loadSubSections(subSections, executorService,
+                    in -> INodeDirectorySectionDecoder.read(in, refIdList, null, 0))) {
+                parts.addAll(subSectionParts);
             }
-            dirs.put(e.getParent(), l);
+            return mergeDirectories(parts);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private ExecutorService newExecutor(int maxThreads) {
+        return Executors.newFixedThreadPool(Math.min(parallelism, maxThreads));
+    }
+
+    private DirectoryIndex loadINodeDirectorySection(InputStream in, ImmutableLongArray refIdList)
+            throws IOException {
+        if (parallelism <= 1) {
+            return mergeDirectories(INodeDirectorySectionDecoder.read(in, refIdList, null, 0));
         }
-        LOG.debug("Loaded {} directories", dirs.size());
-        return dirs;
+        final ExecutorService executorService = newExecutor(parallelism);
+        try {
+            return mergeDirectories(
+                    INodeDirectorySectionDecoder.read(in, refIdList, executorService, 2 * parallelism));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private DirectoryIndex mergeDirectories(List<DirectoryIndex.Part> parts) {
+        long start = System.currentTimeMillis();
+        final DirectoryIndex directories = DirectoryIndex.merge(parts, parallelism > 1);
+        LOG.debug("Loaded {} directories [{}ms merging {} parts]", directories.size(),
+                System.currentTimeMillis() - start, parts.size());
+        return directories;
     }
 
     private ImmutableLongArray loadINodeReferenceSection(InputStream in, long length) throws IOException {
@@ -362,33 +865,225 @@ public class FsImageLoader {
         return this.loadingStrategy.createInodeRepositoryBuilder().build(s, in, length);
     }
 
+    private INodesRepository loadINodeSubSections(List<InputStream> subSections, long length) throws IOException {
+        // First sub-section starts with the section header
+        FsImageProto.INodeSection s = FsImageProto.INodeSection.parseDelimitedFrom(subSections.get(0));
+        final ExecutorService executorService = newExecutor(subSections.size());
+        try {
+            return this.loadingStrategy.createInodeRepositoryBuilder().build(s, subSections, length, executorService);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private INodesRepository loadMappedINodeSection(FileChannel channel, FileSummary.Section section) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Mapping fsimage section {} of {} bytes", section.getName(), section.getLength());
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            final INodesRepository inodes =
+                    mappedLoadingStrategy.createMappedInodeRepositoryBuilder().build(channel, section);
+            LOG.debug("Mapped fsimage section {} in {}ms", section.getName(), System.currentTimeMillis() - startTime);
+            return inodes;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not map fsimage section " + section.getName(), ex);
+        }
+    }
+
     StringTable loadStringTable(InputStream in, long length) throws IOException {
-        FsImageProto.StringTableSection s = FsImageProto.StringTableSection.parseDelimitedFrom(in);
-        StringTable stringTable =
-                newStringTable(s.getNumEntry(), s.getMaskBits());
-        for (int i = 0; i < s.getNumEntry(); ++i) {
-            FsImageProto.StringTableSection.Entry e = FsImageProto
-                    .StringTableSection.Entry.parseDelimitedFrom(in);
-            stringTable.put(e.getId(), e.getStr());
-        }
-        LOG.debug("Loaded {} strings into string table of length {} bytes", s.getNumEntry(), length);
+        final StringTable stringTable = StringTableSectionDecoder.read(in);
+        LOG.debug("Loaded {} strings into string table of length {} bytes", stringTable.size(), length);
         return stringTable;
     }
 
     public static class Builder {
-        private LoadingStrategy loadingStrategy = PrimitiveArrayINodesRepository.Builder::new;
+        private boolean parallel;
+        private boolean memoryMapped;
+        private boolean offHeap;
+        private boolean parallelSections;
+        private boolean childIndexes;
+        private boolean inodeColumns;
+        private boolean parentIndex;
+        private boolean pipelinedDecompression;
+        private int parallelism;
+        private ForkJoinPool forkJoinPool;
 
         interface LoadingStrategy {
             INodesRepositoryBuilder createInodeRepositoryBuilder();
         }
 
+        interface MappedLoadingStrategy {
+            MappedINodesRepositoryBuilder createMappedInodeRepositoryBuilder();
+        }
+
+        /**
+         * Uses multiple threads for sorting inodes and for decoding INODE_SUB and INODE_DIR_SUB sub-sections,
+         * if the fsimage contains sub-sections.
+         *
+         * @return this builder.
+         */
         public Builder parallel() {
-            this.loadingStrategy = PrimitiveArrayINodesRepository.ParallelBuilder::new;
+            this.parallel = true;
+            return this;
+        }
+
+        /**
+         * Loads in parallel, see {@link #parallel()}, limited to the given number of threads.
+         * <p>
+         * Uses a dedicated fork/join pool of given parallelism instead of the JVM wide common pool,
+         * created and shut down per load.
+         *
+         * @param parallelism the number of threads.
+         * @return this builder.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Expected parallelism > 0, but got " + parallelism);
+            }
+            this.parallel = true;
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Loads in parallel, see {@link #parallel()}, using the given pool instead of the JVM wide common pool.
+         * <p>
+         * Decoding of sub-sections is limited to the parallelism of the pool. The pool is not shut down.
+         *
+         * @param forkJoinPool the pool.
+         * @return this builder.
+         */
+        public Builder forkJoinPool(ForkJoinPool forkJoinPool) {
+            if (null == forkJoinPool) {
+                throw new IllegalArgumentException("Expected a fork/join pool, but got null");
+            }
+            this.parallel = true;
+            this.forkJoinPool = forkJoinPool;
+            return this;
+        }
+
+        /**
+         * Memory maps the INODE section instead of copying every inode onto the heap.
+         * <p>
+         * Requires way less heap, as only inode ids and offsets are kept.
+         * Only applies to uncompressed fsimages - compressed fsimages are still loaded onto the heap.
+         *
+         * @return this builder.
+         */
+        public Builder memoryMapped() {
+            this.memoryMapped = true;
+            return this;
+        }
+
+        /**
+         * Stores the raw inodes in large off-heap segments instead of one heap byte array per inode.
+         * <p>
+         * Reduces heap usage and GC overhead for large fsimages.
+         * Note: Requires sufficient direct memory, see -XX:MaxDirectMemorySize .
+         *
+         * @return this builder.
+         */
+        public Builder offHeap() {
+            this.offHeap = true;
+            return this;
+        }
+
+        /**
+         * Loads the STRING_TABLE, INODE_REFERENCE and INODE sections concurrently,
+         * followed by the INODE_DIR section once the inode references are loaded.
+         * <p>
+         * Each section gets read by its own stream, reducing wall-clock load time on multicore machines.
+         *
+         * @return this builder.
+         */
+        public Builder parallelSections() {
+            this.parallelSections = true;
+            return this;
+        }
+
+        /**
+         * Rewrites directory children from inode ids to inode indexes after loading.
+         * <p>
+         * Halves the memory of directory children and saves the inode id lookup when visiting children.
+         *
+         * @return this builder.
+         */
+        public Builder childIndexes() {
+            this.childIndexes = true;
+            return this;
+        }
+
+        /**
+         * Pre-computes file size, consumed size, block count, permission, modification time and type
+         * of every inode after loading, see {@link INodeColumns}.
+         * <p>
+         * Speeds up repeated reports over the same fsimage at the expense of additional heap per inode.
+         *
+         * @return this builder.
+         */
+        public Builder inodeColumns() {
+            this.inodeColumns = true;
+            return this;
+        }
+
+        /**
+         * Builds the child to parent index after loading, for resolving paths by inode id,
+         * see {@link FsImageData#getPath(long)}.
+         * <p>
+         * Otherwise, the index gets built single-threaded on first use.
+         *
+         * @return this builder.
+         */
+        public Builder parentIndex() {
+            this.parentIndex = true;
+            return this;
+        }
+
+        /**
+         * Decompresses compressed sections ahead on a separate thread per (sub-)section,
+         * overlapping decompression with parsing.
+         * <p>
+         * The decompressing thread fills a ring of large buffers consumed by the loading thread,
+         * so loading compressed fsimages is no longer bound by the single threaded codec.
+         * Sub-sections get a pipeline each, so combine with {@link #parallel()} for images saved with
+         * dfs.image.parallel.save . Has no effect for uncompressed fsimages.
+         *
+         * @return this builder.
+         */
+        public Builder pipelinedDecompression() {
+            this.pipelinedDecompression = true;
             return this;
         }
 
         public FsImageLoader build() {
-            return new FsImageLoader(loadingStrategy);
+            final LoadingStrategy loadingStrategy;
+            if (offHeap) {
+                loadingStrategy = parallel
+                        ? OffHeapINodesRepository.ParallelBuilder::new
+                        : OffHeapINodesRepository.Builder::new;
+            } else {
+                loadingStrategy = parallel
+                        ? PrimitiveArrayINodesRepository.ParallelBuilder::new
+                        : PrimitiveArrayINodesRepository.Builder::new;
+            }
+            MappedLoadingStrategy mappedLoadingStrategy = null;
+            if (memoryMapped) {
+                mappedLoadingStrategy = parallel
+                        ? MappedINodesRepository.ParallelBuilder::new
+                        : MappedINodesRepository.Builder::new;
+            }
+            final int threads;
+            if (null != forkJoinPool) {
+                threads = forkJoinPool.getParallelism();
+            } else if (parallelism > 0) {
+                threads = parallelism;
+            } else {
+                threads = parallel ? Runtime.getRuntime().availableProcessors() : 1;
+            }
+            // A dedicated pool of given parallelism gets created and shut down per load
+            return new FsImageLoader(loadingStrategy, mappedLoadingStrategy, parallelSections, threads,
+                    childIndexes, inodeColumns, parentIndex, pipelinedDecompression, forkJoinPool, parallelism);
         }
     }
 }
@@ -1,17 +1,22 @@
 package de.m3y.hadoop.hdfs.hfsa.core;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
 
-import de.m3y.hadoop.hdfs.hfsa.util.FsUtil;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static de.m3y.hadoop.hdfs.hfsa.core.FsImageData.ROOT_PATH;
-import static de.m3y.hadoop.hdfs.hfsa.util.FsUtil.isFile;
-import static de.m3y.hadoop.hdfs.hfsa.util.FsUtil.isSymlink;
 
 /**
  * Visitor for all files and directories.
@@ -35,6 +40,21 @@ public interface FsVisitor {
      */
     void onDirectory(FsImageProto.INodeSection.INode inode, String path);
 
+    /**
+     * Invoked for each directory, deciding whether to visit the directory children.
+     * <p>
+     * Override for pruning the traversal, e.g. skipping uninteresting subtrees.
+     * By default, invokes {@link #onDirectory(FsImageProto.INodeSection.INode, String)} and continues.
+     *
+     * @param inode the directory inode.
+     * @param path  the current path.
+     * @return the decision, how to continue.
+     */
+    default VisitResult visitDirectory(FsImageProto.INodeSection.INode inode, String path) {
+        onDirectory(inode, path);
+        return VisitResult.CONTINUE;
+    }
+
     /**
      * Invoked for each symlink.
      *
@@ -46,14 +66,22 @@ public interface FsVisitor {
     /**
      * Builds a visitor with single-threaded (default) or parallel execution.
      * <p>
+     * Parallel execution runs on the common fork/join pool, unless configured by {@link #parallelism(int)}
+     * or {@link #forkJoinPool(ForkJoinPool)}.
+     * <p>
      * Builder is immutable and creates a new instance if changed.
      */
     class Builder {
         private static final Logger LOG = LoggerFactory.getLogger(de.m3y.hadoop.hdfs.hfsa.core.FsVisitor.Builder.class);
         public static final FsVisitorStrategy DEFAULT_STRATEGY = new FsVisitorDefaultStrategy();
         public static final FsVisitorStrategy PARALLEL_STRATEGY = new FsVisitorParallelStrategy();
+        public static final FsVisitorStrategy FORK_JOIN_STRATEGY = new FsVisitorForkJoinStrategy();
 
         private final FsVisitorStrategy fsVisitorStrategy;
+        // Pool for parallel strategies, or null for common pool
+        private final ForkJoinPool forkJoinPool;
+        // Number of threads of a dedicated pool created per visit, or 0
+        private final int parallelism;
 
         /**
          * Default constructor.
@@ -68,25 +96,286 @@ public interface FsVisitor {
          * @param fsVisitorStrategy the strategy to visit e.g. in parallel.
          */
         protected Builder(FsVisitorStrategy fsVisitorStrategy) {
+            this(fsVisitorStrategy, null, 0);
+        }
+
+        private Builder(FsVisitorStrategy fsVisitorStrategy, ForkJoinPool forkJoinPool, int parallelism) {
             this.fsVisitorStrategy = fsVisitorStrategy;
+            this.forkJoinPool = forkJoinPool;
+            this.parallelism = parallelism;
         }
 
         public Builder parallel() {
-            return new Builder(PARALLEL_STRATEGY);
+            return new Builder(PARALLEL_STRATEGY, forkJoinPool, parallelism);
+        }
+
+        /**
+         * Visits in parallel using work-stealing, splitting the traversal at every directory with more than
+         * {@value FsVisitorForkJoinStrategy#DEFAULT_FORK_THRESHOLD} children.
+         * <p>
+         * Unlike {@link #parallel()}, which only parallelizes over the top level directories, this
+         * balances load for skewed directory trees, e.g. a single huge top level directory.
+         *
+         * @return the new builder.
+         */
+        public Builder forkJoin() {
+            return new Builder(FORK_JOIN_STRATEGY, forkJoinPool, parallelism);
+        }
+
+        /**
+         * Visits in parallel using work-stealing, see {@link #forkJoin()}.
+         *
+         * @param forkThreshold directories with more children get their children visited as a separate task.
+         * @return the new builder.
+         */
+        public Builder forkJoin(int forkThreshold) {
+            return new Builder(new FsVisitorForkJoinStrategy(forkThreshold), forkJoinPool, parallelism);
+        }
+
+        /**
+         * Limits parallel visiting to the given number of threads, using a dedicated pool per visit
+         * instead of the JVM wide common pool.
+         *
+         * @param parallelism the number of threads.
+         * @return the new builder.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Expected parallelism > 0, but got " + parallelism);
+            }
+            return new Builder(fsVisitorStrategy, null, parallelism);
+        }
+
+        /**
+         * Visits in parallel using the given pool instead of the JVM wide common pool.
+         * <p>
+         * The pool is not shut down after visiting, and can be shared e.g. with {@link FsImageLoader.Builder#forkJoinPool(ForkJoinPool)}.
+         *
+         * @param forkJoinPool the pool.
+         * @return the new builder.
+         */
+        public Builder forkJoinPool(ForkJoinPool forkJoinPool) {
+            if (null == forkJoinPool) {
+                throw new IllegalArgumentException("Expected a fork/join pool, but got null");
+            }
+            return new Builder(fsVisitorStrategy, forkJoinPool, 0);
         }
 
         public void visit(FsImageData fsImageData, FsVisitor visitor) throws IOException {
-            fsVisitorStrategy.visit(fsImageData, visitor);
+            execute(() -> fsVisitorStrategy.visit(fsImageData, visitor));
         }
 
         public void visit(FsImageData fsImageData, FsVisitor visitor, String path) throws IOException {
-            fsVisitorStrategy.visit(fsImageData, visitor, path);
+            execute(() -> fsVisitorStrategy.visit(fsImageData, visitor, path));
+        }
+
+        /**
+         * Traverses the FS tree starting at root, handing out lightweight inode views.
+         *
+         * @param fsImageData the FSImage data.
+         * @param visitor     the view visitor.
+         * @throws IOException on error.
+         */
+        public void visit(FsImageData fsImageData, INodeViewVisitor visitor) throws IOException {
+            execute(() -> fsVisitorStrategy.visit(fsImageData, visitor, ROOT_PATH));
+        }
+
+        /**
+         * Traverses the FS tree starting at the given directory path, handing out lightweight inode views.
+         *
+         * @param fsImageData the FSImage data.
+         * @param visitor     the view visitor.
+         * @param path        the directory path to start with
+         * @throws IOException on error.
+         */
+        public void visit(FsImageData fsImageData, INodeViewVisitor visitor, String path) throws IOException {
+            execute(() -> fsVisitorStrategy.visit(fsImageData, visitor, path));
+        }
+
+        /**
+         * Traverses the FS tree starting at root, handing out batches of inode views, see {@link INodeViewBatchVisitor}.
+         *
+         * @param fsImageData the FSImage data.
+         * @param visitor     the batch visitor.
+         * @param <A>         the accumulator type.
+         * @return the merged accumulator of all workers.
+         * @throws IOException on error.
+         */
+        public <A> A visitBatched(FsImageData fsImageData, INodeViewBatchVisitor<A> visitor) throws IOException {
+            return visitBatched(fsImageData, visitor, ROOT_PATH);
+        }
+
+        /**
+         * Traverses the FS tree starting at the given directory path, handing out batches of inode views,
+         * see {@link INodeViewBatchVisitor}.
+         *
+         * @param fsImageData the FSImage data.
+         * @param visitor     the batch visitor.
+         * @param path        the directory path to start with
+         * @param <A>         the accumulator type.
+         * @return the merged accumulator of all workers.
+         * @throws IOException on error.
+         */
+        public <A> A visitBatched(FsImageData fsImageData, INodeViewBatchVisitor<A> visitor, String path)
+                throws IOException {
+            return collect(fsImageData, new INodeViewBatching<>(fsImageData, visitor), path).flush();
+        }
+
+        /**
+         * Scans all inodes in batches of inode views, without traversing the directory tree,
+         * see {@link FsImageData#scan(int, int, java.util.function.Consumer)}.
+         * <p>
+         * Parallel strategies scan batches of consecutive inodes concurrently, on the configured pool.
+         *
+         * @param fsImageData the FSImage data.
+         * @param visitor     the batch visitor.
+         * @param <A>         the accumulator type.
+         * @return the merged accumulator of all workers.
+         * @throws IOException on error.
+         */
+        public <A> A scan(FsImageData fsImageData, INodeViewBatchVisitor<A> visitor) throws IOException {
+            final INodeViewBatching<A> batching = new INodeViewBatching<>(fsImageData, visitor);
+            final PerThreadAccumulators<INodeViewBatching.Worker<A>> workers =
+                    new PerThreadAccumulators<>(batching::newAccumulator);
+            final int count = fsImageData.getINodeCount();
+            final int batchSize = visitor.batchSize();
+            final IntStream batches = IntStream.range(0, (int) ((count + (long) batchSize - 1) / batchSize));
+            execute(() -> (fsVisitorStrategy instanceof FsVisitorDefaultStrategy ? batches : batches.parallel())
+                    .forEach(batch -> {
+                        // Batch boundaries match, so every full range gets delivered as one batch
+                        final INodeViewBatching.Worker<A> worker = workers.get();
+                        final int from = batch * batchSize;
+                        for (int i = from, to = (int) Math.min(count, (long) from + batchSize); i < to; i++) {
+                            worker.add(i);
+                        }
+                    }));
+            return workers.combine(batching::combine).flush();
+        }
+
+        /**
+         * Collects from the FS tree starting at root, using an accumulator per worker, see {@link INodeViewCollector}.
+         *
+         * @param fsImageData the FSImage data.
+         * @param collector   the collector.
+         * @param <A>         the accumulator type.
+         * @return the combined accumulator of all workers.
+         * @throws IOException on error.
+         */
+        public <A> A collect(FsImageData fsImageData, INodeViewCollector<A> collector) throws IOException {
+            return collect(fsImageData, collector, ROOT_PATH);
+        }
+
+        /**
+         * Collects from the FS tree starting at the given directory path, using an accumulator per worker,
+         * see {@link INodeViewCollector}.
+         *
+         * @param fsImageData the FSImage data.
+         * @param collector   the collector.
+         * @param path        the directory path to start with
+         * @param <A>         the accumulator type.
+         * @return the combined accumulator of all workers.
+         * @throws IOException on error.
+         */
+        public <A> A collect(FsImageData fsImageData, INodeViewCollector<A> collector, String path)
+                throws IOException {
+            final INodeViewCollection<A> collection = new INodeViewCollection<>(collector);
+            execute(() -> fsVisitorStrategy.visit(fsImageData, collection, path));
+            return collection.finish();
+        }
+
+        /**
+         * Aggregates the FS tree bottom-up starting at root, see {@link INodeViewAggregator}.
+         *
+         * @param fsImageData the FSImage data.
+         * @param aggregator  the aggregator.
+         * @param <A>         the accumulator type.
+         * @return the accumulator of root, containing the aggregate of the whole FS tree.
+         * @throws IOException on error.
+         */
+        public <A> A aggregate(FsImageData fsImageData, INodeViewAggregator<A> aggregator) throws IOException {
+            return aggregate(fsImageData, aggregator, ROOT_PATH);
+        }
+
+        /**
+         * Aggregates the FS tree bottom-up starting at the given directory path, see {@link INodeViewAggregator}.
+         * <p>
+         * The start directory gets the parent path as path, for any strategy.
+         *
+         * @param fsImageData the FSImage data.
+         * @param aggregator  the aggregator.
+         * @param path        the directory path to start with
+         * @param <A>         the accumulator type.
+         * @return the accumulator of the start directory.
+         * @throws IOException on error.
+         */
+        public <A> A aggregate(FsImageData fsImageData, INodeViewAggregator<A> aggregator, String path)
+                throws IOException {
+            return call(() -> fsVisitorStrategy.aggregate(fsImageData, aggregator, path));
+        }
+
+        @FunctionalInterface
+        private interface Visit {
+            void run() throws IOException;
+        }
+
+        @FunctionalInterface
+        private interface Call<T> {
+            T call() throws IOException;
+        }
+
+        private void execute(Visit visit) throws IOException {
+            call(() -> {
+                visit.run();
+                return null;
+            });
+        }
+
+        /**
+         * Runs the visit within the configured pool, so that parallel streams and fork/join tasks of the strategy
+         * use the threads of this pool.
+         */
+        private <T> T call(Call<T> visit) throws IOException {
+            if ((null == forkJoinPool && 0 == parallelism) || fsVisitorStrategy instanceof FsVisitorDefaultStrategy) {
+                return visit.call();
+            }
+            final ForkJoinPool pool = null != forkJoinPool ? forkJoinPool : new ForkJoinPool(parallelism);
+            try {
+                if (ForkJoinTask.getPool() == pool) {
+                    // Already running within the pool
+                    return visit.call();
+                } else {
+                    return pool.submit(visit::call).get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while visiting");
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } finally {
+                if (pool != forkJoinPool) {
+                    pool.shutdown();
+                }
+            }
         }
 
         interface FsVisitorStrategy {
             void visit(FsImageData fsImageData, FsVisitor visitor) throws IOException;
 
             void visit(FsImageData fsImageData, FsVisitor visitor, String path) throws IOException;
+
+            void visit(FsImageData fsImageData, INodeViewVisitor visitor, String path) throws IOException;
+
+            <A> A aggregate(FsImageData fsImageData, INodeViewAggregator<A> aggregator, String path) throws IOException;
         }
 
         public static class FsVisitorDefaultStrategy implements FsVisitorStrategy {
@@ -112,48 +401,39 @@ public interface FsVisitor {
              */
             @Override
             public void visit(FsImageData fsImageData, FsVisitor visitor, String path) throws IOException {
+                visit(INodeViewTraversal.of(fsImageData, visitor), path);
+            }
+
+            @Override
+            public void visit(FsImageData fsImageData, INodeViewVisitor visitor, String path) throws IOException {
+                visit(INodeViewTraversal.of(fsImageData, visitor), path);
+            }
+
+            @Override
+            public <A> A aggregate(FsImageData fsImageData, INodeViewAggregator<A> aggregator, String path)
+                    throws IOException {
+                return new INodeViewAggregation<>(fsImageData, aggregator, INodeViewAggregation.ForkPolicy.SEQUENTIAL)
+                        .aggregate(path);
+            }
+
+            void visit(INodeViewTraversal traversal, String path) throws IOException {
                 // Visit path dir
-                FsImageProto.INodeSection.INode pathNode = fsImageData.getINodeFromPath(path);
+                final INodeView pathNode = traversal.loadPath(path);
+                final boolean visitChildren;
                 if (ROOT_PATH.equals(path)) {
-                    visitor.onDirectory(pathNode, path);
+                    visitChildren = traversal.enterDirectory(pathNode, path);
                 } else {
                     // Need to strip current node path from path if not "/"
-                    final String substring = path.substring(0, path.length() - pathNode.getName().toStringUtf8().length());
-                    visitor.onDirectory(pathNode, substring);
+                    final String substring = path.substring(0, path.length() - pathNode.getName().length());
+                    visitChildren = traversal.enterDirectory(pathNode, substring);
                 }
 
                 // Child dirs?
-                final long pathNodeId = pathNode.getId();
-                final long[] children = fsImageData.getChildINodeIds(pathNodeId);
-                // Visit children
-                for (long cid : children) {
-                    visit(fsImageData, visitor, fsImageData.getInode(cid), path);
-                }
-            }
-
-            void visit(FsImageData fsImageData, FsVisitor visitor, FsImageProto.INodeSection.INode inode, String path) throws IOException {
-                if (FsUtil.isDirectory(inode)) {
-                    visitor.onDirectory(inode, path);
-                    final long inodeId = inode.getId();
-                    final long[] children = fsImageData.getChildINodeIds(inodeId);
-                    if (children.length>0) {
-                        String newPath;
-                        if (ROOT_PATH.equals(path)) {
-                            newPath = path + inode.getName().toStringUtf8();
-                        } else {
-                            newPath = path + '/' + inode.getName().toStringUtf8();
-                        }
-                        for (long cid : children) {
-                            visit(fsImageData, visitor, fsImageData.getInode(cid), newPath);
-                        }
-                    }
-                } else if (isFile(inode)) {
-                    visitor.onFile(inode, path);
-                } else if (isSymlink(inode)) {
-                    visitor.onSymLink(inode, path);
-                } else {
-                    // Should not happen
-                    throw new IllegalStateException("Unsupported inode type " + inode.getType() + " for " + inode);
+                final int dirIdx = traversal.fsImageData.getDirectoryIndex().indexOf(pathNode.getId());
+                if (visitChildren && dirIdx >= 0) {
+                    // Visit children
+                    traversal.path.reset(path);
+                    traversal.visitChildren(dirIdx, 1);
                 }
             }
         }
@@ -162,6 +442,8 @@ public interface FsVisitor {
 
             /**
              * Traverses the FS tree, using Java parallel stream.
+             * <p>
+             * The stream runs on the fork/join pool of the calling thread, or on the common pool.
              *
              * @param visitor the visitor.
              * @throws IOException on error.
@@ -180,53 +462,203 @@ public interface FsVisitor {
              */
             @Override
             public void visit(FsImageData fsImageData, FsVisitor visitor, String path) throws IOException {
-                FsImageProto.INodeSection.INode rootNode = fsImageData.getINodeFromPath(path);
-                visitor.onDirectory(rootNode, path);
-                final long rootNodeId = rootNode.getId();
-                final long[] children = fsImageData.getChildINodeIds(rootNodeId);
-                if (children.length>0) {
-                    List<FsImageProto.INodeSection.INode> dirs = new ArrayList<>();
-                    for (long cid : children) {
-                        final FsImageProto.INodeSection.INode inode = fsImageData.getInode(cid);
-                        if (inode.getType() == FsImageProto.INodeSection.INode.Type.DIRECTORY) {
-                            dirs.add(inode);
+                visit(INodeViewTraversal.of(fsImageData, visitor), path);
+            }
+
+            @Override
+            public void visit(FsImageData fsImageData, INodeViewVisitor visitor, String path) throws IOException {
+                visit(INodeViewTraversal.of(fsImageData, visitor), path);
+            }
+
+            /**
+             * Aggregates the FS tree, using a separate task per top level directory.
+             */
+            @Override
+            public <A> A aggregate(FsImageData fsImageData, INodeViewAggregator<A> aggregator, String path)
+                    throws IOException {
+                return new INodeViewAggregation<>(fsImageData, aggregator, (depth, numChildren) -> 1 == depth)
+                        .aggregate(path);
+            }
+
+            void visit(INodeViewTraversal traversal, String path) throws IOException {
+                final FsImageData fsImageData = traversal.fsImageData;
+                final INodeView rootNode = traversal.loadPath(path);
+                if (!traversal.enterDirectory(rootNode, path)) {
+                    return;
+                }
+                final DirectoryIndex directories = fsImageData.getDirectoryIndex();
+                final int dirIdx = directories.indexOf(rootNode.getId());
+                if (dirIdx >= 0) {
+                    traversal.path.reset(path);
+                    final IntArrayList dirs = new IntArrayList();
+                    final INodeView child = traversal.view(1);
+                    for (int i = directories.childrenStart(dirIdx), end = directories.childrenEnd(dirIdx);
+                         i < end && !traversal.isStopped(); i++) {
+                        fsImageData.loadChildView(i, child);
+                        if (child.isDirectory()) {
+                            dirs.add(child.getIndex());
                         } else {
-                            visit(fsImageData, visitor, inode, path);
+                            traversal.visit(child, 1);
                         }
                     }
                     // Go over top level dirs in parallel
-                    dirs.parallelStream().forEach(inode -> {
+                    dirs.intParallelStream().forEach(index -> {
+                        if (traversal.isStopped()) {
+                            return;
+                        }
+                        final INodeViewTraversal fork = traversal.fork();
+                        final INodeView inode = fork.load(index, 1);
+                        fork.path.reset(path);
                         try {
-                            visit(fsImageData, visitor, inode, path);
+                            fork.visit(inode, 1);
                         } catch (IOException e) {
-                            LOG.error("Can not traverse {} : {}", inode.getId(), inode.getName().toStringUtf8(), e);
+                            LOG.error("Can not traverse {} : {}", inode.getId(), inode.getName(), e);
                         }
                     });
                 }
             }
+        }
+
+        public static class FsVisitorForkJoinStrategy implements FsVisitorStrategy {
+            public static final int DEFAULT_FORK_THRESHOLD = 64;
+
+            private final int forkThreshold;
+
+            public FsVisitorForkJoinStrategy() {
+                this(DEFAULT_FORK_THRESHOLD);
+            }
+
+            /**
+             * @param forkThreshold directories with more children get their children visited as a separate task.
+             */
+            public FsVisitorForkJoinStrategy(int forkThreshold) {
+                if (forkThreshold < 1) {
+                    throw new IllegalArgumentException("Expected fork threshold > 0, but got " + forkThreshold);
+                }
+                this.forkThreshold = forkThreshold;
+            }
 
-            void visit(FsImageData fsImageData, FsVisitor visitor, FsImageProto.INodeSection.INode inode, String path) throws IOException {
-                if (FsUtil.isDirectory(inode)) {
-                    visitor.onDirectory(inode, path);
-                    final long inodeId = inode.getId();
-                    final long[] children = fsImageData.getChildINodeIds(inodeId);
-                    if (children.length > 0) {
-                        String newPath;
-                        if (ROOT_PATH.equals(path)) {
-                            newPath = path + inode.getName().toStringUtf8();
+            /**
+             * Traverses the FS tree, using work-stealing fork/join tasks.
+             *
+             * @param visitor the visitor.
+             * @throws IOException on error.
+             */
+            @Override
+            public void visit(FsImageData fsImageData, FsVisitor visitor) throws IOException {
+                visit(fsImageData, visitor, ROOT_PATH);
+            }
+
+            /**
+             * Traverses the FS tree, using work-stealing fork/join tasks.
+             *
+             * @param visitor the visitor.
+             * @param path    the directory path to start with
+             * @throws IOException on error.
+             */
+            @Override
+            public void visit(FsImageData fsImageData, FsVisitor visitor, String path) throws IOException {
+                visit(INodeViewTraversal.of(fsImageData, visitor), path);
+            }
+
+            @Override
+            public void visit(FsImageData fsImageData, INodeViewVisitor visitor, String path) throws IOException {
+                visit(INodeViewTraversal.of(fsImageData, visitor), path);
+            }
+
+            /**
+             * Aggregates the FS tree, using a separate task for every directory with more than the threshold
+             * number of children.
+             */
+            @Override
+            public <A> A aggregate(FsImageData fsImageData, INodeViewAggregator<A> aggregator, String path)
+                    throws IOException {
+                return new INodeViewAggregation<>(fsImageData, aggregator,
+                        (depth, numChildren) -> numChildren > forkThreshold).aggregate(path);
+            }
+
+            void visit(INodeViewTraversal traversal, String path) throws IOException {
+                final INodeView rootNode = traversal.loadPath(path);
+                if (!traversal.enterDirectory(rootNode, path)) {
+                    return;
+                }
+                final int dirIdx = traversal.directories.indexOf(rootNode.getId());
+                if (dirIdx >= 0) {
+                    final VisitChildrenTask task = new VisitChildrenTask(traversal, dirIdx, path, forkThreshold);
+                    try {
+                        // Stay within the pool of the calling thread, if any
+                        if (ForkJoinTask.inForkJoinPool()) {
+                            task.invoke();
                         } else {
-                            newPath = path + '/' + inode.getName().toStringUtf8();
+                            ForkJoinPool.commonPool().invoke(task);
                         }
-                        for (long cid : children) {
-                            visit(fsImageData, visitor, fsImageData.getInode(cid), newPath);
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+
+            /**
+             * Visits the children of a directory, forking a new task for every descendant directory
+             * with more than the threshold number of children.
+             */
+            static class VisitChildrenTask extends RecursiveAction {
+                private static final long serialVersionUID = 1L;
+
+                private final transient INodeViewTraversal traversal;
+                private final int dirIdx;
+                private final String path;
+                private final int forkThreshold;
+                private final transient List<VisitChildrenTask> forks = new ArrayList<>();
+
+                VisitChildrenTask(INodeViewTraversal traversal, int dirIdx, String path, int forkThreshold) {
+                    this.traversal = traversal;
+                    this.dirIdx = dirIdx;
+                    this.path = path;
+                    this.forkThreshold = forkThreshold;
+                }
+
+                @Override
+                protected void compute() {
+                    traversal.path.reset(path);
+                    try {
+                        visitChildren(dirIdx, 1);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    for (VisitChildrenTask fork : forks) {
+                        fork.join();
+                    }
+                }
+
+                private void visitChildren(int directoryIdx, int depth) throws IOException {
+                    final DirectoryIndex directories = traversal.directories;
+                    final PathBuffer directoryPath = traversal.path;
+                    final INodeView child = traversal.view(depth);
+                    for (int i = directories.childrenStart(directoryIdx), end = directories.childrenEnd(directoryIdx);
+                         i < end && !traversal.isStopped(); i++) {
+                        traversal.fsImageData.loadChildView(i, child);
+                        if (child.isDirectory()) {
+                            if (!traversal.enterDirectory(child, directoryPath)) {
+                                continue;
+                            }
+                            final int childDirIdx = directories.indexOf(child.getId());
+                            if (childDirIdx >= 0) {
+                                directoryPath.push(child);
+                                if (directories.childrenEnd(childDirIdx) - directories.childrenStart(childDirIdx) > forkThreshold) {
+                                    final VisitChildrenTask task = new VisitChildrenTask(traversal.fork(), childDirIdx,
+                                            directoryPath.toString(), forkThreshold);
+                                    task.fork();
+                                    forks.add(task);
+                                } else {
+                                    visitChildren(childDirIdx, depth + 1);
+                                }
+                                directoryPath.pop();
+                            }
+                        } else {
+                            traversal.visit(child, depth);
                         }
                     }
-                } else if (isFile(inode)) {
-                    visitor.onFile(inode, path);
-                } else if (isSymlink(inode)) {
-                    visitor.onSymLink(inode, path);
-                } else {
-                    throw new IllegalStateException("Unsupported inode type " + inode.getType() + " for " + inode);
                 }
             }
         }
@@ -0,0 +1,236 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.google.common.primitives.ImmutableLongArray;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.thirdparty.protobuf.CodedInputStream;
+
+/**
+ * Decodes the INODE_DIR section into a {@link DirectoryIndex}, without creating a DirEntry object per directory.
+ * <p>
+ * The section gets read in chunks of complete entries, which can be decoded concurrently.
+ * <p>
+ * DirEntry wire format:
+ * <ul>
+ *     <li>1: parent, uint64</li>
+ *     <li>2: children, repeated uint64 (packed or unpacked)</li>
+ *     <li>3: refChildren, repeated uint32 (packed or unpacked), referencing the INODE_REFERENCE section</li>
+ * </ul>
+ */
+final class INodeDirectorySectionDecoder {
+    static final int CHUNK_SIZE = 1024 * 1024; // 1 MiB
+    private static final int MAX_VARINT32_SIZE = 5;
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_FIXED64 = 1;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRETYPE_FIXED32 = 5;
+
+    private final byte[] buf;
+    private final int limit;
+    private final ImmutableLongArray refIdList;
+    private int pos;
+
+    private INodeDirectorySectionDecoder(byte[] buf, int limit, ImmutableLongArray refIdList) {
+        this.buf = buf;
+        this.limit = limit;
+        this.refIdList = refIdList;
+    }
+
+    /**
+     * Reads the (sub-)section until end of stream.
+     *
+     * @param in              the section stream.
+     * @param refIdList       the inode references, for resolving refChildren.
+     * @param executorService the executor for decoding chunks concurrently, or null for decoding on the caller thread.
+     * @param maxPendingChunks the max number of chunks read ahead of decoding.
+     * @return the decoded parts, in section order.
+     * @throws IOException on error reading or decoding.
+     */
+    static List<DirectoryIndex.Part> read(InputStream in, ImmutableLongArray refIdList,
+                                          ExecutorService executorService, int maxPendingChunks) throws IOException {
+        final List<DirectoryIndex.Part> parts = new ArrayList<>();
+        final List<Future<DirectoryIndex.Part>> futures = new ArrayList<>();
+        final Semaphore pendingChunks = new Semaphore(maxPendingChunks);
+        try {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int length = 0;
+            int firstByte;
+            while ((firstByte = in.read()) >= 0) {
+                final int size = CodedInputStream.readRawVarint32(firstByte, in);
+                if (length + MAX_VARINT32_SIZE + size > chunk.length) {
+                    if (length > 0) {
+                        submit(chunk, length, refIdList, executorService, pendingChunks, parts, futures);
+                    }
+                    chunk = new byte[Math.max(CHUNK_SIZE, MAX_VARINT32_SIZE + size)];
+                    length = 0;
+                }
+                length = writeRawVarint32(chunk, length, size);
+                IOUtils.readFully(in, chunk, length, size);
+                length += size;
+            }
+            if (length > 0) {
+                submit(chunk, length, refIdList, executorService, pendingChunks, parts, futures);
+            }
+            for (Future<DirectoryIndex.Part> future : futures) {
+                parts.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding INODE_DIR section");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Can not decode INODE_DIR section", e.getCause());
+        } finally {
+            for (Future<DirectoryIndex.Part> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return parts;
+    }
+
+    private static void submit(byte[] chunk, int length, ImmutableLongArray refIdList,
+                               ExecutorService executorService, Semaphore pendingChunks,
+                               List<DirectoryIndex.Part> parts, List<Future<DirectoryIndex.Part>> futures)
+            throws IOException, InterruptedException {
+        if (null == executorService) {
+            parts.add(decode(chunk, length, refIdList));
+        } else {
+            pendingChunks.acquire();
+            futures.add(executorService.submit(() -> {
+                try {
+                    return decode(chunk, length, refIdList);
+                } finally {
+                    pendingChunks.release();
+                }
+            }));
+        }
+    }
+
+    /**
+     * Decodes length delimited DirEntry messages.
+     *
+     * @param buf       the buffer.
+     * @param length    the number of bytes to decode.
+     * @param refIdList the inode references, for resolving refChildren.
+     * @return the decoded directories.
+     * @throws IOException if malformed.
+     */
+    static DirectoryIndex.Part decode(byte[] buf, int length, ImmutableLongArray refIdList) throws IOException {
+        final DirectoryIndex.Part part = new DirectoryIndex.Part();
+        final INodeDirectorySectionDecoder decoder = new INodeDirectorySectionDecoder(buf, length, refIdList);
+        while (decoder.pos < decoder.limit) {
+            decoder.decodeDirEntry(part);
+        }
+        return part;
+    }
+
+    private void decodeDirEntry(DirectoryIndex.Part part) throws IOException {
+        final int end = checkedEnd(readRawVarint32());
+        long parent = 0;
+        // Resolved refChildren follow children, as protobuf writes fields ordered by field number
+        int numChildren = 0;
+        while (pos < end) {
+            final int tag = readRawVarint32();
+            final int wireType = tag & 0x7;
+            switch (tag >>> 3) {
+                case 1 -> {
+                    if (wireType != WIRETYPE_VARINT) {
+                        throw new IOException("Unexpected wire type " + wireType + " for DirEntry.parent");
+                    }
+                    parent = readRawVarint64();
+                }
+                case 2 -> {
+                    if (wireType == WIRETYPE_LENGTH_DELIMITED) {
+                        final int packedEnd = checkedEnd(readRawVarint32());
+                        while (pos < packedEnd) {
+                            part.children.add(readRawVarint64());
+                            numChildren++;
+                        }
+                    } else if (wireType == WIRETYPE_VARINT) {
+                        part.children.add(readRawVarint64());
+                        numChildren++;
+                    } else {
+                        throw new IOException("Unexpected wire type " + wireType + " for DirEntry.children");
+                    }
+                }
+                case 3 -> {
+                    if (wireType == WIRETYPE_LENGTH_DELIMITED) {
+                        final int packedEnd = checkedEnd(readRawVarint32());
+                        while (pos < packedEnd) {
+                            part.children.add(refIdList.get(readRawVarint32()));
+                            numChildren++;
+                        }
+                    } else if (wireType == WIRETYPE_VARINT) {
+                        part.children.add(refIdList.get(readRawVarint32()));
+                        numChildren++;
+                    } else {
+                        throw new IOException("Unexpected wire type " + wireType + " for DirEntry.refChildren");
+                    }
+                }
+                default -> skipField(wireType);
+            }
+        }
+        if (pos != end) {
+            throw new IOException("Malformed DirEntry, read beyond entry end " + end + " at " + pos);
+        }
+        part.directoryIds.add(parent);
+        part.childCounts.add(numChildren);
+    }
+
+    private int checkedEnd(int length) throws IOException {
+        final int end = pos + length;
+        if (length < 0 || end > limit) {
+            throw new IOException("Malformed length " + length + " at " + pos + " exceeds limit " + limit);
+        }
+        return end;
+    }
+
+    private void skipField(int wireType) throws IOException {
+        switch (wireType) {
+            case WIRETYPE_VARINT -> readRawVarint64();
+            case WIRETYPE_FIXED64 -> pos = checkedEnd(8);
+            case WIRETYPE_LENGTH_DELIMITED -> pos = checkedEnd(readRawVarint32());
+            case WIRETYPE_FIXED32 -> pos = checkedEnd(4);
+            default -> throw new IOException("Unsupported wire type " + wireType + " at " + pos);
+        }
+    }
+
+    private int readRawVarint32() throws IOException {
+        return (int) readRawVarint64();
+    }
+
+    private long readRawVarint64() throws IOException {
+        // Extracted from CodedInputStream.readRawVarint64()
+        int shift = 0;
+        long result = 0;
+        while (shift < 64 && pos < limit) {
+            final byte b = buf[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+        throw new IOException("Malformed varint at " + pos);
+    }
+
+    private static int writeRawVarint32(byte[] buf, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+}
@@ -0,0 +1,122 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.util.Arrays;
+
+/**
+ * Maps an inode id to the index of the inode in a repository sorted by inode id.
+ * <p>
+ * Dense inode ids (id range close to the number of inodes) or small id ranges get looked up directly
+ * by <code>id - minId</code>, otherwise lookup falls back to binary search.
+ */
+final class INodeIdIndex {
+    /**
+     * Max ratio of id range to number of inodes for using a direct index.
+     */
+    static final double MAX_DIRECT_RANGE_FACTOR = 1.5d;
+    /**
+     * Id ranges up to this size always use a direct index, as the table size is negligible (256 KiB).
+     */
+    static final int MIN_DIRECT_RANGE = 1 << 16;
+    // Marks an id without inode in the direct index
+    private static final int HOLE = -1;
+
+    // inode ids, sorted
+    private final long[] inodeIds;
+    private final long minId;
+    // inode index by (inode id - minId), or null if using binary search
+    private final int[] directIndex;
+
+    private INodeIdIndex(long[] inodeIds, int[] directIndex) {
+        this.inodeIds = inodeIds;
+        this.minId = inodeIds.length > 0 ? inodeIds[0] : 0L;
+        this.directIndex = directIndex;
+    }
+
+    /**
+     * Creates an index, choosing direct lookup if ids are dense.
+     *
+     * @param sortedInodeIds the unique inode ids, sorted ascending.
+     * @return the index.
+     */
+    static INodeIdIndex create(long[] sortedInodeIds) {
+        final int n = sortedInodeIds.length;
+        final boolean dense = n > 0
+                && sortedInodeIds[n - 1] - sortedInodeIds[0] < Math.max(n * MAX_DIRECT_RANGE_FACTOR, MIN_DIRECT_RANGE);
+        return create(sortedInodeIds, dense);
+    }
+
+    /**
+     * Creates an index.
+     *
+     * @param sortedInodeIds the unique inode ids, sorted ascending.
+     * @param direct         true, if direct lookup should be used - requires dense inode ids.
+     * @return the index.
+     */
+    static INodeIdIndex create(long[] sortedInodeIds, boolean direct) {
+        if (!direct || sortedInodeIds.length == 0) {
+            return new INodeIdIndex(sortedInodeIds, null);
+        }
+        final long minId = sortedInodeIds[0];
+        final long range = sortedInodeIds[sortedInodeIds.length - 1] - minId + 1;
+        if (range >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Inode id range " + range + " exceeds max direct index size");
+        }
+        final int[] directIndex = new int[(int) range];
+        Arrays.fill(directIndex, HOLE);
+        for (int i = 0; i < sortedInodeIds.length; i++) {
+            directIndex[(int) (sortedInodeIds[i] - minId)] = i;
+        }
+        return new INodeIdIndex(sortedInodeIds, directIndex);
+    }
+
+    /**
+     * Looks up the index of an inode.
+     *
+     * @param inodeId the inode id.
+     * @return the index, or a negative value if not found.
+     */
+    int indexOf(long inodeId) {
+        if (null != directIndex) {
+            final long slot = inodeId - minId;
+            if (slot < 0 || slot >= directIndex.length) {
+                return HOLE;
+            }
+            return directIndex[(int) slot];
+        }
+
+        // Binary search over sorted node id array
+        int l = 0;
+        int r = inodeIds.length - 1;
+        while (l <= r) {
+            int mid = (l + r) >>> 1;
+            long currentInodeId = inodeIds[mid];
+
+            if (currentInodeId < inodeId) {
+                l = mid + 1;
+            } else if (currentInodeId > inodeId) {
+                r = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return HOLE;
+    }
+
+    /**
+     * Gets the inode id for the index.
+     *
+     * @param index the index.
+     * @return the inode id.
+     */
+    long getInodeId(int index) {
+        return inodeIds[index];
+    }
+
+    int size() {
+        return inodeIds.length;
+    }
+
+    FsImageLoader.INodeLookupMode getLookupMode() {
+        return null != directIndex ? FsImageLoader.INodeLookupMode.DIRECT : FsImageLoader.INodeLookupMode.BINARY_SEARCH;
+    }
+}
@@ -0,0 +1,117 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+/**
+ * Orders inodes by inode id in linear time, without comparison based sorting.
+ * <p>
+ * Inode ids are allocated sequentially starting at {@link org.apache.hadoop.hdfs.server.namenode.INodeId#ROOT_INODE_ID},
+ * so ids of an fsimage are usually dense and inodes can be placed directly by <code>id - minId</code>.
+ * Sparse ids (e.g. after lots of deletes) fall back to an indirect radix sort.
+ */
+final class INodeIdSorter {
+    /**
+     * Max ratio of id range to number of inodes for direct placement.
+     * Limits the temporary slot table to 4x the size of an int per inode.
+     */
+    static final int MAX_DIRECT_RANGE_FACTOR = 4;
+
+    private INodeIdSorter() {
+        // No instantiation.
+    }
+
+    /**
+     * Computes the order of the given inode ids.
+     *
+     * @param inodeIds the unique inode ids, in load order.
+     * @param parallel true, if sparse ids should be sorted in parallel.
+     * @return the order, where order[i] is the load index of the i-th smallest inode id.
+     * @throws IllegalStateException if an inode id is contained more than once.
+     */
+    static int[] sortedOrder(long[] inodeIds, boolean parallel) {
+        final int n = inodeIds.length;
+        if (n == 0) {
+            return new int[0];
+        }
+
+        long min = inodeIds[0];
+        long max = inodeIds[0];
+        boolean sorted = true;
+        for (int i = 1; i < n; i++) {
+            final long id = inodeIds[i];
+            if (id < min) {
+                min = id;
+            } else if (id > max) {
+                max = id;
+            }
+            sorted &= inodeIds[i - 1] < id;
+        }
+
+        final int[] order;
+        if (sorted) {
+            order = identity(n);
+        } else {
+            final long range = max - min + 1;
+            if (range <= (long) n * MAX_DIRECT_RANGE_FACTOR && range < Integer.MAX_VALUE) {
+                order = placeDirectly(inodeIds, min, (int) range);
+            } else {
+                order = identity(n);
+                if (parallel) {
+                    LongArrays.parallelRadixSortIndirect(order, inodeIds, false);
+                } else {
+                    LongArrays.radixSortIndirect(order, inodeIds, false);
+                }
+                // Duplicates are adjacent once sorted, and fail like for direct placement
+                for (int i = 1; i < n; i++) {
+                    if (inodeIds[order[i - 1]] == inodeIds[order[i]]) {
+                        throw new IllegalStateException("Duplicate inode id " + inodeIds[order[i]]);
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    private static int[] placeDirectly(long[] inodeIds, long min, int range) {
+        // slot contains load index + 1, so that 0 marks a hole
+        final int[] slots = new int[range];
+        for (int i = 0; i < inodeIds.length; i++) {
+            final int slot = (int) (inodeIds[i] - min);
+            if (slots[slot] != 0) {
+                throw new IllegalStateException("Duplicate inode id " + inodeIds[i]);
+            }
+            slots[slot] = i + 1;
+        }
+        final int[] order = new int[inodeIds.length];
+        int k = 0;
+        for (int slot : slots) {
+            if (slot != 0) {
+                order[k++] = slot - 1;
+            }
+        }
+        return order;
+    }
+
+    private static int[] identity(int n) {
+        final int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Applies the order to the values.
+     *
+     * @param values the values in load order.
+     * @param order  the order computed by {@link #sortedOrder(long[], boolean)}.
+     * @return the values ordered.
+     */
+    static long[] permute(long[] values, int[] order) {
+        final long[] permuted = new long[values.length];
+        for (int i = 0; i < order.length; i++) {
+            permuted[i] = values[order[i]];
+        }
+        return permuted;
+    }
+}
@@ -0,0 +1,170 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.thirdparty.protobuf.CodedInputStream;
+
+/**
+ * Streams the inodes of an INODE section to an {@link INodeViewBatchVisitor}, without retaining them.
+ * <p>
+ * The section gets read in chunks of complete inodes, like {@link INodeDirectorySectionDecoder}.
+ * Every chunk is visited as views positioned on the chunk, and dropped afterwards,
+ * so memory is bounded by the number of pending chunks instead of the number of inodes.
+ *
+ * @param <A> the accumulator type.
+ */
+final class INodeSectionStreamer<A> {
+    static final int CHUNK_SIZE = 1024 * 1024; // 1 MiB
+
+    /**
+     * Accumulator and reused batch of a worker thread.
+     */
+    private final class Worker {
+        final A accumulator = visitor.newAccumulator();
+        final INodeViewBatch batch = new INodeViewBatch(visitor.batchSize());
+
+        void visit(Chunk chunk) {
+            for (int i = 0; i < chunk.count; i++) {
+                if (batch.add(chunk.firstIndex + i, chunk.buf, chunk.offsets[i], chunk.lengths[i])) {
+                    flush();
+                }
+            }
+            // Views reference the chunk, so flush before the chunk gets dropped
+            flush();
+        }
+
+        void flush() {
+            if (batch.size() > 0) {
+                visitor.onBatch(accumulator, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Complete serialized inodes.
+     */
+    private static final class Chunk {
+        final byte[] buf;
+        final int firstIndex;
+        int[] offsets = new int[1024];
+        int[] lengths = new int[1024];
+        int count;
+        int length;
+
+        Chunk(int capacity, int firstIndex) {
+            buf = new byte[capacity];
+            this.firstIndex = firstIndex;
+        }
+
+        boolean fits(int size) {
+            return length + size <= buf.length;
+        }
+
+        void read(InputStream in, int size) throws IOException {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * count);
+                lengths = Arrays.copyOf(lengths, 2 * count);
+            }
+            IOUtils.readFully(in, buf, length, size);
+            offsets[count] = length;
+            lengths[count] = size;
+            count++;
+            length += size;
+        }
+    }
+
+    private final INodeViewBatchVisitor<A> visitor;
+
+    private INodeSectionStreamer(INodeViewBatchVisitor<A> visitor) {
+        this.visitor = visitor;
+    }
+
+    /**
+     * Streams the inodes until end of stream.
+     *
+     * @param in               the section stream, positioned after the section header.
+     * @param numInodes        the expected number of inodes, as declared by the section header.
+     * @param visitor          the visitor.
+     * @param executorService  the executor for visiting chunks concurrently, or null for visiting on the caller thread.
+     * @param maxPendingChunks the max number of chunks read ahead of visiting.
+     * @param <A>              the accumulator type.
+     * @return the merged accumulator.
+     * @throws IOException on error reading, or if the number of inodes does not match.
+     */
+    static <A> A stream(InputStream in, long numInodes, INodeViewBatchVisitor<A> visitor,
+                        ExecutorService executorService, int maxPendingChunks) throws IOException {
+        return new INodeSectionStreamer<>(visitor).stream(in, numInodes, executorService, maxPendingChunks);
+    }
+
+    private A stream(InputStream in, long numInodes, ExecutorService executorService, int maxPendingChunks)
+            throws IOException {
+        final PerThreadAccumulators<Worker> workers = new PerThreadAccumulators<>(Worker::new);
+        final List<Future<?>> futures = new ArrayList<>();
+        final Semaphore pendingChunks = new Semaphore(maxPendingChunks);
+        int index = 0;
+        try {
+            Chunk chunk = new Chunk(CHUNK_SIZE, index);
+            int firstByte;
+            while ((firstByte = in.read()) >= 0) {
+                final int size = CodedInputStream.readRawVarint32(firstByte, in);
+                if (!chunk.fits(size)) {
+                    if (chunk.count > 0) {
+                        submit(chunk, workers, executorService, pendingChunks, futures);
+                    }
+                    chunk = new Chunk(Math.max(CHUNK_SIZE, size), index);
+                }
+                chunk.read(in, size);
+                index++;
+            }
+            if (chunk.count > 0) {
+                submit(chunk, workers, executorService, pendingChunks, futures);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming INODE section");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Can not stream INODE section", e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        if (index != numInodes) {
+            throw new IOException("Expected " + numInodes + " inodes but section contains " + index);
+        }
+        return workers.combine((worker, other) -> visitor.merge(worker.accumulator, other.accumulator)).accumulator;
+    }
+
+    private void submit(Chunk chunk, PerThreadAccumulators<Worker> workers, ExecutorService executorService,
+                        Semaphore pendingChunks, List<Future<?>> futures) throws InterruptedException {
+        if (null == executorService) {
+            workers.get().visit(chunk);
+        } else {
+            pendingChunks.acquire();
+            futures.add(executorService.submit(() -> {
+                try {
+                    workers.get().visit(chunk);
+                } finally {
+                    pendingChunks.release();
+                }
+            }));
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import de.m3y.hadoop.hdfs.hfsa.util.FsUtil;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.SystemErasureCodingPolicies;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeFile;
+import org.apache.hadoop.thirdparty.protobuf.InvalidProtocolBufferException;
+import org.apache.hadoop.thirdparty.protobuf.Parser;
+
+/**
+ * Lightweight, reusable view of a serialized inode.
+ * <p>
+ * Instead of parsing a complete INode object graph including blocks, ACLs and xattrs,
+ * the view decodes the commonly used fields on demand by scanning the raw protobuf bytes.
+ * The top level fields (type, id, name) and the file/directory/symlink fields are decoded lazily,
+ * each with a single pass.
+ * <p>
+ * A view is a flyweight: it gets repositioned to another inode by the traversal,
+ * so it is only valid during a visitor callback and must not be shared between threads.
+ * Use {@link #toINode()} for a fully parsed inode.
+ * <p>
+ * If the fsimage got loaded with {@link INodeColumns}, the view returns the pre-computed values instead of decoding.
+ * <p>
+ * INode wire format:
+ * <ul>
+ *     <li>1: type, enum (FILE=1, DIRECTORY=2, SYMLINK=3)</li>
+ *     <li>2: id, uint64</li>
+ *     <li>3: name, bytes</li>
+ *     <li>4: file, INodeFile (1: replication, 2: mtime, 5: permission fixed64, 6: repeated blocks, 12: ec policy id)</li>
+ *     <li>5: directory, INodeDirectory (1: mtime, 4: permission fixed64)</li>
+ *     <li>6: symlink, INodeSymlink (1: permission fixed64, 3: mtime)</li>
+ * </ul>
+ *
+ * @see FsImageData#getINodeView(long)
+ * @see INodeViewVisitor
+ */
+public final class INodeView {
+    private static final Parser<INode> INODE_PARSER = INode.parser();
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_FIXED64 = 1;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRETYPE_FIXED32 = 5;
+
+    // Raw bytes, either from an array or a buffer
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+    private int index = -1;
+    // decoding position
+    private int pos;
+    // optional pre-computed values
+    private final INodeColumns columns;
+
+    // Top level fields
+    private boolean headerDecoded;
+    private int type;
+    private long id;
+    private int nameStart;
+    private int nameLength;
+    private int detailsStart;
+    private int detailsEnd;
+
+    // File, directory or symlink fields
+    private boolean detailsDecoded;
+    private long permission;
+    private long modificationTime;
+    private int replication;
+    private int blocksCount;
+    private long fileSize;
+    private int erasureCodingPolicyId;
+
+    /**
+     * Creates a view decoding all values from the serialized inode.
+     */
+    public INodeView() {
+        this(null);
+    }
+
+    /**
+     * Creates a view preferring pre-computed values over decoding.
+     *
+     * @param columns the pre-computed values, or null.
+     */
+    INodeView(INodeColumns columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Positions the view on an inode stored in an array.
+     *
+     * @param index  the inode index.
+     * @param array  the array.
+     * @param offset the offset of the serialized inode.
+     * @param length the length of the serialized inode.
+     * @return this view.
+     */
+    INodeView reset(int index, byte[] array, int offset, int length) {
+        this.array = array;
+        this.buffer = null;
+        return reset(index, offset, length);
+    }
+
+    /**
+     * Positions the view on an inode stored in a buffer, using absolute access only.
+     *
+     * @param index  the inode index.
+     * @param buffer the buffer.
+     * @param offset the offset of the serialized inode.
+     * @param length the length of the serialized inode.
+     * @return this view.
+     */
+    INodeView reset(int index, ByteBuffer buffer, int offset, int length) {
+        this.array = null;
+        this.buffer = buffer;
+        return reset(index, offset, length);
+    }
+
+    private INodeView reset(int index, int offset, int length) {
+        this.index = index;
+        this.start = offset;
+        this.end = offset + length;
+        headerDecoded = false;
+        detailsDecoded = false;
+        return this;
+    }
+
+    /**
+     * Gets the inode index, the position of the inode in the repository sorted by inode id.
+     *
+     * @return the index.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the inode type.
+     */
+    public INode.Type getType() {
+        if (null != columns) {
+            return columns.getType(index);
+        }
+        decodeHeader();
+        final INode.Type t = INode.Type.forNumber(type);
+        if (null == t) {
+            throw new IllegalStateException("Unsupported inode type " + type + " for inode " + id);
+        }
+        return t;
+    }
+
+    /**
+     * @return true, if type is file.
+     */
+    public boolean isFile() {
+        return typeNumber() == INode.Type.FILE_VALUE;
+    }
+
+    /**
+     * @return true, if type is directory.
+     */
+    public boolean isDirectory() {
+        return typeNumber() == INode.Type.DIRECTORY_VALUE;
+    }
+
+    /**
+     * @return true, if type is symlink.
+     */
+    public boolean isSymlink() {
+        return typeNumber() == INode.Type.SYMLINK_VALUE;
+    }
+
+    private int typeNumber() {
+        if (null != columns) {
+            return columns.getTypeNumber(index);
+        }
+        decodeHeader();
+        return type;
+    }
+
+    /**
+     * @return the inode id.
+     */
+    public long getId() {
+        decodeHeader();
+        return id;
+    }
+
+    /**
+     * @return the UTF-8 decoded name, or an empty string for root.
+     */
+    public String getName() {
+        decodeHeader();
+        if (nameLength == 0) {
+            return "";
+        }
+        if (null != array) {
+            return new String(array, nameStart, nameLength, StandardCharsets.UTF_8);
+        }
+        final byte[] bytes = new byte[nameLength];
+        buffer.get(nameStart, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the name, without creating a String.
+     *
+     * @param path the path to append to.
+     */
+    void appendName(PathBuffer path) {
+        decodeHeader();
+        if (null != array) {
+            path.appendUtf8(array, nameStart, nameLength);
+        } else {
+            path.appendUtf8(buffer, nameStart, nameLength);
+        }
+    }
+
+    /**
+     * Hashes the raw UTF-8 name, without creating a String.
+     *
+     * @return the hash, see {@link ChildNameIndex#hash(byte[])}.
+     */
+    int nameHash() {
+        decodeHeader();
+        int hash = ChildNameIndex.initialHash();
+        for (int i = nameStart, nameEnd = nameStart + nameLength; i < nameEnd; i++) {
+            hash = ChildNameIndex.hash(hash, null != array ? array[i] : buffer.get(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Compares the raw UTF-8 name, without creating a String.
+     *
+     * @param name the UTF-8 encoded name.
+     * @return true, if equal.
+     */
+    boolean nameEquals(byte[] name) {
+        decodeHeader();
+        if (name.length != nameLength) {
+            return false;
+        }
+        if (null != array) {
+            return Arrays.equals(array, nameStart, nameStart + nameLength, name, 0, nameLength);
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if (buffer.get(nameStart + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the numeric permission, containing user and group serial number and FS permission.
+     *
+     * @return the permission.
+     * @see FsImageData#getPermissionStatus(long)
+     */
+    public long getPermission() {
+        if (null != columns) {
+            return columns.getPermission(index);
+        }
+        decodeDetails();
+        return permission;
+    }
+
+    /**
+     * @return the user id, see {@link FsImageData#getUserName(int)}.
+     */
+    public int getUserId() {
+        return SerialNames.getUserId(getPermission());
+    }
+
+    /**
+     * @return the group id, see {@link FsImageData#getGroupName(int)}.
+     */
+    public int getGroupId() {
+        return SerialNames.getGroupId(getPermission());
+    }
+
+    /**
+     * @return the modification time, in milliseconds since epoch.
+     */
+    public long getModificationTime() {
+        if (null != columns) {
+            return columns.getModificationTime(index);
+        }
+        decodeDetails();
+        return modificationTime;
+    }
+
+    /**
+     * Gets the file replication, honoring erasure coding like {@link FsUtil#getFileReplication}.
+     *
+     * @return the replication, or 0 if not a file.
+     */
+    public int getReplication() {
+        decodeDetails();
+        return erasureCodingPolicyId >= 0 ? INodeFile.DEFAULT_REPL_FOR_STRIPED_BLOCKS : replication;
+    }
+
+    /**
+     * Gets the file size, see {@link FsUtil#getFileSize}.
+     *
+     * @return the sum of all block sizes, or 0 if not a file.
+     */
+    public long getFileSize() {
+        if (null != columns) {
+            return columns.getFileSize(index);
+        }
+        decodeDetails();
+        return fileSize;
+    }
+
+    /**
+     * Gets the consumed file size, see {@link FsUtil#getConsumedFileSize}.
+     *
+     * @return the consumed size, or 0 if not a file.
+     */
+    public long getConsumedFileSize() {
+        if (null != columns) {
+            return columns.getConsumedFileSize(index);
+        }
+        decodeDetails();
+        if (erasureCodingPolicyId < 0) {
+            return fileSize * replication;
+        }
+        // Rescan blocks, as the policy follows the blocks on the wire
+        final ErasureCodingPolicy ecp = SystemErasureCodingPolicies.getByID((byte) erasureCodingPolicyId);
+        long size = 0;
+        pos = detailsStart;
+        while (pos < detailsEnd) {
+            final int tag = readRawVarint32();
+            if (tag == (6 << 3 | WIRETYPE_LENGTH_DELIMITED)) {
+                size += FsUtil.getConsumedBlockSize(ecp, decodeBlockNumBytes());
+            } else {
+                skipField(tag & 0x7, detailsEnd);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of blocks, or 0 if not a file.
+     */
+    public int getBlocksCount() {
+        if (null != columns) {
+            return columns.getBlocksCount(index);
+        }
+        decodeDetails();
+        return blocksCount;
+    }
+
+    /**
+     * Fully parses the inode.
+     *
+     * @return the parsed inode.
+     * @throws InvalidProtocolBufferException if protobuf deserialization fails.
+     */
+    public INode toINode() throws InvalidProtocolBufferException {
+        if (null != array) {
+            return INODE_PARSER.parseFrom(array, start, end - start);
+        }
+        return INODE_PARSER.parseFrom(buffer.slice(start, end - start));
+    }
+
+    private void decodeHeader() {
+        if (headerDecoded) {
+            return;
+        }
+        type = 0;
+        id = 0;
+        nameStart = start;
+        nameLength = 0;
+        detailsStart = detailsEnd = start;
+        pos = start;
+        while (pos < end) {
+            final int tag = readRawVarint32();
+            final int wireType = tag & 0x7;
+            switch (tag >>> 3) {
+                case 1 -> type = readRawVarint32();
+                case 2 -> id = readRawVarint64();
+                case 3 -> {
+                    nameLength = readRawVarint32();
+                    nameStart = pos;
+                    pos = checkedEnd(nameLength, end);
+                }
+                case 4, 5, 6 -> {
+                    final int length = readRawVarint32();
+                    detailsStart = pos;
+                    detailsEnd = pos = checkedEnd(length, end);
+                }
+                default -> skipField(wireType, end);
+            }
+        }
+        headerDecoded = true;
+    }
+
+    private void decodeDetails() {
+        if (detailsDecoded) {
+            return;
+        }
+        decodeHeader();
+        permission = 0;
+        modificationTime = 0;
+        replication = 0;
+        blocksCount = 0;
+        fileSize = 0;
+        erasureCodingPolicyId = -1;
+        pos = detailsStart;
+        while (pos < detailsEnd) {
+            final int tag = readRawVarint32();
+            switch (type) {
+                case INode.Type.FILE_VALUE -> decodeFileField(tag);
+                case INode.Type.DIRECTORY_VALUE -> decodeDirectoryField(tag);
+                case INode.Type.SYMLINK_VALUE -> decodeSymlinkField(tag);
+                default -> skipField(tag & 0x7, detailsEnd);
+            }
+        }
+        detailsDecoded = true;
+    }
+
+    private void decodeFileField(int tag) {
+        switch (tag) {
+            case 1 << 3 | WIRETYPE_VARINT -> replication = readRawVarint32();
+            case 2 << 3 | WIRETYPE_VARINT -> modificationTime = readRawVarint64();
+            case 5 << 3 | WIRETYPE_FIXED64 -> permission = readRawLittleEndian64();
+            case 6 << 3 | WIRETYPE_LENGTH_DELIMITED -> {
+                blocksCount++;
+                fileSize += decodeBlockNumBytes();
+            }
+            case 12 << 3 | WIRETYPE_VARINT -> erasureCodingPolicyId = readRawVarint32();
+            default -> skipField(tag & 0x7, detailsEnd);
+        }
+    }
+
+    private void decodeDirectoryField(int tag) {
+        switch (tag) {
+            case 1 << 3 | WIRETYPE_VARINT -> modificationTime = readRawVarint64();
+            case 4 << 3 | WIRETYPE_FIXED64 -> permission = readRawLittleEndian64();
+            default -> skipField(tag & 0x7, detailsEnd);
+        }
+    }
+
+    private void decodeSymlinkField(int tag) {
+        switch (tag) {
+            case 1 << 3 | WIRETYPE_FIXED64 -> permission = readRawLittleEndian64();
+            case 3 << 3 | WIRETYPE_VARINT -> modificationTime = readRawVarint64();
+            default -> skipField(tag & 0x7, detailsEnd);
+        }
+    }
+
+    /**
+     * Decodes the length delimited BlockProto numBytes (field 3), positioned after the block.
+     */
+    private long decodeBlockNumBytes() {
+        final int blockEnd = checkedEnd(readRawVarint32(), detailsEnd);
+        long numBytes = 0;
+        while (pos < blockEnd) {
+            final int tag = readRawVarint32();
+            if (tag == (3 << 3 | WIRETYPE_VARINT)) {
+                numBytes = readRawVarint64();
+            } else {
+                skipField(tag & 0x7, blockEnd);
+            }
+        }
+        return numBytes;
+    }
+
+    private void skipField(int wireType, int limit) {
+        switch (wireType) {
+            case WIRETYPE_VARINT -> readRawVarint64();
+            case WIRETYPE_FIXED64 -> pos = checkedEnd(8, limit);
+            case WIRETYPE_LENGTH_DELIMITED -> pos = checkedEnd(readRawVarint32(), limit);
+            case WIRETYPE_FIXED32 -> pos = checkedEnd(4, limit);
+            default -> throw new IllegalArgumentException("Unsupported wire type " + wireType + " at " + pos);
+        }
+    }
+
+    private int checkedEnd(int length, int limit) {
+        final int fieldEnd = pos + length;
+        if (length < 0 || fieldEnd > limit) {
+            throw new IllegalArgumentException("Malformed length " + length + " at " + pos + " exceeds limit " + limit);
+        }
+        return fieldEnd;
+    }
+
+    private byte readRawByte() {
+        if (pos >= end) {
+            throw new IllegalArgumentException("Malformed inode, read beyond end " + end);
+        }
+        return null != array ? array[pos++] : buffer.get(pos++);
+    }
+
+    private int readRawVarint32() {
+        return (int) readRawVarint64();
+    }
+
+    private long readRawVarint64() {
+        // Extracted from CodedInputStream.readRawVarint64()
+        int shift = 0;
+        long result = 0;
+        while (shift < 64) {
+            final byte b = readRawByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+        throw new IllegalArgumentException("Malformed varint at " + pos);
+    }
+
+    private long readRawLittleEndian64() {
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result |= (readRawByte() & 0xFFL) << (8 * i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "INodeView{index=" + index + ", id=" + getId() + ", type=" + getType() + ", name=" + getName() + '}';
+    }
+}
@@ -0,0 +1,196 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static de.m3y.hadoop.hdfs.hfsa.core.FsImageData.ROOT_PATH;
+
+/**
+ * Depth first traversal for an {@link INodeViewAggregator}, merging accumulators bottom-up.
+ * <p>
+ * Reuses one {@link INodeView} per tree level and one {@link PathBuffer}, like {@link INodeViewTraversal}.
+ * Subtrees selected by the fork policy are aggregated as separate fork/join tasks, and merged into their parent
+ * directory before its post-order callback.
+ *
+ * @param <A> the accumulator type.
+ */
+final class INodeViewAggregation<A> {
+    /**
+     * Decides which child directories to aggregate as separate task.
+     */
+    @FunctionalInterface
+    interface ForkPolicy {
+        /**
+         * Never forks, aggregating in the calling thread.
+         */
+        ForkPolicy SEQUENTIAL = (depth, numChildren) -> false;
+
+        /**
+         * @param depth       the depth of the directory, relative to the start directory.
+         * @param numChildren the number of directory children.
+         * @return true, if the directory should be aggregated as a separate task.
+         */
+        boolean shouldFork(int depth, int numChildren);
+    }
+
+    private final FsImageData fsImageData;
+    private final DirectoryIndex directories;
+    private final INodeViewAggregator<A> aggregator;
+    private final ForkPolicy forkPolicy;
+    private final AtomicBoolean stopped;
+    private final int startDepth;
+    private final PathBuffer path = new PathBuffer();
+    private final List<INodeView> views = new ArrayList<>();
+
+    INodeViewAggregation(FsImageData fsImageData, INodeViewAggregator<A> aggregator, ForkPolicy forkPolicy) {
+        this(fsImageData, aggregator, forkPolicy, new AtomicBoolean(), 0);
+    }
+
+    private INodeViewAggregation(FsImageData fsImageData, INodeViewAggregator<A> aggregator, ForkPolicy forkPolicy,
+                                 AtomicBoolean stopped, int startDepth) {
+        this.fsImageData = fsImageData;
+        this.directories = fsImageData.getDirectoryIndex();
+        this.aggregator = aggregator;
+        this.forkPolicy = forkPolicy;
+        this.stopped = stopped;
+        this.startDepth = startDepth;
+    }
+
+    /**
+     * @param depth the depth of the subtree to aggregate.
+     * @return a new aggregation sharing the stop decision, for concurrently aggregating the subtree.
+     */
+    private INodeViewAggregation<A> fork(int depth) {
+        return new INodeViewAggregation<>(fsImageData, aggregator, forkPolicy, stopped, depth);
+    }
+
+    private INodeView view(int depth) {
+        final int level = depth - startDepth;
+        while (views.size() <= level) {
+            views.add(fsImageData.newINodeView());
+        }
+        return views.get(level);
+    }
+
+    /**
+     * Aggregates the subtree of the given directory path.
+     *
+     * @param directoryPath the directory path to start with.
+     * @return the accumulator of the start directory.
+     * @throws IOException on error, e.g. FileNotFoundException if the path does not exist.
+     */
+    A aggregate(String directoryPath) throws IOException {
+        final long id = fsImageData.getINodeFromPath(directoryPath).getId();
+        final int index = fsImageData.getINodeIndex(id);
+        final String parentPath;
+        if (ROOT_PATH.equals(directoryPath)) {
+            parentPath = directoryPath;
+        } else {
+            // Strip the start directory name and separator
+            final String name = fsImageData.loadINodeView(index, view(0)).getName();
+            final int end = directoryPath.length() - name.length() - 1;
+            parentPath = end > 0 ? directoryPath.substring(0, end) : ROOT_PATH;
+        }
+        final AggregateTask<A> task = new AggregateTask<>(this, index, parentPath, 0);
+        if (ForkPolicy.SEQUENTIAL == forkPolicy) {
+            return task.compute();
+        }
+        // Stay within the pool of the calling thread, if any
+        return ForkJoinTask.inForkJoinPool() ? task.invoke() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Aggregates a directory subtree.
+     *
+     * @param directory the directory, positioned at the view of given depth.
+     * @param depth     the depth.
+     * @return the directory accumulator.
+     */
+    private A aggregateDirectory(INodeView directory, int depth) {
+        final A accumulator = aggregator.newAccumulator();
+        final VisitResult result = aggregator.visitDirectory(directory, path);
+        if (VisitResult.STOP == result) {
+            stopped.set(true);
+            return accumulator;
+        }
+        if (VisitResult.CONTINUE == result) {
+            final int dirIdx = directories.indexOf(directory.getId());
+            if (dirIdx >= 0) {
+                path.push(directory);
+                final List<AggregateTask<A>> forks = aggregateChildren(accumulator, dirIdx, depth + 1);
+                path.pop();
+                for (AggregateTask<A> task : forks) {
+                    aggregator.merge(accumulator, task.join());
+                }
+            }
+        }
+        if (!stopped.get()) {
+            aggregator.onDirectoryExit(directory, path, accumulator);
+        }
+        return accumulator;
+    }
+
+    private List<AggregateTask<A>> aggregateChildren(A accumulator, int dirIdx, int depth) {
+        List<AggregateTask<A>> forks = List.of();
+        final INodeView child = view(depth);
+        for (int i = directories.childrenStart(dirIdx), end = directories.childrenEnd(dirIdx);
+             i < end && !stopped.get(); i++) {
+            fsImageData.loadChildView(i, child);
+            if (child.isDirectory()) {
+                final int childDirIdx = directories.indexOf(child.getId());
+                final int numChildren = childDirIdx < 0 ? 0 :
+                        directories.childrenEnd(childDirIdx) - directories.childrenStart(childDirIdx);
+                if (forkPolicy.shouldFork(depth, numChildren)) {
+                    if (forks.isEmpty()) {
+                        forks = new ArrayList<>();
+                    }
+                    final AggregateTask<A> task = new AggregateTask<>(fork(depth), child.getIndex(),
+                            path.toString(), depth);
+                    task.fork();
+                    forks.add(task);
+                } else {
+                    aggregator.merge(accumulator, aggregateDirectory(child, depth));
+                }
+            } else if (child.isFile()) {
+                aggregator.onFile(accumulator, child, path);
+            } else if (child.isSymlink()) {
+                aggregator.onSymLink(accumulator, child, path);
+            } else {
+                // Should not happen
+                throw new IllegalStateException("Unsupported inode type for " + child);
+            }
+        }
+        return forks;
+    }
+
+    /**
+     * Aggregates a directory subtree, using its own aggregation.
+     */
+    private static final class AggregateTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient INodeViewAggregation<A> aggregation;
+        private final int index;
+        private final String parentPath;
+        private final int depth;
+
+        AggregateTask(INodeViewAggregation<A> aggregation, int index, String parentPath, int depth) {
+            this.aggregation = aggregation;
+            this.index = index;
+            this.parentPath = parentPath;
+            this.depth = depth;
+        }
+
+        @Override
+        protected A compute() {
+            aggregation.path.reset(parentPath);
+            final INodeView directory = aggregation.fsImageData.loadINodeView(index, aggregation.view(depth));
+            return aggregation.aggregateDirectory(directory, depth);
+        }
+    }
+}
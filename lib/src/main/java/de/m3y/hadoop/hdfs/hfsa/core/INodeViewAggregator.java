@@ -0,0 +1,75 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+/**
+ * Visitor aggregating values bottom-up, e.g. for computing recursive directory sizes.
+ * <p>
+ * Every directory gets its own accumulator, which receives the files and symlinks of the directory
+ * and the merged accumulators of all child directories.
+ * Once complete, the accumulator is handed to the post-order callback {@link #onDirectoryExit(INodeView, CharSequence, Object)}.
+ * Only the accumulators of the directories currently traversed are live, instead of one per path.
+ * <p>
+ * An accumulator is only used by one thread at a time, so it does not need to be thread safe.
+ * The callbacks of different directories might be invoked concurrently, though, when visiting in parallel.
+ * As for {@link INodeViewVisitor}, view and path are only valid during the callback.
+ *
+ * @param <A> the accumulator type.
+ * @see FsVisitor.Builder#aggregate(FsImageData, INodeViewAggregator, String)
+ */
+public interface INodeViewAggregator<A> {
+    /**
+     * Creates an empty accumulator, for a directory.
+     *
+     * @return the new accumulator.
+     */
+    A newAccumulator();
+
+    /**
+     * Invoked for each directory before visiting its children, deciding whether to visit the children.
+     * <p>
+     * If skipping the children, the directory still gets its post-order callback with an empty accumulator.
+     *
+     * @param inode the directory inode view.
+     * @param path  the current path.
+     * @return the decision, how to continue.
+     */
+    default VisitResult visitDirectory(INodeView inode, CharSequence path) {
+        return VisitResult.CONTINUE;
+    }
+
+    /**
+     * Invoked for each file.
+     *
+     * @param accumulator the accumulator of the parent directory.
+     * @param inode       the file inode view.
+     * @param path        the current path.
+     */
+    void onFile(A accumulator, INodeView inode, CharSequence path);
+
+    /**
+     * Invoked for each symlink.
+     *
+     * @param accumulator the accumulator of the parent directory.
+     * @param inode       the symlink inode view.
+     * @param path        the current path.
+     */
+    default void onSymLink(A accumulator, INodeView inode, CharSequence path) {
+        // Ignored by default
+    }
+
+    /**
+     * Merges the accumulator of a child directory, after its post-order callback.
+     *
+     * @param accumulator the accumulator of the parent directory, to merge into.
+     * @param child       the complete accumulator of the child directory.
+     */
+    void merge(A accumulator, A child);
+
+    /**
+     * Invoked for each directory after all its descendants got visited and merged.
+     *
+     * @param inode       the directory inode view.
+     * @param path        the current path.
+     * @param accumulator the complete accumulator of the directory subtree.
+     */
+    void onDirectoryExit(INodeView inode, CharSequence path, A accumulator);
+}
@@ -0,0 +1,85 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.util.Objects;
+
+/**
+ * Batch of inode views, delivered to an {@link INodeViewBatchVisitor}.
+ * <p>
+ * Batch and views get reused, so they are only valid during the callback.
+ */
+public final class INodeViewBatch {
+    private final FsImageData fsImageData;
+    private final INodeView[] views;
+    private int size;
+
+    INodeViewBatch(FsImageData fsImageData, int capacity) {
+        this.fsImageData = fsImageData;
+        this.views = new INodeView[capacity];
+    }
+
+    /**
+     * Creates a batch of views on serialized inodes, e.g. when streaming the INODE section.
+     *
+     * @param capacity the max number of inodes.
+     */
+    INodeViewBatch(int capacity) {
+        this(null, capacity);
+    }
+
+    /**
+     * Adds an inode.
+     *
+     * @param index the inode index.
+     * @return true, if the batch is full.
+     */
+    boolean add(int index) {
+        INodeView view = views[size];
+        if (null == view) {
+            view = fsImageData.newINodeView();
+            views[size] = view;
+        }
+        fsImageData.loadINodeView(index, view);
+        return ++size == views.length;
+    }
+
+    /**
+     * Adds a serialized inode.
+     *
+     * @param index  the inode index, e.g. the position within the INODE section.
+     * @param array  the array.
+     * @param offset the offset of the serialized inode.
+     * @param length the length of the serialized inode.
+     * @return true, if the batch is full.
+     */
+    boolean add(int index, byte[] array, int offset, int length) {
+        INodeView view = views[size];
+        if (null == view) {
+            view = new INodeView();
+            views[size] = view;
+        }
+        view.reset(index, array, offset, length);
+        return ++size == views.length;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the number of inodes in this batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets an inode view.
+     *
+     * @param i the position, from 0 to {@link #size()} (exclusive).
+     * @return the view.
+     */
+    public INodeView get(int i) {
+        Objects.checkIndex(i, size);
+        return views[i];
+    }
+}
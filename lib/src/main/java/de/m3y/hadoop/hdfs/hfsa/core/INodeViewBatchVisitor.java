@@ -0,0 +1,51 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+/**
+ * Visitor receiving files, directories and symlinks in batches, for e.g. computing statistics
+ * without per inode synchronization.
+ * <p>
+ * Every worker thread collects the visited inodes into its own batch, and hands the full batch together with its
+ * own accumulator to {@link #onBatch(Object, INodeViewBatch)}. After visiting, the accumulators of all workers get
+ * merged. As an accumulator is only used by one thread at a time, it does not need to be thread safe.
+ * <p>
+ * Batches contain no paths, use {@link INodeViewVisitor} or {@link INodeViewAggregator} for path dependent logic.
+ *
+ * @param <A> the accumulator type.
+ * @see FsVisitor.Builder#visitBatched(FsImageData, INodeViewBatchVisitor, String)
+ */
+public interface INodeViewBatchVisitor<A> {
+    /**
+     * Default number of inodes per batch.
+     */
+    int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * Creates an empty accumulator, for a worker.
+     *
+     * @return the new accumulator.
+     */
+    A newAccumulator();
+
+    /**
+     * Invoked for each batch of inodes.
+     *
+     * @param accumulator the accumulator of the worker.
+     * @param batch       the batch of files, directories and symlinks.
+     */
+    void onBatch(A accumulator, INodeViewBatch batch);
+
+    /**
+     * Merges the accumulator of another worker.
+     *
+     * @param accumulator the accumulator, to merge into.
+     * @param other       the complete accumulator of another worker.
+     */
+    void merge(A accumulator, A other);
+
+    /**
+     * @return the maximum number of inodes per batch, {@value #DEFAULT_BATCH_SIZE} by default.
+     */
+    default int batchSize() {
+        return DEFAULT_BATCH_SIZE;
+    }
+}
@@ -0,0 +1,86 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+/**
+ * Adapts an {@link INodeViewBatchVisitor} to an {@link INodeViewCollector}, collecting inodes into one batch per
+ * worker.
+ *
+ * @param <A> the accumulator type.
+ */
+final class INodeViewBatching<A> implements INodeViewCollector<INodeViewBatching.Worker<A>> {
+    private final FsImageData fsImageData;
+    private final INodeViewBatchVisitor<A> visitor;
+    private final int batchSize;
+
+    /**
+     * Batch and accumulator of a worker.
+     */
+    static final class Worker<A> {
+        private final INodeViewBatchVisitor<A> visitor;
+        private final A accumulator;
+        private final INodeViewBatch batch;
+
+        Worker(INodeViewBatchVisitor<A> visitor, INodeViewBatch batch) {
+            this.visitor = visitor;
+            this.accumulator = visitor.newAccumulator();
+            this.batch = batch;
+        }
+
+        void add(INodeView inode) {
+            add(inode.getIndex());
+        }
+
+        void add(int index) {
+            if (batch.add(index)) {
+                flush();
+            }
+        }
+
+        /**
+         * Delivers the remaining, partial batch.
+         *
+         * @return the accumulator.
+         */
+        A flush() {
+            if (batch.size() > 0) {
+                visitor.onBatch(accumulator, batch);
+                batch.clear();
+            }
+            return accumulator;
+        }
+    }
+
+    INodeViewBatching(FsImageData fsImageData, INodeViewBatchVisitor<A> visitor) {
+        this.fsImageData = fsImageData;
+        this.visitor = visitor;
+        this.batchSize = visitor.batchSize();
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Expected batch size > 0, but got " + batchSize);
+        }
+    }
+
+    @Override
+    public Worker<A> newAccumulator() {
+        return new Worker<>(visitor, new INodeViewBatch(fsImageData, batchSize));
+    }
+
+    @Override
+    public void onFile(Worker<A> worker, INodeView inode, CharSequence path) {
+        worker.add(inode);
+    }
+
+    @Override
+    public VisitResult visitDirectory(Worker<A> worker, INodeView inode, CharSequence path) {
+        worker.add(inode);
+        return VisitResult.CONTINUE;
+    }
+
+    @Override
+    public void onSymLink(Worker<A> worker, INodeView inode, CharSequence path) {
+        worker.add(inode);
+    }
+
+    @Override
+    public void combine(Worker<A> worker, Worker<A> other) {
+        visitor.merge(worker.accumulator, other.flush());
+    }
+}
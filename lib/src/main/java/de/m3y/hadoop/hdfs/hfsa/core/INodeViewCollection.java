@@ -0,0 +1,47 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+/**
+ * Adapts an {@link INodeViewCollector} to an {@link INodeViewVisitor}, using one accumulator per visiting thread.
+ *
+ * @param <A> the accumulator type.
+ */
+final class INodeViewCollection<A> implements INodeViewVisitor {
+    private final INodeViewCollector<A> collector;
+    private final PerThreadAccumulators<A> accumulators;
+
+    INodeViewCollection(INodeViewCollector<A> collector) {
+        this.collector = collector;
+        this.accumulators = new PerThreadAccumulators<>(collector::newAccumulator);
+    }
+
+    @Override
+    public void onFile(INodeView inode, CharSequence path) {
+        collector.onFile(accumulators.get(), inode, path);
+    }
+
+    @Override
+    public void onDirectory(INodeView inode, CharSequence path) {
+        visitDirectory(inode, path);
+    }
+
+    @Override
+    public VisitResult visitDirectory(INodeView inode, CharSequence path) {
+        return collector.visitDirectory(accumulators.get(), inode, path);
+    }
+
+    @Override
+    public void onSymLink(INodeView inode, CharSequence path) {
+        collector.onSymLink(accumulators.get(), inode, path);
+    }
+
+    /**
+     * Combines the accumulators of all workers.
+     * <p>
+     * Must be invoked once after visiting completed.
+     *
+     * @return the combined accumulator.
+     */
+    A finish() {
+        return accumulators.combine(collector::combine);
+    }
+}
@@ -0,0 +1,61 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+/**
+ * Collects results from visiting, using one accumulator per worker thread which get combined after visiting.
+ * <p>
+ * Unlike an {@link INodeViewVisitor} updating shared state, accumulating needs no locks or atomics:
+ * an accumulator is only used by one thread at a time, so it does not need to be thread safe.
+ * As for {@link INodeViewVisitor}, view and path are only valid during the callback.
+ *
+ * @param <A> the accumulator type.
+ * @see FsVisitor.Builder#collect(FsImageData, INodeViewCollector, String)
+ * @see PerThreadAccumulators
+ */
+public interface INodeViewCollector<A> {
+    /**
+     * Creates an empty accumulator, for a worker.
+     *
+     * @return the new accumulator.
+     */
+    A newAccumulator();
+
+    /**
+     * Invoked for each file.
+     *
+     * @param accumulator the accumulator of the worker.
+     * @param inode       the file inode view.
+     * @param path        the current path.
+     */
+    void onFile(A accumulator, INodeView inode, CharSequence path);
+
+    /**
+     * Invoked for each directory, deciding whether to visit the directory children.
+     *
+     * @param accumulator the accumulator of the worker.
+     * @param inode       the directory inode view.
+     * @param path        the current path.
+     * @return the decision, how to continue. Continues by default.
+     */
+    default VisitResult visitDirectory(A accumulator, INodeView inode, CharSequence path) {
+        return VisitResult.CONTINUE;
+    }
+
+    /**
+     * Invoked for each symlink.
+     *
+     * @param accumulator the accumulator of the worker.
+     * @param inode       the symlink inode view.
+     * @param path        the current path.
+     */
+    default void onSymLink(A accumulator, INodeView inode, CharSequence path) {
+        // Ignored by default
+    }
+
+    /**
+     * Combines the accumulator of another worker.
+     *
+     * @param accumulator the accumulator, to combine into.
+     * @param other       the complete accumulator of another worker.
+     */
+    void combine(A accumulator, A other);
+}
@@ -0,0 +1,216 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Depth first traversal of the directory tree, reusing one {@link INodeView} per tree level
+ * and one {@link PathBuffer} for the current directory path.
+ * <p>
+ * Not thread safe, use {@link #fork()} for traversing subtrees concurrently.
+ * Forks share the stop decision, see {@link VisitResult#STOP}.
+ */
+abstract class INodeViewTraversal {
+    final FsImageData fsImageData;
+    final DirectoryIndex directories;
+    final PathBuffer path = new PathBuffer();
+    private final List<INodeView> views = new ArrayList<>();
+    private final AtomicBoolean stopped;
+
+    INodeViewTraversal(FsImageData fsImageData, AtomicBoolean stopped) {
+        this.fsImageData = fsImageData;
+        this.directories = fsImageData.getDirectoryIndex();
+        this.stopped = stopped;
+    }
+
+    /**
+     * Creates a traversal handing out views.
+     *
+     * @param fsImageData the FSImage data.
+     * @param visitor     the visitor.
+     * @return the traversal.
+     */
+    static INodeViewTraversal of(FsImageData fsImageData, INodeViewVisitor visitor) {
+        return of(fsImageData, visitor, new AtomicBoolean());
+    }
+
+    private static INodeViewTraversal of(FsImageData fsImageData, INodeViewVisitor visitor, AtomicBoolean stopped) {
+        return new INodeViewTraversal(fsImageData, stopped) {
+            @Override
+            void onFile(INodeView inode, CharSequence path) {
+                visitor.onFile(inode, path);
+            }
+
+            @Override
+            VisitResult onDirectory(INodeView inode, CharSequence path) {
+                return visitor.visitDirectory(inode, path);
+            }
+
+            @Override
+            void onSymLink(INodeView inode, CharSequence path) {
+                visitor.onSymLink(inode, path);
+            }
+
+            @Override
+            INodeViewTraversal fork() {
+                return INodeViewTraversal.of(fsImageData, visitor, stopped);
+            }
+        };
+    }
+
+    /**
+     * Creates a traversal handing out parsed inodes.
+     *
+     * @param fsImageData the FSImage data.
+     * @param visitor     the visitor.
+     * @return the traversal.
+     */
+    static INodeViewTraversal of(FsImageData fsImageData, FsVisitor visitor) {
+        return of(fsImageData, visitor, new AtomicBoolean());
+    }
+
+    private static INodeViewTraversal of(FsImageData fsImageData, FsVisitor visitor, AtomicBoolean stopped) {
+        return new INodeViewTraversal(fsImageData, stopped) {
+            @Override
+            void onFile(INodeView inode, CharSequence path) throws IOException {
+                visitor.onFile(inode.toINode(), path.toString());
+            }
+
+            @Override
+            VisitResult onDirectory(INodeView inode, CharSequence path) throws IOException {
+                return visitor.visitDirectory(inode.toINode(), path.toString());
+            }
+
+            @Override
+            void onSymLink(INodeView inode, CharSequence path) throws IOException {
+                visitor.onSymLink(inode.toINode(), path.toString());
+            }
+
+            @Override
+            INodeViewTraversal fork() {
+                return INodeViewTraversal.of(fsImageData, visitor, stopped);
+            }
+        };
+    }
+
+    abstract void onFile(INodeView inode, CharSequence path) throws IOException;
+
+    abstract VisitResult onDirectory(INodeView inode, CharSequence path) throws IOException;
+
+    abstract void onSymLink(INodeView inode, CharSequence path) throws IOException;
+
+    /**
+     * @return a new traversal with same visitor, for concurrently traversing another subtree.
+     */
+    abstract INodeViewTraversal fork();
+
+    /**
+     * Invokes the directory callback.
+     *
+     * @param inode the directory inode view.
+     * @param path  the current path.
+     * @return true, if the children should be visited.
+     * @throws IOException on error.
+     */
+    boolean enterDirectory(INodeView inode, CharSequence path) throws IOException {
+        final VisitResult result = onDirectory(inode, path);
+        switch (result) {
+            case CONTINUE:
+                return true;
+            case SKIP_CHILDREN:
+                return false;
+            case STOP:
+                stopped.set(true);
+                return false;
+            default:
+                throw new IllegalStateException("Unsupported visit result " + result);
+        }
+    }
+
+    /**
+     * @return true, if the visitor stopped this traversal or any fork.
+     */
+    boolean isStopped() {
+        return stopped.get();
+    }
+
+    /**
+     * Gets the reused view for a tree level.
+     *
+     * @param depth the depth, relative to the traversal start.
+     * @return the view.
+     */
+    INodeView view(int depth) {
+        while (views.size() <= depth) {
+            views.add(fsImageData.newINodeView());
+        }
+        return views.get(depth);
+    }
+
+    /**
+     * Positions the view of the given level on an inode.
+     *
+     * @param index the inode index.
+     * @param depth the depth.
+     * @return the view.
+     */
+    INodeView load(int index, int depth) {
+        return fsImageData.loadINodeView(index, view(depth));
+    }
+
+    /**
+     * Positions the view of the first level on the inode of given path.
+     *
+     * @param path the path.
+     * @return the view.
+     * @throws IOException on error, e.g. FileNotFoundException if the path does not exist.
+     */
+    INodeView loadPath(String path) throws IOException {
+        final long id = fsImageData.getINodeFromPath(path).getId();
+        return load(fsImageData.getINodeIndex(id), 0);
+    }
+
+    /**
+     * Visits the inode and, if a directory, all its descendants.
+     *
+     * @param inode the inode view, positioned by {@link #load(int, int)} for given depth.
+     * @param depth the depth.
+     * @throws IOException on error.
+     */
+    void visit(INodeView inode, int depth) throws IOException {
+        if (inode.isDirectory()) {
+            if (enterDirectory(inode, path)) {
+                final int dirIdx = directories.indexOf(inode.getId());
+                if (dirIdx >= 0) {
+                    path.push(inode);
+                    visitChildren(dirIdx, depth + 1);
+                    path.pop();
+                }
+            }
+        } else if (inode.isFile()) {
+            onFile(inode, path);
+        } else if (inode.isSymlink()) {
+            onSymLink(inode, path);
+        } else {
+            // Should not happen
+            throw new IllegalStateException("Unsupported inode type for " + inode);
+        }
+    }
+
+    /**
+     * Visits all children of a directory, and their descendants.
+     *
+     * @param dirIdx the directory index, with {@link #path} being the directory path.
+     * @param depth  the depth of the children.
+     * @throws IOException on error.
+     */
+    void visitChildren(int dirIdx, int depth) throws IOException {
+        final INodeView child = view(depth);
+        for (int i = directories.childrenStart(dirIdx), end = directories.childrenEnd(dirIdx);
+             i < end && !isStopped(); i++) {
+            visit(fsImageData.loadChildView(i, child), depth);
+        }
+    }
+}
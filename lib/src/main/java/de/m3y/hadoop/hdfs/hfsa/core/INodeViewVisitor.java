@@ -0,0 +1,50 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+/**
+ * Visitor for all files and directories, receiving lightweight inode views instead of parsed inodes.
+ * <p>
+ * View and path are only valid during the callback, as both get reused by the traversal, see {@link PathBuffer}.
+ * Copy any values to keep, e.g. by using <code>path.toString()</code> or {@link INodeView#toINode()}.
+ *
+ * @see FsVisitor.Builder#visit(FsImageData, INodeViewVisitor)
+ */
+public interface INodeViewVisitor {
+    /**
+     * Invoked for each file.
+     *
+     * @param inode the file inode view.
+     * @param path  the current path.
+     */
+    void onFile(INodeView inode, CharSequence path);
+
+    /**
+     * Invoked for each directory.
+     *
+     * @param inode the directory inode view.
+     * @param path  the current path.
+     */
+    void onDirectory(INodeView inode, CharSequence path);
+
+    /**
+     * Invoked for each directory, deciding whether to visit the directory children.
+     * <p>
+     * Override for pruning the traversal, e.g. skipping uninteresting subtrees.
+     * By default, invokes {@link #onDirectory(INodeView, CharSequence)} and continues.
+     *
+     * @param inode the directory inode view.
+     * @param path  the current path.
+     * @return the decision, how to continue.
+     */
+    default VisitResult visitDirectory(INodeView inode, CharSequence path) {
+        onDirectory(inode, path);
+        return VisitResult.CONTINUE;
+    }
+
+    /**
+     * Invoked for each symlink.
+     *
+     * @param inode the symlink inode view.
+     * @param path  the current path.
+     */
+    void onSymLink(INodeView inode, CharSequence path);
+}
@@ -0,0 +1,263 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.FileSummary;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeId;
+import org.apache.hadoop.thirdparty.protobuf.CodedOutputStream;
+import org.apache.hadoop.thirdparty.protobuf.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of INode repository memory mapping the INODE section of an uncompressed fsimage.
+ * <p>
+ * Only the inode ids and the section offsets of the inodes are kept on heap, while the inodes
+ * get parsed straight from the mapped buffers.
+ */
+class MappedINodesRepository implements FsImageLoader.INodesRepository {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedINodesRepository.class);
+    private static final Parser<INode> INODE_PARSER = INode.parser();
+    /**
+     * A single mapping is limited to 2 GiB, so sections get mapped in chunks of 1 GiB.
+     */
+    static final int DEFAULT_CHUNK_SHIFT = 30;
+
+    private final MappedSection section;
+    private final INodeIdIndex inodeIdIndex;
+    // offset of the (varint length delimited) inode within the section, sorted by inode id
+    private final long[] inodeOffsets;
+    private final INode rootInode;
+
+    MappedINodesRepository(MappedSection section, long[] inodeIds, long[] inodeOffsets) throws IOException {
+        this.section = section;
+        this.inodeIdIndex = INodeIdIndex.create(inodeIds);
+        this.inodeOffsets = inodeOffsets;
+        rootInode = INODE_PARSER.parseFrom(getInodeAsBuffer(INodeId.ROOT_INODE_ID));
+    }
+
+    static class Builder implements FsImageLoader.MappedINodesRepositoryBuilder {
+        private final int chunkShift;
+
+        Builder() {
+            this(DEFAULT_CHUNK_SHIFT);
+        }
+
+        /**
+         * @param chunkShift the mapped chunk size as power of two, e.g. 30 for 1 GiB chunks.
+         */
+        Builder(int chunkShift) {
+            this.chunkShift = chunkShift;
+        }
+
+        @Override
+        public FsImageLoader.INodesRepository build(FileChannel channel, FileSummary.Section s) throws IOException {
+            long start = System.currentTimeMillis();
+            final MappedSection mappedSection = MappedSection.map(channel, s.getOffset(), s.getLength(), chunkShift);
+
+            // Section header
+            final int headerSize = mappedSection.readRawVarint32(0);
+            long pos = CodedOutputStream.computeUInt32SizeNoTag(headerSize);
+            final FsImageProto.INodeSection inodeSection =
+                    FsImageProto.INodeSection.parseFrom(mappedSection.slice(pos, headerSize));
+            pos += headerSize;
+
+            // Check for overflow
+            if (inodeSection.getNumInodes() > Integer.MAX_VALUE) {
+                throw new IOException("Number of inodes " + inodeSection.getNumInodes()
+                        + " exceeds Integer.MAX_VALUE");
+            }
+            final int numInodes = (int) inodeSection.getNumInodes(); // Ok to downcast, checked above
+            final long[] inodeIds = new long[numInodes];
+            final long[] inodeOffsets = new long[numInodes];
+            for (int i = 0; i < numInodes; ++i) {
+                inodeOffsets[i] = pos;
+                final int size = mappedSection.readRawVarint32(pos);
+                pos += CodedOutputStream.computeUInt32SizeNoTag(size);
+                // See PrimitiveArrayINodesRepository.extractNodeId(): skip tag + enum + tag
+                inodeIds[i] = mappedSection.readRawVarint64(pos + 3);
+                pos += size;
+            }
+            LOG.debug("Mapped {} inodes [{}ms] of length {} bytes in {} chunk(s)",
+                    numInodes, System.currentTimeMillis() - start, s.getLength(), mappedSection.chunks.length);
+
+            start = System.currentTimeMillis();
+            final int[] order = sortedOrder(inodeIds);
+            LOG.debug("Sorted {} inodes [{}ms]", numInodes, System.currentTimeMillis() - start);
+            return new MappedINodesRepository(mappedSection,
+                    INodeIdSorter.permute(inodeIds, order), INodeIdSorter.permute(inodeOffsets, order));
+        }
+
+        protected int[] sortedOrder(long[] inodeIds) {
+            return INodeIdSorter.sortedOrder(inodeIds, false);
+        }
+    }
+
+    static class ParallelBuilder extends Builder {
+        ParallelBuilder() {
+            super();
+        }
+
+        ParallelBuilder(int chunkShift) {
+            super(chunkShift);
+        }
+
+        @Override
+        protected int[] sortedOrder(long[] inodeIds) {
+            return INodeIdSorter.sortedOrder(inodeIds, true);
+        }
+    }
+
+    private ByteBuffer getInodeAsBuffer(final long inodeId) {
+        final int idx = inodeIdIndex.indexOf(inodeId);
+        if (idx < 0) {
+            throw new IllegalArgumentException("Can not find inode by id " + inodeId);
+        }
+        return getInodeAsBufferByIndex(idx);
+    }
+
+    private ByteBuffer getInodeAsBufferByIndex(final int idx) {
+        final long offset = inodeOffsets[idx];
+        final int size = section.readRawVarint32(offset);
+        return section.slice(offset + CodedOutputStream.computeUInt32SizeNoTag(size), size);
+    }
+
+    @Override
+    public INode getInode(long inodeId) throws IOException {
+        if (INodeId.ROOT_INODE_ID == inodeId) {
+            return rootInode;
+        }
+        return INODE_PARSER.parseFrom(getInodeAsBuffer(inodeId));
+    }
+
+    @Override
+    public int indexOf(long inodeId) {
+        return inodeIdIndex.indexOf(inodeId);
+    }
+
+    @Override
+    public INode getInodeByIndex(int index) throws IOException {
+        if (INodeId.ROOT_INODE_ID == inodeIdIndex.getInodeId(index)) {
+            return rootInode;
+        }
+        return INODE_PARSER.parseFrom(getInodeAsBufferByIndex(index));
+    }
+
+    @Override
+    public long getInodeId(int index) {
+        return inodeIdIndex.getInodeId(index);
+    }
+
+    @Override
+    public INodeView loadView(int index, INodeView view) {
+        final long offset = inodeOffsets[index];
+        final int size = section.readRawVarint32(offset);
+        return section.loadView(offset + CodedOutputStream.computeUInt32SizeNoTag(size), size, index, view);
+    }
+
+    @Override
+    public int getSize() {
+        return inodeIdIndex.size();
+    }
+
+    @Override
+    public FsImageLoader.INodeLookupMode getLookupMode() {
+        return inodeIdIndex.getLookupMode();
+    }
+
+    /**
+     * Read only, chunked mapping of a file section.
+     * <p>
+     * All access is absolute, so concurrent readers do not interfere.
+     */
+    static final class MappedSection {
+        private final ByteBuffer[] chunks;
+        private final int chunkShift;
+        private final long chunkMask;
+
+        private MappedSection(ByteBuffer[] chunks, int chunkShift) {
+            this.chunks = chunks;
+            this.chunkShift = chunkShift;
+            chunkMask = (1L << chunkShift) - 1;
+        }
+
+        static MappedSection map(FileChannel channel, long offset, long length, int chunkShift) throws IOException {
+            final long chunkSize = 1L << chunkShift;
+            final int numChunks = (int) ((length + chunkSize - 1) >>> chunkShift);
+            final ByteBuffer[] chunks = new ByteBuffer[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                final long chunkOffset = (long) i << chunkShift;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + chunkOffset,
+                        Math.min(chunkSize, length - chunkOffset));
+            }
+            return new MappedSection(chunks, chunkShift);
+        }
+
+        byte get(long pos) {
+            return chunks[(int) (pos >>> chunkShift)].get((int) (pos & chunkMask));
+        }
+
+        /**
+         * Gets a view of the given range, copying only if the range spans more than one chunk.
+         *
+         * @param pos    the section offset.
+         * @param length the number of bytes.
+         * @return a buffer containing the range.
+         */
+        ByteBuffer slice(long pos, int length) {
+            final int chunkIdx = (int) (pos >>> chunkShift);
+            final int chunkOffset = (int) (pos & chunkMask);
+            final ByteBuffer chunk = chunks[chunkIdx];
+            if (chunkOffset + length <= chunk.limit()) {
+                return chunk.slice(chunkOffset, length);
+            }
+            final byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = get(pos + i);
+            }
+            return ByteBuffer.wrap(bytes);
+        }
+
+        /**
+         * Positions a view on the given range, copying only if the range spans more than one chunk.
+         *
+         * @param pos    the section offset.
+         * @param length the number of bytes.
+         * @param index  the inode index.
+         * @param view   the view.
+         * @return the view.
+         */
+        INodeView loadView(long pos, int length, int index, INodeView view) {
+            final ByteBuffer chunk = chunks[(int) (pos >>> chunkShift)];
+            final int chunkOffset = (int) (pos & chunkMask);
+            if (chunkOffset + length <= chunk.limit()) {
+                return view.reset(index, chunk, chunkOffset, length);
+            }
+            final ByteBuffer copy = slice(pos, length);
+            return view.reset(index, copy.array(), 0, length);
+        }
+
+        int readRawVarint32(long pos) {
+            return (int) readRawVarint64(pos);
+        }
+
+        long readRawVarint64(long pos) {
+            // Extracted from CodedInputStream.readRawVarint64()
+            int shift = 0;
+            long result = 0;
+            while (shift < 64) {
+                final byte b = get(pos++);
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+            throw new IllegalArgumentException("Malformed Varint at section offset " + (pos - 10));
+        }
+    }
+}
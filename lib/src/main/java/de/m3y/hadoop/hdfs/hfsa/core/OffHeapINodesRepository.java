@@ -0,0 +1,300 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeId;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.thirdparty.protobuf.CodedInputStream;
+import org.apache.hadoop.thirdparty.protobuf.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of INode repository appending the raw inodes to large off-heap segments.
+ * <p>
+ * The heap only contains the sorted inode ids and a packed (segment, offset, length) location per inode,
+ * instead of one byte array per inode.
+ * Note: Segments are allocated as direct buffers, so -XX:MaxDirectMemorySize must be large enough.
+ */
+class OffHeapINodesRepository implements FsImageLoader.INodesRepository {
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapINodesRepository.class);
+    private static final Parser<INode> INODE_PARSER = INode.parser();
+
+    // Packed location layout : 10 bits segment | 28 bits offset | 26 bits length
+    static final int LENGTH_BITS = 26;
+    static final int OFFSET_BITS = 28;
+    static final int SEGMENT_BITS = 64 - OFFSET_BITS - LENGTH_BITS;
+    static final int MAX_SEGMENT_SIZE = 1 << OFFSET_BITS; // 256 MiB
+    static final int MAX_SEGMENTS = 1 << SEGMENT_BITS;
+    static final int MAX_INODE_LENGTH = (1 << LENGTH_BITS) - 1; // ~64 MiB, Protobuf default size limit
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final ByteBuffer[] segments;
+    private final INodeIdIndex inodeIdIndex;
+    // packed inode locations, sorted by inode id
+    private final long[] inodeLocations;
+    private final INode rootInode;
+
+    OffHeapINodesRepository(ByteBuffer[] segments, long[] inodeIds, long[] inodeLocations) throws IOException {
+        this.segments = segments;
+        this.inodeIdIndex = INodeIdIndex.create(inodeIds);
+        this.inodeLocations = inodeLocations;
+        rootInode = INODE_PARSER.parseFrom(getInodeAsBuffer(INodeId.ROOT_INODE_ID));
+    }
+
+    static long pack(int segment, int offset, int length) {
+        return ((long) segment << (OFFSET_BITS + LENGTH_BITS)) | ((long) offset << LENGTH_BITS) | length;
+    }
+
+    static class Builder implements FsImageLoader.INodesRepositoryBuilder {
+        private final int segmentSize;
+
+        Builder() {
+            this(MAX_SEGMENT_SIZE);
+        }
+
+        /**
+         * @param segmentSize the max size of an off-heap segment, limited to 256 MiB.
+         */
+        Builder(int segmentSize) {
+            if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("Expected segment size in (0, " + MAX_SEGMENT_SIZE + "] but got "
+                        + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+        }
+
+        int getSegmentSize() {
+            return segmentSize;
+        }
+
+        @Override
+        public FsImageLoader.INodesRepository build(FsImageProto.INodeSection s, InputStream in, long length)
+                throws IOException {
+            long start = System.currentTimeMillis();
+            // Check for overflow
+            if (s.getNumInodes() > Integer.MAX_VALUE) {
+                throw new IOException("Number of inodes " + s.getNumInodes() + " exceeds Integer.MAX_VALUE");
+            }
+            final int numInodes = (int) s.getNumInodes(); // Ok to downcast, checked above
+            final long[] inodeIds = new long[numInodes];
+            final long[] inodeLocations = new long[numInodes];
+
+            final SegmentAppender appender = new SegmentAppender(segmentSize, length);
+            for (int i = 0; i < numInodes; ++i) {
+                int size = CodedInputStream.readRawVarint32(in.read(), in);
+                inodeLocations[i] = appender.append(in, size);
+                inodeIds[i] = appender.lastInodeId();
+            }
+            LOG.debug("Loaded {} inodes [{}ms] of length {} bytes into {} off-heap segment(s)",
+                    numInodes, System.currentTimeMillis() - start, length, appender.segments.size());
+            return createSorted(appender.segments.toArray(new ByteBuffer[0]), inodeIds, inodeLocations);
+        }
+
+        OffHeapINodesRepository createSorted(ByteBuffer[] segments, long[] inodeIds, long[] inodeLocations)
+                throws IOException {
+            final long start = System.currentTimeMillis();
+            final int[] order = sortedOrder(inodeIds);
+            LOG.debug("Sorted {} inodes [{}ms]", inodeIds.length, System.currentTimeMillis() - start);
+            return new OffHeapINodesRepository(segments,
+                    INodeIdSorter.permute(inodeIds, order), INodeIdSorter.permute(inodeLocations, order));
+        }
+
+        protected int[] sortedOrder(long[] inodeIds) {
+            return INodeIdSorter.sortedOrder(inodeIds, false);
+        }
+    }
+
+    static class ParallelBuilder extends Builder {
+        @Override
+        public FsImageLoader.INodesRepository build(FsImageProto.INodeSection s, List<InputStream> subSections,
+                                                    long length, ExecutorService executorService)
+                throws IOException {
+            long start = System.currentTimeMillis();
+            // Each sub-section appends to its own segments
+            final long subSectionLength = length / subSections.size();
+            final List<SubSectionINodes> parts = FsImageLoader.loadSubSections(subSections, executorService,
+                    in -> SubSectionINodes.read(in, new SegmentAppender(getSegmentSize(), subSectionLength)));
+
+            final long numInodes = parts.stream().mapToLong(p -> p.inodeIds.size()).sum();
+            if (numInodes != s.getNumInodes()) {
+                throw new IOException("Expected " + s.getNumInodes() + " inodes but sub-sections contain "
+                        + numInodes);
+            }
+            final List<ByteBuffer> segments = new ArrayList<>();
+            final long[] inodeIds = new long[(int) numInodes];
+            final long[] inodeLocations = new long[(int) numInodes];
+            int pos = 0;
+            for (SubSectionINodes part : parts) {
+                final int size = part.inodeIds.size();
+                part.inodeIds.getElements(0, inodeIds, pos, size);
+                // Relocate by number of segments of previous parts
+                final long segmentBase = (long) segments.size() << (OFFSET_BITS + LENGTH_BITS);
+                for (int i = 0; i < size; i++) {
+                    inodeLocations[pos + i] = part.inodeLocations.getLong(i) + segmentBase;
+                }
+                segments.addAll(part.appender.segments);
+                pos += size;
+            }
+            if (segments.size() > MAX_SEGMENTS) {
+                throw new IOException("Number of off-heap segments exceeds " + MAX_SEGMENTS);
+            }
+            LOG.debug("Loaded {} inodes [{}ms] of length {} bytes from {} sub-sections into {} off-heap segment(s)",
+                    numInodes, System.currentTimeMillis() - start, length, subSections.size(), segments.size());
+            return createSorted(segments.toArray(new ByteBuffer[0]), inodeIds, inodeLocations);
+        }
+
+        @Override
+        protected int[] sortedOrder(long[] inodeIds) {
+            return INodeIdSorter.sortedOrder(inodeIds, true);
+        }
+    }
+
+    /**
+     * Appends raw inodes to off-heap segments.
+     */
+    private static final class SegmentAppender {
+        final List<ByteBuffer> segments = new ArrayList<>();
+        private final int allocationSize;
+        private ByteBuffer segment;
+        private byte[] bytes = new byte[4096];
+        private long lastInodeId;
+
+        SegmentAppender(int segmentSize, long length) {
+            // Small fsimages should not allocate a full segment
+            allocationSize = (int) Math.min(segmentSize, Math.max(length, 64L * 1024L /* 64 KiB */));
+            segment = ByteBuffer.allocateDirect(allocationSize);
+            segments.add(segment);
+        }
+
+        /**
+         * Appends an inode.
+         *
+         * @param in   the stream positioned at the inode.
+         * @param size the inode size.
+         * @return the packed location.
+         */
+        long append(InputStream in, int size) throws IOException {
+            if (size > MAX_INODE_LENGTH) {
+                throw new IOException("INode size " + size + " exceeds max size of " + MAX_INODE_LENGTH);
+            }
+            if (size > bytes.length) {
+                bytes = new byte[Math.max(size, bytes.length * 2)];
+            }
+            IOUtils.readFully(in, bytes, 0, size);
+            lastInodeId = FsImageLoader.PrimitiveArrayINodesRepository.extractNodeId(bytes);
+
+            if (segment.remaining() < size) {
+                if (segments.size() == MAX_SEGMENTS) {
+                    throw new IOException("Number of off-heap segments exceeds " + MAX_SEGMENTS);
+                }
+                segment = ByteBuffer.allocateDirect(Math.max(allocationSize, size));
+                segments.add(segment);
+            }
+            final long location = pack(segments.size() - 1, segment.position(), size);
+            segment.put(bytes, 0, size);
+            return location;
+        }
+
+        /**
+         * @return the id of the last appended inode.
+         */
+        long lastInodeId() {
+            return lastInodeId;
+        }
+    }
+
+    /**
+     * Inodes of a single sub-section, in load order.
+     */
+    private static final class SubSectionINodes {
+        final SegmentAppender appender;
+        final LongArrayList inodeIds = new LongArrayList();
+        final LongArrayList inodeLocations = new LongArrayList();
+
+        private SubSectionINodes(SegmentAppender appender) {
+            this.appender = appender;
+        }
+
+        static SubSectionINodes read(InputStream in, SegmentAppender appender) throws IOException {
+            final SubSectionINodes part = new SubSectionINodes(appender);
+            int firstByte;
+            while ((firstByte = in.read()) >= 0) {
+                int size = CodedInputStream.readRawVarint32(firstByte, in);
+                part.inodeLocations.add(appender.append(in, size));
+                part.inodeIds.add(appender.lastInodeId());
+            }
+            return part;
+        }
+    }
+
+    private ByteBuffer getInodeAsBuffer(final long inodeId) {
+        final int idx = inodeIdIndex.indexOf(inodeId);
+        if (idx < 0) {
+            throw new IllegalArgumentException("Can not find inode by id " + inodeId);
+        }
+        return getInodeAsBufferByIndex(idx);
+    }
+
+    private ByteBuffer getInodeAsBufferByIndex(final int idx) {
+        final long location = inodeLocations[idx];
+        final int segment = (int) (location >>> (OFFSET_BITS + LENGTH_BITS));
+        final int offset = (int) ((location >>> LENGTH_BITS) & OFFSET_MASK);
+        final int length = (int) (location & LENGTH_MASK);
+        return segments[segment].slice(offset, length);
+    }
+
+    @Override
+    public INode getInode(long inodeId) throws IOException {
+        if (INodeId.ROOT_INODE_ID == inodeId) {
+            return rootInode;
+        }
+        return INODE_PARSER.parseFrom(getInodeAsBuffer(inodeId));
+    }
+
+    @Override
+    public int indexOf(long inodeId) {
+        return inodeIdIndex.indexOf(inodeId);
+    }
+
+    @Override
+    public INode getInodeByIndex(int index) throws IOException {
+        if (INodeId.ROOT_INODE_ID == inodeIdIndex.getInodeId(index)) {
+            return rootInode;
+        }
+        return INODE_PARSER.parseFrom(getInodeAsBufferByIndex(index));
+    }
+
+    @Override
+    public long getInodeId(int index) {
+        return inodeIdIndex.getInodeId(index);
+    }
+
+    @Override
+    public INodeView loadView(int index, INodeView view) {
+        final long location = inodeLocations[index];
+        final int segment = (int) (location >>> (OFFSET_BITS + LENGTH_BITS));
+        final int offset = (int) ((location >>> LENGTH_BITS) & OFFSET_MASK);
+        final int length = (int) (location & LENGTH_MASK);
+        return view.reset(index, segments[segment], offset, length);
+    }
+
+    @Override
+    public int getSize() {
+        return inodeIdIndex.size();
+    }
+
+    @Override
+    public FsImageLoader.INodeLookupMode getLookupMode() {
+        return inodeIdIndex.getLookupMode();
+    }
+}
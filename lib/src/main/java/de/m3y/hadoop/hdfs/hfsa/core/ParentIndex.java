@@ -0,0 +1,129 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.apache.hadoop.hdfs.server.namenode.INodeId;
+
+/**
+ * Maps every inode to its parent directory, for resolving the path of an inode without traversing the tree.
+ * <p>
+ * Stores one parent inode index per inode, built by inverting the directory index.
+ * Resolved directory paths are kept in a small LRU cache, as consecutive lookups typically share parents.
+ */
+final class ParentIndex {
+    static final int NO_PARENT = -1;
+    static final int DEFAULT_CACHE_SIZE = 1024;
+
+    // parent inode index per inode index, or NO_PARENT
+    private final int[] parents;
+    private final FsImageLoader.INodesRepository inodes;
+    private final int rootIndex;
+    private final Map<Integer, String> directoryPaths;
+
+    private ParentIndex(int[] parents, FsImageLoader.INodesRepository inodes, int cacheSize) {
+        this.parents = parents;
+        this.inodes = inodes;
+        this.rootIndex = inodes.indexOf(INodeId.ROOT_INODE_ID);
+        this.directoryPaths = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Builds the index by inverting the directory index.
+     *
+     * @param directories the directory index.
+     * @param inodes      the inode repository.
+     * @param parallel    true, if building in parallel.
+     * @return the parent index.
+     */
+    static ParentIndex build(DirectoryIndex directories, FsImageLoader.INodesRepository inodes, boolean parallel) {
+        final int[] parents = new int[inodes.getSize()];
+        Arrays.fill(parents, NO_PARENT);
+        IntStream range = IntStream.range(0, directories.size());
+        if (parallel) {
+            range = range.parallel();
+        }
+        range.forEach(dirIdx -> {
+            final int parentIndex = inodes.indexOf(directories.getDirectoryId(dirIdx));
+            if (parentIndex < 0) {
+                throw new IllegalStateException("Can not find directory inode by id "
+                        + directories.getDirectoryId(dirIdx));
+            }
+            for (int i = directories.childrenStart(dirIdx), end = directories.childrenEnd(dirIdx); i < end; i++) {
+                final int childIndex = directories.hasChildIndexes() ? directories.getChildIndex(i)
+                        : inodes.indexOf(directories.getChildId(i));
+                if (childIndex < 0) {
+                    throw new IllegalStateException("Can not find child inode by id " + directories.getChildId(i));
+                }
+                // Every inode has at most one parent, so no concurrent writes to same element
+                parents[childIndex] = parentIndex;
+            }
+        });
+        return new ParentIndex(parents, inodes, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param index the inode index.
+     * @return the parent inode index, or {@link #NO_PARENT} for root and inodes not reachable from root.
+     */
+    int getParentIndex(int index) {
+        return parents[index];
+    }
+
+    /**
+     * Resolves the absolute path.
+     *
+     * @param index the inode index.
+     * @return the path, or null if not reachable from root.
+     */
+    String getPath(int index) {
+        if (index == rootIndex) {
+            return FsImageData.ROOT_PATH;
+        }
+        final int parent = parents[index];
+        if (NO_PARENT == parent) {
+            return null;
+        }
+        final String parentPath = getDirectoryPath(parent);
+        return null == parentPath ? null : childPath(parentPath, index);
+    }
+
+    private String getDirectoryPath(int index) {
+        if (index == rootIndex) {
+            return FsImageData.ROOT_PATH;
+        }
+        synchronized (directoryPaths) {
+            final String path = directoryPaths.get(index);
+            if (null != path) {
+                return path;
+            }
+        }
+        // Resolve outside of lock, as resolving ancestors accesses the cache again
+        final int parent = parents[index];
+        if (NO_PARENT == parent) {
+            return null;
+        }
+        final String parentPath = getDirectoryPath(parent);
+        if (null == parentPath) {
+            return null;
+        }
+        final String path = childPath(parentPath, index);
+        synchronized (directoryPaths) {
+            directoryPaths.put(index, path);
+        }
+        return path;
+    }
+
+    private String childPath(String parentPath, int index) {
+        final String name = inodes.loadView(index, new INodeView()).getName();
+        return FsImageData.ROOT_PATH.equals(parentPath) ? parentPath + name
+                : parentPath + FsImageData.PATH_SEPARATOR + name;
+    }
+}
@@ -0,0 +1,174 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static de.m3y.hadoop.hdfs.hfsa.core.FsImageData.ROOT_PATH;
+
+/**
+ * Reusable path of the directory currently traversed, handed out to {@link INodeViewVisitor} callbacks.
+ * <p>
+ * The traversal pushes a directory name segment when descending and pops it when returning,
+ * so no String gets created per directory or file.
+ * The path is only materialized as String by {@link #toString()}, and cached until the directory changes.
+ * <p>
+ * Like {@link INodeView}, a path buffer is only valid during a visitor callback and must not be shared between threads.
+ * Use {@link #toString()} for keeping the path.
+ */
+public final class PathBuffer implements CharSequence {
+    private char[] chars = new char[256];
+    private int length;
+    // Path length and materialized path, per depth
+    private int[] ends = new int[32];
+    private String[] paths = new String[32];
+    private int depth;
+
+    PathBuffer() {
+        reset(ROOT_PATH);
+    }
+
+    /**
+     * Replaces the path.
+     *
+     * @param path the new path, with depth 0.
+     * @return this path buffer.
+     */
+    PathBuffer reset(String path) {
+        length = 0;
+        ensureCapacity(path.length());
+        path.getChars(0, path.length(), chars, 0);
+        length = path.length();
+        depth = 0;
+        ends[0] = length;
+        paths[0] = path;
+        return this;
+    }
+
+    /**
+     * Appends the name of the directory as new path segment.
+     *
+     * @param directory the directory inode.
+     */
+    void push(INodeView directory) {
+        if (!isRoot()) {
+            ensureCapacity(1);
+            chars[length++] = '/';
+        }
+        directory.appendName(this);
+        if (++depth == ends.length) {
+            ends = Arrays.copyOf(ends, depth * 2);
+            paths = Arrays.copyOf(paths, depth * 2);
+        }
+        ends[depth] = length;
+        paths[depth] = null;
+    }
+
+    /**
+     * Removes the last path segment pushed.
+     */
+    void pop() {
+        if (depth == 0) {
+            throw new IllegalStateException("No path segment to pop for " + this);
+        }
+        depth--;
+        length = ends[depth];
+    }
+
+    private boolean isRoot() {
+        return length == 1 && chars[0] == '/';
+    }
+
+    /**
+     * Appends UTF-8 encoded bytes.
+     */
+    void appendUtf8(byte[] bytes, int offset, int len) {
+        ensureCapacity(len);
+        for (int i = 0; i < len; i++) {
+            final byte b = bytes[offset + i];
+            if (b < 0) {
+                // Non ASCII, decode remaining bytes
+                appendDecoded(new String(bytes, offset + i, len - i, StandardCharsets.UTF_8));
+                return;
+            }
+            chars[length++] = (char) b;
+        }
+    }
+
+    /**
+     * Appends UTF-8 encoded bytes, using absolute positions of the buffer.
+     */
+    void appendUtf8(ByteBuffer buffer, int offset, int len) {
+        ensureCapacity(len);
+        for (int i = 0; i < len; i++) {
+            final byte b = buffer.get(offset + i);
+            if (b < 0) {
+                // Non ASCII, decode remaining bytes
+                final byte[] bytes = new byte[len - i];
+                buffer.get(offset + i, bytes);
+                appendDecoded(new String(bytes, StandardCharsets.UTF_8));
+                return;
+            }
+            chars[length++] = (char) b;
+        }
+    }
+
+    private void appendDecoded(String s) {
+        ensureCapacity(s.length());
+        s.getChars(0, s.length(), chars, length);
+        length += s.length();
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + additional));
+        }
+    }
+
+    /**
+     * Materializes the path of a child, without materializing the parent path.
+     *
+     * @param path  the parent path, e.g. a path buffer.
+     * @param child the child inode.
+     * @return the child path.
+     */
+    public static String childPath(CharSequence path, INodeView child) {
+        final String name = child.getName();
+        final StringBuilder buf = new StringBuilder(path.length() + 1 + name.length()).append(path);
+        if (!ROOT_PATH.contentEquals(path)) {
+            buf.append('/');
+        }
+        return buf.append(name).toString();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Objects.checkIndex(index, length);
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * @return the path, cached until the path changes.
+     */
+    @Override
+    public String toString() {
+        String path = paths[depth];
+        if (null == path) {
+            path = new String(chars, 0, length);
+            paths[depth] = path;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,72 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * One accumulator per thread, combined once all threads completed.
+ * <p>
+ * Lets concurrent visitor callbacks accumulate without locks or atomics, like a map-reduce over the namespace:
+ * <pre>
+ * PerThreadAccumulators&lt;Map&lt;String, long[]&gt;&gt; sizes = new PerThreadAccumulators&lt;&gt;(HashMap::new);
+ * // Within callbacks, in any thread
+ * sizes.get().computeIfAbsent(name, k -&gt; new long[1])[0] += size;
+ * // After visiting
+ * Map&lt;String, long[]&gt; total = sizes.combine((acc, other) -&gt; ...);
+ * </pre>
+ * Meant for a single traversal: do not use {@link #get()} after {@link #combine(BiConsumer)}.
+ * The accumulators are kept by the instance, keyed by thread, so they get released after combining
+ * instead of staying reachable from long-lived pool threads.
+ *
+ * @param <A> the accumulator type.
+ * @see INodeViewCollector
+ */
+public final class PerThreadAccumulators<A> {
+    private final Supplier<A> factory;
+    private final Map<Thread, A> accumulators = new ConcurrentHashMap<>();
+
+    /**
+     * @param factory creates an empty accumulator, once per thread.
+     */
+    public PerThreadAccumulators(Supplier<A> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the accumulator of the current thread, creating it on first access.
+     *
+     * @return the accumulator, only to be used by the current thread.
+     */
+    public A get() {
+        final Thread thread = Thread.currentThread();
+        final A accumulator = accumulators.get(thread);
+        if (null != accumulator) {
+            return accumulator;
+        }
+        return accumulators.computeIfAbsent(thread, t -> factory.get());
+    }
+
+    /**
+     * Combines the accumulators of all threads.
+     * <p>
+     * Must be invoked after all threads completed accumulating, e.g. after visiting.
+     *
+     * @param combiner merges the second accumulator into the first one.
+     * @return the combined accumulator, or a new empty accumulator if no thread accumulated.
+     */
+    public A combine(BiConsumer<A, A> combiner) {
+        final Iterator<A> iterator = accumulators.values().iterator();
+        if (!iterator.hasNext()) {
+            return factory.get();
+        }
+        final A result = iterator.next();
+        while (iterator.hasNext()) {
+            combiner.accept(result, iterator.next());
+        }
+        accumulators.clear();
+        return result;
+    }
+}
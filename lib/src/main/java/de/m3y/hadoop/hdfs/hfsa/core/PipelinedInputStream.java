@@ -0,0 +1,169 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a stream ahead on a dedicated thread, e.g. for decompressing a section while the caller parses it.
+ * <p>
+ * The reading thread fills a ring of large buffers, which are handed over to the consuming thread and
+ * returned for refilling once consumed. So decompression and parsing overlap instead of alternating,
+ * and the consuming thread only synchronizes once per buffer.
+ * <p>
+ * The stream must be closed, for stopping the reading thread if the stream is not read until end.
+ * Closing does not interrupt the reading thread, as interrupting a read would close the shared
+ * {@link java.nio.channels.FileChannel} of the fsimage.
+ */
+final class PipelinedInputStream extends InputStream {
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024; // 1 MiB
+    static final int DEFAULT_NUM_BUFFERS = 4;
+    // Wakes up the reading thread when closed
+    private static final byte[] CLOSED = new byte[0];
+
+    /**
+     * A filled buffer, or the end of stream or a read failure.
+     */
+    private record Chunk(byte[] buf, int length, Throwable failure) {
+        static final Chunk EOF = new Chunk(null, -1, null);
+    }
+
+    private final BlockingQueue<byte[]> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread reader;
+    private Chunk current;
+    private int pos;
+    private volatile boolean closed;
+
+    /**
+     * @param source     the source stream, read and closed by the reading thread.
+     * @param bufferSize the size of each buffer.
+     * @param numBuffers the number of buffers, at least 2 for overlapping reading and consuming.
+     * @param name       the name of the reading thread.
+     */
+    PipelinedInputStream(InputStream source, int bufferSize, int numBuffers, String name) {
+        if (numBuffers < 2) {
+            throw new IllegalArgumentException("Expected at least 2 buffers, but got " + numBuffers);
+        }
+        free = new ArrayBlockingQueue<>(numBuffers);
+        for (int i = 0; i < numBuffers; i++) {
+            free.add(new byte[bufferSize]);
+        }
+        // One more slot for the end of stream
+        filled = new ArrayBlockingQueue<>(numBuffers + 1);
+        reader = new Thread(() -> readAhead(source), name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readAhead(InputStream source) {
+        try (source) {
+            while (true) {
+                final byte[] buf = free.take();
+                if (closed) {
+                    return;
+                }
+                final int length = fill(source, buf);
+                if (length > 0) {
+                    filled.put(new Chunk(buf, length, null));
+                }
+                if (length < buf.length) {
+                    filled.put(Chunk.EOF);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) { // Can be IOException or NoClassDefFoundError of a missing codec
+            // Capacity left, as the end of stream has not been queued yet
+            filled.offer(new Chunk(null, -1, e));
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or end of stream.
+     *
+     * @return the number of bytes read.
+     */
+    private static int fill(InputStream source, byte[] buf) throws IOException {
+        int length = 0;
+        while (length < buf.length) {
+            final int read = source.read(buf, length, buf.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Ensures a chunk with remaining bytes, recycling the consumed one.
+     *
+     * @return false, if end of stream.
+     */
+    private boolean next() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (null != current && pos < current.length) {
+            return true;
+        }
+        if (Chunk.EOF == current) {
+            return false;
+        }
+        if (null != current) {
+            free.add(current.buf);
+        }
+        try {
+            current = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + reader.getName());
+        }
+        pos = 0;
+        if (null != current.failure) {
+            final Throwable failure = current.failure;
+            current = Chunk.EOF;
+            throw new IOException("Can not read ahead in " + reader.getName(), failure);
+        }
+        return Chunk.EOF != current;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!next()) {
+            return -1;
+        }
+        return current.buf[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (0 == len) {
+            return 0;
+        }
+        if (!next()) {
+            return -1;
+        }
+        final int n = Math.min(len, current.length - pos);
+        System.arraycopy(current.buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return null != current && Chunk.EOF != current ? current.length - pos : 0;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            free.offer(CLOSED);
+        }
+    }
+}
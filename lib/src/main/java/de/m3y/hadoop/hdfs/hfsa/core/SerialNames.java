@@ -0,0 +1,139 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.server.namenode.SerialNumberManager;
+
+/**
+ * Decodes the numeric inode permission without the Hadoop string table lookups.
+ * <p>
+ * The permission packs the 16 bit mode, the 24 bit group serial number and the 24 bit user serial number.
+ * User and group names are pre-resolved into arrays indexed by serial number,
+ * and the immutable FS permissions are cached by mode.
+ */
+final class SerialNames {
+    static final int MODE_BITS = 16;
+    static final int SERIAL_BITS = 24;
+    static final int GROUP_OFFSET = MODE_BITS;
+    static final int USER_OFFSET = GROUP_OFFSET + SERIAL_BITS;
+    static final long SERIAL_MASK = (1L << SERIAL_BITS) - 1;
+    static final int MODE_MASK = (1 << MODE_BITS) - 1;
+
+    // Ordinals of SerialNumberManager.USER and GROUP, used for masking string table ids
+    private static final int USER_MANAGER = 1;
+    private static final int GROUP_MANAGER = 2;
+
+    private final String[] userNames;
+    private final String[] groupNames;
+    private final AtomicReferenceArray<FsPermission> modes = new AtomicReferenceArray<>(1 << MODE_BITS);
+
+    private SerialNames(String[] userNames, String[] groupNames) {
+        this.userNames = userNames;
+        this.groupNames = groupNames;
+    }
+
+    /**
+     * Resolves the user and group names of the string table.
+     * <p>
+     * If the table is masked, the manager is encoded in the upper bits of each id.
+     * Otherwise, users and groups share the serial numbers.
+     *
+     * @param stringTable the string table.
+     * @return the resolved names.
+     */
+    static SerialNames of(SerialNumberManager.StringTable stringTable) {
+        final int maskBits = stringTable.getMaskBits();
+        final int serialBits = Integer.SIZE - maskBits;
+        String[] users = new String[0];
+        String[] groups = new String[0];
+        for (Map.Entry<Integer, String> entry : stringTable) {
+            final int id = entry.getKey();
+            if (0 == maskBits) {
+                users = put(users, id, entry.getValue());
+                groups = put(groups, id, entry.getValue());
+            } else {
+                final int manager = id >>> serialBits;
+                final int serial = id & ((1 << serialBits) - 1);
+                if (USER_MANAGER == manager) {
+                    users = put(users, serial, entry.getValue());
+                } else if (GROUP_MANAGER == manager) {
+                    groups = put(groups, serial, entry.getValue());
+                }
+            }
+        }
+        return new SerialNames(users, groups);
+    }
+
+    private static String[] put(String[] names, int serial, String name) {
+        if (serial < 0 || serial > SERIAL_MASK) {
+            // Not a user or group serial number, e.g. an xattr name of an unmasked table
+            return names;
+        }
+        final String[] grown = serial < names.length ? names : Arrays.copyOf(names, serial + 1);
+        grown[serial] = name;
+        return grown;
+    }
+
+    static int getUserId(long permission) {
+        return (int) ((permission >>> USER_OFFSET) & SERIAL_MASK);
+    }
+
+    static int getGroupId(long permission) {
+        return (int) ((permission >>> GROUP_OFFSET) & SERIAL_MASK);
+    }
+
+    static short getMode(long permission) {
+        return (short) (permission & MODE_MASK);
+    }
+
+    /**
+     * @param userId the user serial number.
+     * @return the user name, or null if unknown.
+     */
+    String getUserName(int userId) {
+        return userId >= 0 && userId < userNames.length ? userNames[userId] : null;
+    }
+
+    /**
+     * @param groupId the group serial number.
+     * @return the group name, or null if unknown.
+     */
+    String getGroupName(int groupId) {
+        return groupId >= 0 && groupId < groupNames.length ? groupNames[groupId] : null;
+    }
+
+    /**
+     * @return the user names, indexed by serial number, containing null for unused serial numbers.
+     */
+    String[] getUserNames() {
+        return userNames.clone();
+    }
+
+    /**
+     * @return the group names, indexed by serial number, containing null for unused serial numbers.
+     */
+    String[] getGroupNames() {
+        return groupNames.clone();
+    }
+
+    /**
+     * Decodes the numeric permission, sharing the immutable FS permission for all inodes of the same mode.
+     *
+     * @param permission the numeric permission.
+     * @return the permission status.
+     */
+    PermissionStatus toPermissionStatus(long permission) {
+        final int mode = getMode(permission) & MODE_MASK;
+        FsPermission fsPermission = modes.get(mode);
+        if (null == fsPermission) {
+            fsPermission = FsPermission.createImmutable((short) mode);
+            modes.set(mode, fsPermission);
+        }
+        return new PermissionStatus(getUserName(getUserId(permission)), getGroupName(getGroupId(permission)),
+                fsPermission);
+    }
+}
@@ -0,0 +1,75 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import org.apache.hadoop.fs.permission.PermissionStatus;
+
+/**
+ * Result of streaming an fsimage once, without loading it, see {@link FsImageLoader#stream(java.io.RandomAccessFile, INodeViewBatchVisitor)}.
+ * <p>
+ * Keeps the accumulated result and the string table for resolving user and group ids,
+ * but no inodes and no directory tree.
+ *
+ * @param <A> the accumulator type.
+ */
+public final class StreamedFsImage<A> {
+    private final A result;
+    private final long numINodes;
+    private final SerialNames serialNames;
+
+    StreamedFsImage(A result, long numINodes, SerialNames serialNames) {
+        this.result = result;
+        this.numINodes = numINodes;
+        this.serialNames = serialNames;
+    }
+
+    /**
+     * @return the merged accumulator of all workers.
+     */
+    public A getResult() {
+        return result;
+    }
+
+    /**
+     * @return the number of streamed inodes, including inodes only referenced by snapshots.
+     */
+    public long getINodeCount() {
+        return numINodes;
+    }
+
+    /**
+     * @param userId the user id, see {@link INodeView#getUserId()}.
+     * @return the user name, or null if the id is missing in the string table.
+     */
+    public String getUserName(int userId) {
+        return serialNames.getUserName(userId);
+    }
+
+    /**
+     * @param groupId the group id, see {@link INodeView#getGroupId()}.
+     * @return the group name, or null if the id is missing in the string table.
+     */
+    public String getGroupName(int groupId) {
+        return serialNames.getGroupName(groupId);
+    }
+
+    /**
+     * @return a copy of the user names, indexed by user id and containing null for unused ids.
+     */
+    public String[] getUserNames() {
+        return serialNames.getUserNames();
+    }
+
+    /**
+     * @return a copy of the group names, indexed by group id and containing null for unused ids.
+     */
+    public String[] getGroupNames() {
+        return serialNames.getGroupNames();
+    }
+
+    /**
+     * @param permission the numeric permission, see {@link INodeView#getPermission()}.
+     * @return the permission status, with a null user or group name if the id is missing in the string table.
+     */
+    public PermissionStatus getPermissionStatus(long permission) {
+        return serialNames.toPermissionStatus(permission);
+    }
+}
@@ -0,0 +1,161 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.hdfs.server.namenode.SerialNumberManager;
+
+/**
+ * Decodes the STRING_TABLE section directly into a {@link SerialNumberManager.StringTable},
+ * without creating an Entry message and ByteString per string.
+ * <p>
+ * The section contains a length delimited StringTableSection header followed by numEntry length delimited entries.
+ * <p>
+ * StringTableSection wire format:
+ * <ul>
+ *     <li>1: numEntry, uint32</li>
+ *     <li>2: maskBits, uint32</li>
+ * </ul>
+ * Entry wire format:
+ * <ul>
+ *     <li>1: id, uint32</li>
+ *     <li>2: str, string</li>
+ * </ul>
+ */
+final class StringTableSectionDecoder {
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_FIXED64 = 1;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRETYPE_FIXED32 = 5;
+
+    private final byte[] buf;
+    private final int limit;
+    private int pos;
+
+    private StringTableSectionDecoder(byte[] buf, int limit) {
+        this.buf = buf;
+        this.limit = limit;
+    }
+
+    /**
+     * Reads the section until end of stream.
+     *
+     * @param in the section stream.
+     * @return the string table.
+     * @throws IOException on error reading or decoding.
+     */
+    static SerialNumberManager.StringTable read(InputStream in) throws IOException {
+        // The table is small compared to the inodes, so decode from one buffer
+        final byte[] bytes = in.readAllBytes();
+        return decode(bytes, bytes.length);
+    }
+
+    /**
+     * Decodes the section header and entries.
+     *
+     * @param buf    the buffer.
+     * @param length the number of bytes to decode.
+     * @return the string table.
+     * @throws IOException if malformed.
+     */
+    static SerialNumberManager.StringTable decode(byte[] buf, int length) throws IOException {
+        final StringTableSectionDecoder decoder = new StringTableSectionDecoder(buf, length);
+        int numEntry = 0;
+        int maskBits = 0;
+        final int headerEnd = decoder.checkedEnd(decoder.readRawVarint32());
+        while (decoder.pos < headerEnd) {
+            final int tag = decoder.readRawVarint32();
+            final int wireType = tag & 0x7;
+            switch (tag >>> 3) {
+                case 1 -> numEntry = decoder.readUInt32(wireType, "StringTableSection.numEntry");
+                case 2 -> maskBits = decoder.readUInt32(wireType, "StringTableSection.maskBits");
+                default -> decoder.skipField(wireType);
+            }
+        }
+        decoder.checkEnd(headerEnd, "StringTableSection");
+
+        final SerialNumberManager.StringTable stringTable = SerialNumberManager.newStringTable(numEntry, maskBits);
+        for (int i = 0; i < numEntry; i++) {
+            if (decoder.pos >= decoder.limit) {
+                throw new IOException("Expected " + numEntry + " string table entries, but got " + i);
+            }
+            decoder.decodeEntry(stringTable);
+        }
+        return stringTable;
+    }
+
+    private void decodeEntry(SerialNumberManager.StringTable stringTable) throws IOException {
+        final int end = checkedEnd(readRawVarint32());
+        int id = 0;
+        String str = "";
+        while (pos < end) {
+            final int tag = readRawVarint32();
+            final int wireType = tag & 0x7;
+            switch (tag >>> 3) {
+                case 1 -> id = readUInt32(wireType, "Entry.id");
+                case 2 -> {
+                    if (wireType != WIRETYPE_LENGTH_DELIMITED) {
+                        throw new IOException("Unexpected wire type " + wireType + " for Entry.str");
+                    }
+                    final int strEnd = checkedEnd(readRawVarint32());
+                    str = new String(buf, pos, strEnd - pos, StandardCharsets.UTF_8);
+                    pos = strEnd;
+                }
+                default -> skipField(wireType);
+            }
+        }
+        checkEnd(end, "Entry");
+        stringTable.put(id, str);
+    }
+
+    private int readUInt32(int wireType, String field) throws IOException {
+        if (wireType != WIRETYPE_VARINT) {
+            throw new IOException("Unexpected wire type " + wireType + " for " + field);
+        }
+        return readRawVarint32();
+    }
+
+    private void checkEnd(int end, String message) throws IOException {
+        if (pos != end) {
+            throw new IOException("Malformed " + message + ", read beyond end " + end + " at " + pos);
+        }
+    }
+
+    private int checkedEnd(int length) throws IOException {
+        final int end = pos + length;
+        if (length < 0 || end > limit) {
+            throw new IOException("Malformed length " + length + " at " + pos + " exceeds limit " + limit);
+        }
+        return end;
+    }
+
+    private void skipField(int wireType) throws IOException {
+        switch (wireType) {
+            case WIRETYPE_VARINT -> readRawVarint64();
+            case WIRETYPE_FIXED64 -> pos = checkedEnd(8);
+            case WIRETYPE_LENGTH_DELIMITED -> pos = checkedEnd(readRawVarint32());
+            case WIRETYPE_FIXED32 -> pos = checkedEnd(4);
+            default -> throw new IOException("Unsupported wire type " + wireType + " at " + pos);
+        }
+    }
+
+    private int readRawVarint32() throws IOException {
+        return (int) readRawVarint64();
+    }
+
+    private long readRawVarint64() throws IOException {
+        // Extracted from CodedInputStream.readRawVarint64()
+        int shift = 0;
+        long result = 0;
+        while (shift < 64 && pos < limit) {
+            final byte b = buf[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+        throw new IOException("Malformed varint at " + pos);
+    }
+}
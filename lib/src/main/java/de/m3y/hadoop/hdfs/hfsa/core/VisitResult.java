@@ -0,0 +1,25 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+/**
+ * Decision of a visitor on entering a directory, for pruning the traversal.
+ *
+ * @see INodeViewVisitor#visitDirectory(INodeView, CharSequence)
+ * @see FsVisitor#visitDirectory(org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INode, String)
+ */
+public enum VisitResult {
+    /**
+     * Continues with the children of the directory.
+     */
+    CONTINUE,
+    /**
+     * Skips the children and all other descendants of the directory, continuing with its siblings.
+     */
+    SKIP_CHILDREN,
+    /**
+     * Stops the traversal.
+     * <p>
+     * When visiting in parallel, other threads stop as soon as possible,
+     * so some further callbacks might still happen.
+     */
+    STOP
+}
@@ -124,14 +124,24 @@ public class FsUtil {
         if (file.hasErasureCodingPolicyID()) {
             ErasureCodingPolicy ecp = SystemErasureCodingPolicies.getByID((byte) file.getErasureCodingPolicyID());
             for (HdfsProtos.BlockProto p : file.getBlocksList()) {
-                size += p.getNumBytes();
-                double cells = Math.ceil((double) p.getNumBytes() / ecp.getCellSize()); // count of cells
-                long rows = (long) Math.ceil(cells / ecp.getNumDataUnits()); // count group of cells (rows)
-                size += rows * ecp.getNumParityUnits() * ecp.getCellSize();
+                size += getConsumedBlockSize(ecp, p.getNumBytes());
             }
         } else {
             size = getFileSize(file) * file.getReplication();
         }
         return size;
     }
+
+    /**
+     * Computes the consumed size of an erasure coded block group, including parity cells.
+     *
+     * @param ecp      the erasure coding policy.
+     * @param numBytes the block size.
+     * @return the consumed size in bytes.
+     */
+    public static long getConsumedBlockSize(ErasureCodingPolicy ecp, long numBytes) {
+        double cells = Math.ceil((double) numBytes / ecp.getCellSize()); // count of cells
+        long rows = (long) Math.ceil(cells / ecp.getNumDataUnits()); // count group of cells (rows)
+        return numBytes + rows * ecp.getNumParityUnits() * ecp.getCellSize();
+    }
 }
@@ -115,6 +115,21 @@ public class SizeBucket {
         fileSizeBuckets[bucket]++;
     }
 
+    /**
+     * Adds the bucket counters of another size bucket, e.g. for merging partial results.
+     *
+     * @param other the other size bucket, using the same bucket model.
+     */
+    public void add(SizeBucket other) {
+        final long[] otherBuckets = other.fileSizeBuckets;
+        if (otherBuckets.length > fileSizeBuckets.length) {
+            fileSizeBuckets = Arrays.copyOf(fileSizeBuckets, otherBuckets.length);
+        }
+        for (int i = 0; i < otherBuckets.length; i++) {
+            fileSizeBuckets[i] += otherBuckets[i];
+        }
+    }
+
 
     /**
      * Computes the bucket upper borders, for the max number filled of buckets.
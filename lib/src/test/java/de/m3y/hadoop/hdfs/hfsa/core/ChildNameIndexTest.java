@@ -0,0 +1,87 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class ChildNameIndexTest {
+
+    @Test
+    public void testFind() throws IOException {
+        for (FsImageLoader.Builder builder : List.of(new FsImageLoader.Builder().parallel(),
+                new FsImageLoader.Builder().parallel().offHeap().childIndexes())) {
+            try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsimage_d800_f210k_compressed.img", "r")) {
+                final FsImageData fsImageData = builder.build().load(file);
+                final DirectoryIndex directories = fsImageData.getDirectoryIndex();
+
+                int numIndexed = 0;
+                final INodeView child = fsImageData.newINodeView();
+                final INodeView found = fsImageData.newINodeView();
+                for (int dirIdx = 0; dirIdx < directories.size(); dirIdx++) {
+                    final int start = directories.childrenStart(dirIdx);
+                    final int end = directories.childrenEnd(dirIdx);
+                    if (end - start <= ChildNameIndex.THRESHOLD) {
+                        continue;
+                    }
+                    numIndexed++;
+                    final ChildNameIndex index = ChildNameIndex.build(fsImageData, dirIdx);
+                    for (int i = start; i < end; i++) {
+                        final byte[] name = fsImageData.loadChildView(i, child).getName()
+                                .getBytes(StandardCharsets.UTF_8);
+                        assertThat(index.find(fsImageData, name, found)).isEqualTo(i);
+                        assertThat(found.getId()).isEqualTo(child.getId());
+                        assertThat(fsImageData.findChild(dirIdx, name, found)).isEqualTo(i);
+                    }
+                    assertThat(index.find(fsImageData, "non-existent".getBytes(StandardCharsets.UTF_8), found))
+                            .isNegative();
+                }
+                assertThat(numIndexed).isPositive();
+
+                // Lookup every path
+                final Map<String, Long> paths = new HashMap<>();
+                new FsVisitor.Builder().visit(fsImageData, new INodeViewVisitor() {
+                    @Override
+                    public void onFile(INodeView inode, CharSequence path) {
+                        paths.put(PathBuffer.childPath(path, inode), inode.getId());
+                    }
+
+                    @Override
+                    public void onDirectory(INodeView inode, CharSequence path) {
+                        paths.put(PathBuffer.childPath(path, inode), inode.getId());
+                    }
+
+                    @Override
+                    public void onSymLink(INodeView inode, CharSequence path) {
+                        // None
+                    }
+                });
+                assertThat(paths).hasSize(209560 + 807);
+                int sample = 0;
+                for (Map.Entry<String, Long> entry : paths.entrySet()) {
+                    if (sample++ % 16 == 0) {
+                        assertThat(fsImageData.getINodeFromPath(entry.getKey()).getId()).isEqualTo(entry.getValue());
+                        assertThat(fsImageData.hasINode(entry.getKey() + ".non-existent")).isFalse();
+                    }
+                }
+                assertThatExceptionOfType(FileNotFoundException.class)
+                        .isThrownBy(() -> fsImageData.getINodeFromPath("/non-existent/foo"));
+            }
+        }
+    }
+
+    @Test
+    public void testHash() {
+        assertThat(ChildNameIndex.hash(new byte[0])).isEqualTo(0x811c9dc5);
+        // FNV-1a reference value
+        assertThat(ChildNameIndex.hash("a".getBytes(StandardCharsets.UTF_8))).isEqualTo(0xe40c292c);
+    }
+}
@@ -1,13 +1,17 @@
 package de.m3y.hadoop.hdfs.hfsa.core;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
+import org.apache.hadoop.hdfs.server.namenode.SerialNumberManager;
 import org.junit.Test;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.infra.Blackhole;
@@ -24,12 +28,21 @@ public class FSImageLoaderMicroBenchmarkIT {
         return new RandomAccessFile("src/test/resources/fsimage_d800_f210k.img", "r");
     }
 
+    static RandomAccessFile openCompressedFile() throws FileNotFoundException {
+        return new RandomAccessFile("src/test/resources/fsimage_d800_f210k_compressed.img", "r");
+    }
+
     @State(Scope.Benchmark)
     public static class LoaderState {
         FsImageLoader imageLoader = new FsImageLoader.Builder().build();
         FsImageLoader parallelImageLoader = new FsImageLoader.Builder().parallel().build();
+        FsImageLoader memoryMappedImageLoader = new FsImageLoader.Builder().memoryMapped().parallel().build();
+        FsImageLoader offHeapImageLoader = new FsImageLoader.Builder().offHeap().parallel().build();
+        FsImageLoader parallelSectionsImageLoader = new FsImageLoader.Builder().parallelSections().parallel().build();
+        FsImageLoader pipelinedImageLoader = new FsImageLoader.Builder().pipelinedDecompression().build();
         FsVisitor.Builder visitorBuilder = new FsVisitor.Builder();
         FsVisitor.Builder parallelVisitorBuilder = new FsVisitor.Builder().parallel();
+        FsVisitor.Builder forkJoinVisitorBuilder = new FsVisitor.Builder().forkJoin();
 
         FsImageData fsImageData;
 
@@ -57,6 +70,123 @@ public class FSImageLoaderMicroBenchmarkIT {
         }
     }
 
+    @Benchmark
+    public void loadFsImageFileMemoryMapped(LoaderState state, Blackhole blackhole) throws IOException {
+        try (RandomAccessFile file = openFile()) {
+            blackhole.consume(state.memoryMappedImageLoader.load(file));
+        }
+    }
+
+    @Benchmark
+    public void loadFsImageFileOffHeap(LoaderState state, Blackhole blackhole) throws IOException {
+        try (RandomAccessFile file = openFile()) {
+            blackhole.consume(state.offHeapImageLoader.load(file));
+        }
+    }
+
+    @Benchmark
+    public void loadFsImageFileParallelSections(LoaderState state, Blackhole blackhole) throws IOException {
+        try (RandomAccessFile file = openFile()) {
+            blackhole.consume(state.parallelSectionsImageLoader.load(file));
+        }
+    }
+
+    @Benchmark
+    public void loadCompressedFsImageFile(LoaderState state, Blackhole blackhole) throws IOException {
+        try (RandomAccessFile file = openCompressedFile()) {
+            blackhole.consume(state.imageLoader.load(file));
+        }
+    }
+
+    @Benchmark
+    public void loadCompressedFsImageFilePipelined(LoaderState state, Blackhole blackhole) throws IOException {
+        try (RandomAccessFile file = openCompressedFile()) {
+            blackhole.consume(state.pipelinedImageLoader.load(file));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LookupState {
+        static final int NUM_INODES = 1_000_000;
+        INodeIdIndex directIndex;
+        INodeIdIndex binarySearchIndex;
+        long[] lookupIds;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // Dense inode ids starting at root inode id, with every 10th id deleted
+            final long[] ids = new long[NUM_INODES];
+            long id = 16385;
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = id;
+                id += (i % 10 == 9) ? 2 : 1;
+            }
+            directIndex = INodeIdIndex.create(ids, true);
+            binarySearchIndex = INodeIdIndex.create(ids, false);
+
+            final Random random = new Random(42);
+            lookupIds = new long[NUM_INODES];
+            for (int i = 0; i < lookupIds.length; i++) {
+                lookupIds[i] = ids[random.nextInt(ids.length)];
+            }
+        }
+    }
+
+    @Benchmark
+    public void lookupINodeDirect(LookupState state, Blackhole blackhole) {
+        for (long id : state.lookupIds) {
+            blackhole.consume(state.directIndex.indexOf(id));
+        }
+    }
+
+    @Benchmark
+    public void lookupINodeBinarySearch(LookupState state, Blackhole blackhole) {
+        for (long id : state.lookupIds) {
+            blackhole.consume(state.binarySearchIndex.indexOf(id));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StringTableState {
+        static final int NUM_ENTRIES = 500_000;
+        byte[] section;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            // Masked user, group and xattr names, as written by Hadoop 3.3+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            FsImageProto.StringTableSection.newBuilder().setNumEntry(NUM_ENTRIES).setMaskBits(2).build()
+                    .writeDelimitedTo(out);
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                final int manager = 1 + i % 3;
+                FsImageProto.StringTableSection.Entry.newBuilder()
+                        .setId(i / 3 + 1 | manager << 30)
+                        .setStr((manager == 1 ? "user" : manager == 2 ? "group" : "user.xattr") + i)
+                        .build().writeDelimitedTo(out);
+            }
+            section = out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public void loadStringTable(StringTableState state, Blackhole blackhole) throws IOException {
+        blackhole.consume(StringTableSectionDecoder.read(new ByteArrayInputStream(state.section)));
+    }
+
+    @Benchmark
+    public void loadStringTableProtobuf(StringTableState state, Blackhole blackhole) throws IOException {
+        final ByteArrayInputStream in = new ByteArrayInputStream(state.section);
+        final FsImageProto.StringTableSection s = FsImageProto.StringTableSection.parseDelimitedFrom(in);
+        final SerialNumberManager.StringTable stringTable =
+                SerialNumberManager.newStringTable(s.getNumEntry(), s.getMaskBits());
+        for (int i = 0; i < s.getNumEntry(); ++i) {
+            final FsImageProto.StringTableSection.Entry e =
+                    FsImageProto.StringTableSection.Entry.parseDelimitedFrom(in);
+            stringTable.put(e.getId(), e.getStr());
+        }
+        blackhole.consume(stringTable);
+    }
+
     @Benchmark
     public void visitFsImageFile(LoaderState state, Blackhole blackhole) throws IOException {
         state.visitorBuilder.visit(state.fsImageData, new BenchmarkVisitor(blackhole));
@@ -67,6 +197,21 @@ public class FSImageLoaderMicroBenchmarkIT {
         state.parallelVisitorBuilder.visit(state.fsImageData, new BenchmarkVisitor(blackhole));
     }
 
+    @Benchmark
+    public void visitFsImageFileViews(LoaderState state, Blackhole blackhole) throws IOException {
+        state.visitorBuilder.visit(state.fsImageData, new BenchmarkViewVisitor(blackhole));
+    }
+
+    @Benchmark
+    public void visitParallelFsImageFileViews(LoaderState state, Blackhole blackhole) throws IOException {
+        state.parallelVisitorBuilder.visit(state.fsImageData, new BenchmarkViewVisitor(blackhole));
+    }
+
+    @Benchmark
+    public void visitForkJoinFsImageFileViews(LoaderState state, Blackhole blackhole) throws IOException {
+        state.forkJoinVisitorBuilder.visit(state.fsImageData, new BenchmarkViewVisitor(blackhole));
+    }
+
     @Test
     public void runMicroBenchMark() throws RunnerException {
         String reportPath = "target/jmh-reports/";
@@ -104,6 +249,25 @@ public class FSImageLoaderMicroBenchmarkIT {
             }
         }
 
+    private record BenchmarkViewVisitor(Blackhole blackhole) implements INodeViewVisitor {
+
+        @Override
+        public void onFile(INodeView inode, CharSequence path) {
+            blackhole.consume(inode.getFileSize());
+            blackhole.consume(inode.getPermission());
+        }
+
+        @Override
+        public void onDirectory(INodeView inode, CharSequence path) {
+            blackhole.consume(inode.getPermission());
+        }
+
+        @Override
+        public void onSymLink(INodeView inode, CharSequence path) {
+            blackhole.consume(inode.getPermission());
+        }
+    }
+
     public static void main(String[] args) throws RunnerException {
         new FSImageLoaderMicroBenchmarkIT().runMicroBenchMark();
     }
@@ -1,11 +1,14 @@
 package de.m3y.hadoop.hdfs.hfsa.core;
 
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -15,7 +18,9 @@ import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +69,8 @@ import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
  */
 public class FsImageLoaderTest {
     private static final Logger LOG = LoggerFactory.getLogger(FsImageLoaderTest.class);
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
     private FsImageData fsImageData;
 
     @Before
@@ -160,6 +167,7 @@ public class FsImageLoaderTest {
     public void testLoadHadoop33xCompressedFsImage() throws IOException {
         try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsimage_d800_f210k_compressed.img", "r")) {
             final FsImageData hadoopV3xCompressedImage = new FsImageLoader.Builder().parallel().build().load(file);
+            assertThat(hadoopV3xCompressedImage.getINodeLookupMode()).isEqualTo(FsImageLoader.INodeLookupMode.DIRECT);
             final CountingVisitor visitor = new CountingVisitor(hadoopV3xCompressedImage);
             new FsVisitor.Builder().parallel().visit(hadoopV3xCompressedImage, visitor);
             assertThat(visitor.groups).hasSize(1);
@@ -170,6 +178,350 @@ public class FsImageLoaderTest {
         }
     }
 
+    @Test
+    public void testLoadPipelinedDecompression() throws IOException {
+        final List<FsImageLoader.Builder> builders = List.of(
+                new FsImageLoader.Builder().pipelinedDecompression(),
+                new FsImageLoader.Builder().parallelSections().pipelinedDecompression().offHeap());
+        for (FsImageLoader.Builder builder : builders) {
+            try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsimage_d800_f210k_compressed.img",
+                    "r")) {
+                final FsImageData compressedImage = builder.build().load(file);
+                final CountingVisitor visitor = new CountingVisitor(compressedImage);
+                new FsVisitor.Builder().parallel().visit(compressedImage, visitor);
+                assertThat(visitor.groups).hasSize(1);
+                assertThat(visitor.users).hasSize(1);
+                assertThat(visitor.numFiles.get()).isEqualTo(209560L);
+                assertThat(visitor.numDirs.get()).isEqualTo(807L);
+            }
+        }
+
+        // No effect on uncompressed fsimages
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            loadAndVisit(new FsImageLoader.Builder().pipelinedDecompression().build().load(file),
+                    new FsVisitor.Builder());
+        }
+    }
+
+    /**
+     * Collects the file size by inode id.
+     */
+    private record FileSizeByIdVisitor(int batchSize) implements INodeViewBatchVisitor<Map<Long, Long>> {
+        @Override
+        public Map<Long, Long> newAccumulator() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public void onBatch(Map<Long, Long> accumulator, INodeViewBatch batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                final INodeView inode = batch.get(i);
+                assertThat(accumulator.put(inode.getId(), inode.getFileSize())).isNull();
+            }
+        }
+
+        @Override
+        public void merge(Map<Long, Long> accumulator, Map<Long, Long> other) {
+            accumulator.putAll(other);
+        }
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        final File subSectionImage = temporaryFolder.newFile();
+        new SubSectionFsImageWriter(8).write(new File("src/test/resources/fsimage_d800_f210k_compressed.img"),
+                subSectionImage);
+        for (File image : List.of(new File("src/test/resources/fsi_small_h3_2.img"),
+                new File("src/test/resources/fsimage_d800_f210k_compressed.img"), subSectionImage)) {
+            final Map<Long, Long> expected;
+            try (RandomAccessFile file = new RandomAccessFile(image, "r")) {
+                expected = new FsVisitor.Builder().scan(new FsImageLoader.Builder().build().load(file),
+                        new FileSizeByIdVisitor(INodeViewBatchVisitor.DEFAULT_BATCH_SIZE));
+            }
+            for (FsImageLoader.Builder builder : List.of(new FsImageLoader.Builder(),
+                    new FsImageLoader.Builder().parallelism(3),
+                    new FsImageLoader.Builder().parallel().pipelinedDecompression())) {
+                // Small batches for the small image only, as views reference chunks of multiple batches
+                final int[] batchSizes = image.length() < 10_000
+                        ? new int[]{7, INodeViewBatchVisitor.DEFAULT_BATCH_SIZE}
+                        : new int[]{INodeViewBatchVisitor.DEFAULT_BATCH_SIZE};
+                for (int batchSize : batchSizes) {
+                    try (RandomAccessFile file = new RandomAccessFile(image, "r")) {
+                        final StreamedFsImage<Map<Long, Long>> streamed = builder.build()
+                                .stream(file, new FileSizeByIdVisitor(batchSize));
+                        assertThat(streamed.getResult()).isEqualTo(expected);
+                        assertThat(streamed.getINodeCount()).isEqualTo(expected.size());
+                    }
+                }
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final StreamedFsImage<Map<Long, Long>> streamed = new FsImageLoader.Builder().build()
+                    .stream(file, new FileSizeByIdVisitor(1));
+            assertThat(streamed.getINodeCount()).isEqualTo(30);
+            assertThat(streamed.getUserNames()).isEqualTo(fsImageData.getUserNames());
+            assertThat(streamed.getGroupNames()).isEqualTo(fsImageData.getGroupNames());
+            final long permission = fsImageData.getINodeView(fsImageData.getINodeFromPath("/test3").getId()).getPermission();
+            assertThat(streamed.getUserName(FsImageData.getUserId(permission))).isEqualTo("mm");
+            assertThat(streamed.getGroupName(FsImageData.getGroupId(permission))).isEqualTo("supergroup");
+            assertThat(streamed.getPermissionStatus(permission).getPermission())
+                    .isEqualTo(fsImageData.getPermissionStatus(permission).getPermission());
+        }
+    }
+
+    @Test
+    public void testVisitForkJoin() throws IOException {
+        loadAndVisit(fsImageData, new FsVisitor.Builder().forkJoin());
+        // Fork every directory with children
+        loadAndVisit(fsImageData, new FsVisitor.Builder().forkJoin(1));
+
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsimage_d800_f210k_compressed.img", "r")) {
+            final FsImageData compressedImage = new FsImageLoader.Builder().parallel().build().load(file);
+            for (FsVisitor.Builder builder : List.of(new FsVisitor.Builder().forkJoin(),
+                    new FsVisitor.Builder().forkJoin(1))) {
+                final CountingVisitor visitor = new CountingVisitor(compressedImage);
+                builder.visit(compressedImage, visitor);
+                assertThat(visitor.numFiles.get()).isEqualTo(209560L);
+                assertThat(visitor.numDirs.get()).isEqualTo(807L);
+            }
+        }
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new FsVisitor.Builder().forkJoin(0));
+    }
+
+    @Test
+    public void testLoadShutsDownDedicatedPool() throws IOException {
+        final List<ForkJoinPool> pools = new ArrayList<>();
+        final ForkJoinPool givenPool = new ForkJoinPool(2);
+        try {
+            for (ForkJoinPool forkJoinPool : Arrays.asList(null, givenPool)) {
+                final FsImageLoader loader = new FsImageLoader(() -> {
+                    pools.add(ForkJoinTask.getPool());
+                    return new FsImageLoader.PrimitiveArrayINodesRepository.ParallelBuilder();
+                }, null, true, 2, false, false, false, false, forkJoinPool, 2);
+                for (int i = 0; i < 2; i++) {
+                    try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+                        assertThat(loader.load(file).getINodeCount()).isEqualTo(30);
+                    }
+                }
+            }
+        } finally {
+            givenPool.shutdown();
+        }
+        // Every load creates and shuts down its own pool, unless given a pool
+        assertThat(pools).hasSize(4).doesNotContainNull();
+        assertThat(pools.get(0)).isNotSameAs(pools.get(1));
+        assertThat(pools.get(0).isShutdown()).isTrue();
+        assertThat(pools.get(1).isShutdown()).isTrue();
+        assertThat(pools.subList(2, 4)).containsOnly(givenPool);
+    }
+
+    @Test
+    public void testLoadAndVisitWithParallelism() throws IOException {
+        final File subSectionImage = temporaryFolder.newFile();
+        new SubSectionFsImageWriter(3).write(new File("src/test/resources/fsi_small_h3_2.img"), subSectionImage);
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            final List<FsImageLoader.Builder> builders = List.of(
+                    new FsImageLoader.Builder().parallelism(1),
+                    new FsImageLoader.Builder().parallelism(3).parallelSections().offHeap(),
+                    new FsImageLoader.Builder().forkJoinPool(pool).parallelSections().childIndexes().inodeColumns(),
+                    new FsImageLoader.Builder().forkJoinPool(pool).memoryMapped());
+            for (FsImageLoader.Builder builder : builders) {
+                try (RandomAccessFile file = new RandomAccessFile(subSectionImage, "r")) {
+                    final FsImageData image = builder.build().load(file);
+                    loadAndVisit(image, new FsVisitor.Builder().parallel().parallelism(1));
+                    loadAndVisit(image, new FsVisitor.Builder().forkJoin(1).parallelism(2));
+                    loadAndVisit(image, new FsVisitor.Builder().forkJoinPool(pool).forkJoin(1));
+                }
+            }
+
+            // All callbacks run within the given pool
+            final Set<ForkJoinPool> pools = ConcurrentHashMap.newKeySet();
+            final AtomicLong numFiles = new AtomicLong();
+            for (FsVisitor.Builder builder : List.of(new FsVisitor.Builder().forkJoin(1).forkJoinPool(pool),
+                    new FsVisitor.Builder().parallel().forkJoinPool(pool))) {
+                builder.visit(fsImageData, new INodeViewVisitor() {
+                    @Override
+                    public void onFile(INodeView inode, CharSequence path) {
+                        numFiles.incrementAndGet();
+                        pools.add(ForkJoinTask.getPool());
+                    }
+
+                    @Override
+                    public void onDirectory(INodeView inode, CharSequence path) {
+                        pools.add(ForkJoinTask.getPool());
+                    }
+
+                    @Override
+                    public void onSymLink(INodeView inode, CharSequence path) {
+                        pools.add(ForkJoinTask.getPool());
+                    }
+                });
+            }
+            assertThat(numFiles.get()).isEqualTo(2 * 16L);
+            assertThat(pools).containsExactly(pool);
+            assertThat(pool.isShutdown()).isFalse();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new FsVisitor.Builder().parallelism(0));
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new FsImageLoader.Builder().parallelism(0));
+    }
+
+    @Test
+    public void testLoadMemoryMapped() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData mappedImage = new FsImageLoader.Builder().memoryMapped().build().load(file);
+            loadAndVisit(mappedImage, new FsVisitor.Builder());
+        }
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData mappedImage = new FsImageLoader.Builder().memoryMapped().parallel().build().load(file);
+            loadAndVisit(mappedImage, new FsVisitor.Builder().parallel());
+        }
+    }
+
+    @Test
+    public void testLoadMemoryMappedWithInodesSpanningChunks() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            // 64 byte chunks, so that most inodes span two chunks
+            final FsImageData mappedImage = new FsImageLoader(FsImageLoader.PrimitiveArrayINodesRepository.Builder::new,
+                    () -> new MappedINodesRepository.Builder(6)).load(file);
+            loadAndVisit(mappedImage, new FsVisitor.Builder());
+        }
+    }
+
+    @Test
+    public void testLoadMemoryMappedFallbackForCompressedFsImage() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsimage_d800_f210k_compressed.img", "r")) {
+            final FsImageData compressedImage = new FsImageLoader.Builder().memoryMapped().build().load(file);
+            final CountingVisitor visitor = new CountingVisitor(compressedImage);
+            new FsVisitor.Builder().parallel().visit(compressedImage, visitor);
+            assertThat(visitor.numFiles.get()).isEqualTo(209560L);
+            assertThat(visitor.numDirs.get()).isEqualTo(807L);
+        }
+    }
+
+    @Test
+    public void testLoadOffHeap() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData offHeapImage = new FsImageLoader.Builder().offHeap().parallel().build().load(file);
+            loadAndVisit(offHeapImage, new FsVisitor.Builder().parallel());
+        }
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            // 256 byte segments, forcing multiple segments
+            final FsImageData offHeapImage = new FsImageLoader(() -> new OffHeapINodesRepository.Builder(256))
+                    .load(file);
+            loadAndVisit(offHeapImage, new FsVisitor.Builder());
+        }
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsimage_d800_f210k_compressed.img", "r")) {
+            final FsImageData compressedImage = new FsImageLoader.Builder().offHeap().parallel().build().load(file);
+            final CountingVisitor visitor = new CountingVisitor(compressedImage);
+            new FsVisitor.Builder().parallel().visit(compressedImage, visitor);
+            assertThat(visitor.numFiles.get()).isEqualTo(209560L);
+            assertThat(visitor.numDirs.get()).isEqualTo(807L);
+        }
+    }
+
+    @Test
+    public void testLoadParallelSections() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData image = new FsImageLoader.Builder().parallelSections().parallel().build().load(file);
+            loadAndVisit(image, new FsVisitor.Builder().parallel());
+        }
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData image = new FsImageLoader.Builder().parallelSections().memoryMapped().build().load(file);
+            loadAndVisit(image, new FsVisitor.Builder());
+        }
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsimage_d800_f210k_compressed.img", "r")) {
+            final FsImageData compressedImage = new FsImageLoader.Builder().parallelSections().parallel().build()
+                    .load(file);
+            final CountingVisitor visitor = new CountingVisitor(compressedImage);
+            new FsVisitor.Builder().parallel().visit(compressedImage, visitor);
+            assertThat(visitor.numFiles.get()).isEqualTo(209560L);
+            assertThat(visitor.numDirs.get()).isEqualTo(807L);
+        }
+    }
+
+    @Test
+    public void testLoadSubSections() throws IOException {
+        final File subSectionImage = temporaryFolder.newFile();
+        new SubSectionFsImageWriter(3).write(new File("src/test/resources/fsi_small_h3_2.img"), subSectionImage);
+        final List<FsImageLoader.Builder> builders = List.of(
+                new FsImageLoader.Builder(),
+                new FsImageLoader.Builder().parallel(),
+                new FsImageLoader.Builder().parallel().parallelSections(),
+                new FsImageLoader.Builder().parallel().offHeap(),
+                new FsImageLoader.Builder().parallel().memoryMapped());
+        for (FsImageLoader.Builder builder : builders) {
+            try (RandomAccessFile file = new RandomAccessFile(subSectionImage, "r")) {
+                loadAndVisit(builder.build().load(file), new FsVisitor.Builder().parallel());
+            }
+        }
+    }
+
+    @Test
+    public void testLoadCompressedSubSections() throws IOException {
+        final File subSectionImage = temporaryFolder.newFile();
+        new SubSectionFsImageWriter(8).write(new File("src/test/resources/fsimage_d800_f210k_compressed.img"),
+                subSectionImage);
+        final List<FsImageLoader.Builder> builders = List.of(
+                new FsImageLoader.Builder(),
+                new FsImageLoader.Builder().parallel(),
+                new FsImageLoader.Builder().parallel().offHeap(),
+                new FsImageLoader.Builder().parallel().pipelinedDecompression());
+        for (FsImageLoader.Builder builder : builders) {
+            try (RandomAccessFile file = new RandomAccessFile(subSectionImage, "r")) {
+                final FsImageData compressedImage = builder.build().load(file);
+                final CountingVisitor visitor = new CountingVisitor(compressedImage);
+                new FsVisitor.Builder().parallel().visit(compressedImage, visitor);
+                assertThat(visitor.numFiles.get()).isEqualTo(209560L);
+                assertThat(visitor.numDirs.get()).isEqualTo(807L);
+            }
+        }
+    }
+
+    @Test
+    public void testLoadChildIndexes() throws IOException {
+        final List<FsImageLoader.Builder> builders = List.of(
+                new FsImageLoader.Builder().childIndexes(),
+                new FsImageLoader.Builder().childIndexes().parallel(),
+                new FsImageLoader.Builder().childIndexes().parallel().offHeap(),
+                new FsImageLoader.Builder().childIndexes().memoryMapped());
+        for (FsImageLoader.Builder builder : builders) {
+            try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+                final FsImageData indexedImage = builder.build().load(file);
+                loadAndVisit(indexedImage, new FsVisitor.Builder());
+                loadAndVisit(indexedImage, new FsVisitor.Builder().parallel());
+
+                // Same children, resolved via indexes
+                for (String path : List.of("/", "/test3", "/test3/foo/bar", "/test1")) {
+                    final long id = fsImageData.getINodeFromPath(path).getId();
+                    assertThat(indexedImage.getChildINodeIds(id)).containsExactly(fsImageData.getChildINodeIds(id));
+                }
+                assertThat(indexedImage.getChildDirectories("/test3"))
+                        .isEqualTo(fsImageData.getChildDirectories("/test3"));
+            }
+        }
+    }
+
+    @Test
+    public void testGetInodeByIndex() throws IOException {
+        long previousId = -1;
+        for (int i = 0; i < 30; i++) {
+            final FsImageProto.INodeSection.INode inode = fsImageData.getInodeByIndex(i);
+            assertThat(inode.getId()).isGreaterThan(previousId);
+            assertThat(fsImageData.getInode(inode.getId())).isEqualTo(inode);
+            previousId = inode.getId();
+        }
+        assertThat(fsImageData.getInodeByIndex(0)).isEqualTo(fsImageData.getINodeFromPath("/"));
+    }
+
     @Test
     public void testLoadAndVisitParallel() throws IOException {
         loadAndVisit(fsImageData, new FsVisitor.Builder().parallel());
@@ -414,6 +766,12 @@ public class FsImageLoaderTest {
         }
     }
 
+    @Test
+    public void testGetINodeLookupMode() {
+        // Small inode id range
+        assertThat(fsImageData.getINodeLookupMode()).isEqualTo(FsImageLoader.INodeLookupMode.DIRECT);
+    }
+
     @Test
     public void testNormalizePath() {
         assertThat(FsImageData.normalizePath("/")).isEqualTo("/");
@@ -0,0 +1,50 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class INodeColumnsTest {
+
+    @Test
+    public void testColumnsMatchViews() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().parallel().inodeColumns().build().load(file);
+            assertThat(fsImageData.hasINodeColumns()).isTrue();
+            final INodeColumns columns = fsImageData.getINodeColumns();
+            assertThat(columns.size()).isEqualTo(fsImageData.getINodeCount());
+
+            final INodeView view = new INodeView();
+            long sumFileSize = 0;
+            for (int i = 0; i < columns.size(); i++) {
+                fsImageData.loadINodeView(i, view);
+                assertThat(columns.getType(i)).isEqualTo(view.getType());
+                assertThat(columns.getPermission(i)).isEqualTo(view.getPermission());
+                assertThat(columns.getModificationTime(i)).isEqualTo(view.getModificationTime());
+                assertThat(columns.getFileSize(i)).isEqualTo(view.getFileSize());
+                assertThat(columns.getConsumedFileSize(i)).isEqualTo(view.isFile() ? view.getConsumedFileSize() : 0);
+                assertThat(columns.getBlocksCount(i)).isEqualTo(view.getBlocksCount());
+                sumFileSize += columns.getFileSize(i);
+            }
+            assertThat(sumFileSize).isPositive();
+
+            // Views handed out by FsImageData use the columns
+            final INodeView columnsView = fsImageData.getINodeViewByIndex(1);
+            assertThat(columnsView.getFileSize()).isEqualTo(columns.getFileSize(1));
+            assertThat(columnsView.getType()).isEqualTo(columns.getType(1));
+        }
+    }
+
+    @Test
+    public void testColumnsNotLoaded() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+            assertThat(fsImageData.hasINodeColumns()).isFalse();
+            assertThatExceptionOfType(IllegalStateException.class).isThrownBy(fsImageData::getINodeColumns);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.primitives.ImmutableLongArray;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeDirectorySection.DirEntry;
+import org.apache.hadoop.thirdparty.protobuf.CodedOutputStream;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class INodeDirectorySectionDecoderTest {
+    private static final ImmutableLongArray REF_IDS = ImmutableLongArray.of(100L, 200L, 300L);
+
+    @Test
+    public void testDecodePacked() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DirEntry.newBuilder().setParent(16385).addChildren(16386).addChildren(1L << 40).addRefChildren(2)
+                .build().writeDelimitedTo(out);
+        DirEntry.newBuilder().setParent(16386).addChildren(16390).build().writeDelimitedTo(out);
+
+        final DirectoryIndex index = DirectoryIndex.merge(
+                INodeDirectorySectionDecoder.read(new ByteArrayInputStream(out.toByteArray()), REF_IDS, null, 0),
+                false);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.getChildIds(16385)).containsExactly(16386, 1L << 40, 300L);
+        assertThat(index.getChildIds(16386)).containsExactly(16390);
+        assertThat(index.getChildIds(16387)).isEmpty();
+        assertThat(index.getNumChildren(16385)).isEqualTo(3);
+        assertThat(index.getNumChildren(16387)).isZero();
+    }
+
+    @Test
+    public void testDecodeUnpackedAndUnknownFields() throws IOException {
+        final ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        final CodedOutputStream cos = CodedOutputStream.newInstance(entry);
+        cos.writeUInt64(1, 16385);
+        cos.writeUInt64(2, 16386);
+        cos.writeUInt64(2, 16387);
+        cos.writeUInt32(3, 0);
+        cos.writeString(15, "unknown");
+        cos.writeFixed64(16, 42L);
+        cos.writeFixed32(17, 42);
+        cos.flush();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CodedOutputStream delimited = CodedOutputStream.newInstance(out);
+        delimited.writeUInt32NoTag(entry.size());
+        delimited.writeRawBytes(entry.toByteArray());
+        delimited.flush();
+
+        final DirectoryIndex.Part part = INodeDirectorySectionDecoder.decode(out.toByteArray(), out.size(), REF_IDS);
+        assertThat(part.directoryIds.toLongArray()).containsExactly(16385L);
+        assertThat(part.children.toLongArray()).containsExactly(16386L, 16387L, 100L);
+        // Cross check with protobuf
+        assertThat(DirEntry.parseDelimitedFrom(new ByteArrayInputStream(out.toByteArray())).getChildrenList())
+                .containsExactly(16386L, 16387L);
+    }
+
+    @Test
+    public void testDecodeConcurrentlyInChunks() throws IOException {
+        // Enough entries for multiple chunks, in reverse order
+        final int numDirs = 100_000;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = numDirs; i > 0; i--) {
+            DirEntry.newBuilder().setParent(i).addChildren(numDirs + i).addChildren(2L * numDirs + i)
+                    .build().writeDelimitedTo(out);
+        }
+        assertThat(out.size()).isGreaterThan(INodeDirectorySectionDecoder.CHUNK_SIZE);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<DirectoryIndex.Part> parts = INodeDirectorySectionDecoder.read(
+                    new ByteArrayInputStream(out.toByteArray()), REF_IDS, executorService, 2);
+            assertThat(parts).hasSizeGreaterThan(1);
+            final DirectoryIndex index = DirectoryIndex.merge(parts, true);
+            assertThat(index.size()).isEqualTo(numDirs);
+            for (int i = 1; i <= numDirs; i++) {
+                final int dirIdx = index.indexOf(i);
+                assertThat(dirIdx).isEqualTo(i - 1);
+                assertThat(index.childrenEnd(dirIdx) - index.childrenStart(dirIdx)).isEqualTo(2);
+                assertThat(index.getChildId(index.childrenStart(dirIdx))).isEqualTo(numDirs + i);
+                assertThat(index.getChildId(index.childrenStart(dirIdx) + 1)).isEqualTo(2L * numDirs + i);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDecodeDuplicateParent() throws IOException {
+        // Dense and sparse directory ids fail alike
+        for (long otherParent : new long[]{16386, 1L << 40}) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DirEntry.newBuilder().setParent(16385).addChildren(16387).build().writeDelimitedTo(out);
+            DirEntry.newBuilder().setParent(otherParent).addChildren(16388).build().writeDelimitedTo(out);
+            DirEntry.newBuilder().setParent(16385).addChildren(16389).build().writeDelimitedTo(out);
+
+            final List<DirectoryIndex.Part> parts = INodeDirectorySectionDecoder.read(
+                    new ByteArrayInputStream(out.toByteArray()), REF_IDS, null, 0);
+            assertThatExceptionOfType(IllegalStateException.class)
+                    .isThrownBy(() -> DirectoryIndex.merge(parts, false))
+                    .withMessage("Duplicate inode id 16385");
+        }
+    }
+
+    @Test
+    public void testDecodeMalformed() {
+        final byte[] truncated = new byte[]{10, 8, 1};
+        assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> INodeDirectorySectionDecoder.decode(truncated, truncated.length, REF_IDS));
+    }
+}
@@ -0,0 +1,50 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class INodeIdIndexTest {
+    @Test
+    public void testDenseIdsUseDirectLookup() {
+        final long[] ids = new long[]{16385, 16386, 16388, 16389};
+        final INodeIdIndex index = INodeIdIndex.create(ids);
+        assertThat(index.getLookupMode()).isEqualTo(FsImageLoader.INodeLookupMode.DIRECT);
+        assertIndex(index, ids);
+    }
+
+    @Test
+    public void testSparseIdsUseBinarySearch() {
+        final long[] ids = new long[]{16385, 16386, 1L << 32, Long.MAX_VALUE};
+        final INodeIdIndex index = INodeIdIndex.create(ids);
+        assertThat(index.getLookupMode()).isEqualTo(FsImageLoader.INodeLookupMode.BINARY_SEARCH);
+        assertIndex(index, ids);
+    }
+
+    @Test
+    public void testForcedBinarySearch() {
+        final long[] ids = new long[]{16385, 16386, 16388, 16389};
+        final INodeIdIndex index = INodeIdIndex.create(ids, false);
+        assertThat(index.getLookupMode()).isEqualTo(FsImageLoader.INodeLookupMode.BINARY_SEARCH);
+        assertIndex(index, ids);
+    }
+
+    @Test
+    public void testEmpty() {
+        final INodeIdIndex index = INodeIdIndex.create(new long[0]);
+        assertThat(index.size()).isZero();
+        assertThat(index.indexOf(16385)).isNegative();
+    }
+
+    private static void assertIndex(INodeIdIndex index, long[] ids) {
+        assertThat(index.size()).isEqualTo(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            assertThat(index.indexOf(ids[i])).isEqualTo(i);
+            assertThat(index.getInodeId(i)).isEqualTo(ids[i]);
+        }
+        // Hole, below and above range
+        assertThat(index.indexOf(16387)).isNegative();
+        assertThat(index.indexOf(1)).isNegative();
+        assertThat(index.indexOf(Long.MAX_VALUE - 1)).isNegative();
+    }
+}
@@ -0,0 +1,41 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class INodeIdSorterTest {
+    @Test
+    public void testSortedOrder() {
+        // Dense
+        long[] ids = new long[]{16390, 16385, 16387, 16386, 16389};
+        assertThat(INodeIdSorter.permute(ids, INodeIdSorter.sortedOrder(ids, false)))
+                .containsExactly(16385, 16386, 16387, 16389, 16390);
+
+        // Sparse
+        ids = new long[]{Long.MAX_VALUE, 16385, 1L << 40, 16386};
+        assertThat(INodeIdSorter.permute(ids, INodeIdSorter.sortedOrder(ids, false)))
+                .containsExactly(16385, 16386, 1L << 40, Long.MAX_VALUE);
+        assertThat(INodeIdSorter.permute(ids, INodeIdSorter.sortedOrder(ids, true)))
+                .containsExactly(16385, 16386, 1L << 40, Long.MAX_VALUE);
+
+        // Already sorted
+        ids = new long[]{16385, 16386, 20000};
+        assertThat(INodeIdSorter.sortedOrder(ids, false)).containsExactly(0, 1, 2);
+
+        assertThat(INodeIdSorter.sortedOrder(new long[0], false)).isEmpty();
+    }
+
+    @Test
+    public void testSortedOrderWithDuplicateIds() {
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> INodeIdSorter.sortedOrder(new long[]{16386, 16385, 16386}, false));
+        // Sparse
+        for (boolean parallel : new boolean[]{false, true}) {
+            assertThatExceptionOfType(IllegalStateException.class)
+                    .isThrownBy(() -> INodeIdSorter.sortedOrder(new long[]{1L << 40, 16385, 1L << 40}, parallel))
+                    .withMessage("Duplicate inode id " + (1L << 40));
+        }
+    }
+}
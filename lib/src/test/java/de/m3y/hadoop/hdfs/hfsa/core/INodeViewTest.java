@@ -0,0 +1,545 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.m3y.hadoop.hdfs.hfsa.util.FsUtil;
+import org.apache.hadoop.hdfs.protocol.SystemErasureCodingPolicies;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INode;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INodeFile;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INodeSymlink;
+import org.apache.hadoop.hdfs.server.namenode.INodeId;
+import org.apache.hadoop.thirdparty.protobuf.ByteString;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class INodeViewTest {
+
+    @Test
+    public void testViewMatchesParsedINode() throws IOException {
+        for (FsImageLoader.Builder builder : List.of(new FsImageLoader.Builder(),
+                new FsImageLoader.Builder().offHeap(),
+                new FsImageLoader.Builder().memoryMapped())) {
+            for (String image : List.of("src/test/resources/fsi_small_h3_2.img",
+                    "src/test/resources/fsi_small_h2x.img")) {
+                try (RandomAccessFile file = new RandomAccessFile(image, "r")) {
+                    final FsImageData fsImageData = builder.build().load(file);
+                    final INodeView view = new INodeView();
+                    final int numInodes = fsImageData.getINodeCount();
+                    assertThat(numInodes).isPositive();
+                    for (int i = 0; i < numInodes; i++) {
+                        assertViewMatches(fsImageData.loadINodeView(i, view), fsImageData);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertViewMatches(INodeView view, FsImageData fsImageData) throws IOException {
+        final INode inode = view.toINode();
+        assertThat(view.getId()).isEqualTo(inode.getId());
+        assertThat(view.getType()).isEqualTo(inode.getType());
+        assertThat(view.getName()).isEqualTo(inode.getName().toStringUtf8());
+        assertThat(view.getPermission()).isEqualTo(fsImageData.getPermission(inode));
+        assertThat(view.isFile()).isEqualTo(FsUtil.isFile(inode));
+        assertThat(view.isDirectory()).isEqualTo(FsUtil.isDirectory(inode));
+        assertThat(view.isSymlink()).isEqualTo(FsUtil.isSymlink(inode));
+        if (inode.hasFile()) {
+            final INodeFile file = inode.getFile();
+            assertThat(view.getModificationTime()).isEqualTo(file.getModificationTime());
+            assertThat(view.getFileSize()).isEqualTo(FsUtil.getFileSize(file));
+            assertThat(view.getConsumedFileSize()).isEqualTo(FsUtil.getConsumedFileSize(file));
+            assertThat(view.getBlocksCount()).isEqualTo(file.getBlocksCount());
+            assertThat(view.getReplication()).isEqualTo(FsUtil.getFileReplication(file));
+        } else if (inode.hasDirectory()) {
+            assertThat(view.getModificationTime()).isEqualTo(inode.getDirectory().getModificationTime());
+            assertThat(view.getFileSize()).isZero();
+            assertThat(view.getBlocksCount()).isZero();
+        }
+    }
+
+    @Test
+    public void testErasureCodedFileAndSymlink() throws IOException {
+        final INode ecFile = INode.newBuilder().setType(INode.Type.FILE).setId(16400).setName(ByteString.copyFromUtf8("ec"))
+                .setFile(INodeFile.newBuilder()
+                        .setModificationTime(1500000000000L)
+                        .setPermission(0x123456789L)
+                        .addBlocks(HdfsProtos.BlockProto.newBuilder().setBlockId(1).setGenStamp(1001).setNumBytes(1024 * 1024 * 3))
+                        .addBlocks(HdfsProtos.BlockProto.newBuilder().setBlockId(2).setGenStamp(1002).setNumBytes(17))
+                        .setErasureCodingPolicyID(SystemErasureCodingPolicies.RS_6_3_POLICY_ID))
+                .build();
+        final INodeView view = new INodeView();
+        // Offset by some garbage, to check offset handling
+        final byte[] bytes = ecFile.toByteArray();
+        final byte[] padded = new byte[bytes.length + 3];
+        System.arraycopy(bytes, 0, padded, 2, bytes.length);
+        view.reset(7, padded, 2, bytes.length);
+        assertThat(view.getIndex()).isEqualTo(7);
+        assertThat(view.getId()).isEqualTo(16400);
+        assertThat(view.getName()).isEqualTo("ec");
+        assertThat(view.getPermission()).isEqualTo(0x123456789L);
+        assertThat(view.getModificationTime()).isEqualTo(1500000000000L);
+        assertThat(view.getBlocksCount()).isEqualTo(2);
+        assertThat(view.getFileSize()).isEqualTo(1024 * 1024 * 3 + 17);
+        assertThat(view.getConsumedFileSize()).isEqualTo(FsUtil.getConsumedFileSize(ecFile.getFile()));
+        assertThat(view.getReplication()).isEqualTo(FsUtil.getFileReplication(ecFile.getFile()));
+        assertThat(view.toINode()).isEqualTo(ecFile);
+
+        final INode symlink = INode.newBuilder().setType(INode.Type.SYMLINK).setId(16401).setName(ByteString.copyFromUtf8("ln"))
+                .setSymlink(INodeSymlink.newBuilder().setPermission(42L).setModificationTime(123L)
+                        .setTarget(ByteString.copyFromUtf8("/target")))
+                .build();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+        buffer.put(10, symlink.toByteArray());
+        view.reset(8, buffer, 10, symlink.getSerializedSize());
+        assertThat(view.isSymlink()).isTrue();
+        assertThat(view.getId()).isEqualTo(16401);
+        assertThat(view.getName()).isEqualTo("ln");
+        assertThat(view.getPermission()).isEqualTo(42L);
+        assertThat(view.getModificationTime()).isEqualTo(123L);
+        assertThat(view.getFileSize()).isZero();
+        assertThat(view.toINode()).isEqualTo(symlink);
+    }
+
+    @Test
+    public void testMalformed() {
+        final byte[] truncated = INode.newBuilder().setType(INode.Type.FILE).setId(16400)
+                .setName(ByteString.copyFromUtf8("truncated")).build().toByteArray();
+        final INodeView view = new INodeView().reset(0, truncated, 0, truncated.length - 2);
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(view::getName);
+    }
+
+    @Test
+    public void testVisitViews() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+            for (FsVisitor.Builder builder : List.of(new FsVisitor.Builder(), new FsVisitor.Builder().parallel(),
+                    new FsVisitor.Builder().forkJoin(1))) {
+                for (String path : List.of(FsImageData.ROOT_PATH, "/test3", "/datalake/asset3")) {
+                    final Set<String> expected = ConcurrentHashMap.newKeySet();
+                    builder.visit(fsImageData, new FsVisitor() {
+                        @Override
+                        public void onFile(INode inode, String path) {
+                            expected.add("f:" + path + ":" + inode.getName().toStringUtf8() + ":" + inode.getId());
+                        }
+
+                        @Override
+                        public void onDirectory(INode inode, String path) {
+                            expected.add("d:" + path + ":" + inode.getName().toStringUtf8() + ":" + inode.getId());
+                        }
+
+                        @Override
+                        public void onSymLink(INode inode, String path) {
+                            expected.add("l:" + path + ":" + inode.getName().toStringUtf8() + ":" + inode.getId());
+                        }
+                    }, path);
+
+                    final Set<String> actual = ConcurrentHashMap.newKeySet();
+                    final List<Long> fileSizes = new ArrayList<>();
+                    builder.visit(fsImageData, new INodeViewVisitor() {
+                        @Override
+                        public void onFile(INodeView inode, CharSequence path) {
+                            actual.add("f:" + path + ":" + inode.getName() + ":" + inode.getId());
+                            synchronized (fileSizes) {
+                                fileSizes.add(inode.getFileSize());
+                            }
+                        }
+
+                        @Override
+                        public void onDirectory(INodeView inode, CharSequence path) {
+                            actual.add("d:" + path + ":" + inode.getName() + ":" + inode.getId());
+                        }
+
+                        @Override
+                        public void onSymLink(INodeView inode, CharSequence path) {
+                            actual.add("l:" + path + ":" + inode.getName() + ":" + inode.getId());
+                        }
+                    }, path);
+
+                    assertThat(actual).isNotEmpty().isEqualTo(expected);
+                    assertThat(fileSizes).allMatch(size -> size > 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testVisitPruned() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+            final Set<String> all = visitPaths(new FsVisitor.Builder(), fsImageData, null, VisitResult.CONTINUE);
+            final Set<String> expected = new HashSet<>();
+            for (String path : all) {
+                if (!path.startsWith("/test3/")) {
+                    expected.add(path);
+                }
+            }
+            assertThat(expected).contains("/test3").hasSizeLessThan(all.size());
+
+            for (FsVisitor.Builder builder : List.of(new FsVisitor.Builder(), new FsVisitor.Builder().parallel(),
+                    new FsVisitor.Builder().forkJoin(1))) {
+                assertThat(visitPaths(builder, fsImageData, "/test3", VisitResult.SKIP_CHILDREN))
+                        .isEqualTo(expected);
+                assertThat(visitPaths(builder, fsImageData, "/", VisitResult.SKIP_CHILDREN))
+                        .containsExactly("/");
+                assertThat(visitPaths(builder, fsImageData, "/", VisitResult.STOP))
+                        .containsExactly("/");
+                assertThat(visitPaths(builder, fsImageData, "/test3", VisitResult.STOP))
+                        .contains("/test3").hasSizeLessThan(all.size());
+
+                // Legacy visitor
+                final Set<String> legacy = ConcurrentHashMap.newKeySet();
+                builder.visit(fsImageData, new FsVisitor() {
+                    @Override
+                    public void onFile(INode inode, String path) {
+                        legacy.add(path);
+                    }
+
+                    @Override
+                    public void onDirectory(INode inode, String path) {
+                        throw new IllegalStateException("Not expected to be invoked");
+                    }
+
+                    @Override
+                    public VisitResult visitDirectory(INode inode, String path) {
+                        legacy.add(path);
+                        return inode.getName().toStringUtf8().equals("datalake") ? VisitResult.SKIP_CHILDREN :
+                                VisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public void onSymLink(INode inode, String path) {
+                        legacy.add(path);
+                    }
+                });
+                assertThat(legacy).contains("/test3/foo/bar").noneMatch(path -> path.startsWith("/datalake"));
+            }
+
+            // Sequential visiting stops immediately
+            final AtomicInteger callbacks = new AtomicInteger();
+            new FsVisitor.Builder().visit(fsImageData, new INodeViewVisitor() {
+                @Override
+                public void onFile(INodeView inode, CharSequence path) {
+                    callbacks.incrementAndGet();
+                }
+
+                @Override
+                public void onDirectory(INodeView inode, CharSequence path) {
+                    // Not invoked
+                }
+
+                @Override
+                public VisitResult visitDirectory(INodeView inode, CharSequence path) {
+                    return callbacks.incrementAndGet() == 3 ? VisitResult.STOP : VisitResult.CONTINUE;
+                }
+
+                @Override
+                public void onSymLink(INodeView inode, CharSequence path) {
+                    callbacks.incrementAndGet();
+                }
+            });
+            assertThat(callbacks.get()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void testAggregate() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+
+            // Expected recursive {size, number of files} per directory, from a plain visit
+            final Map<String, List<Long>> expected = new HashMap<>();
+            new FsVisitor.Builder().visit(fsImageData, new INodeViewVisitor() {
+                @Override
+                public void onFile(INodeView inode, CharSequence path) {
+                    for (String dir = path.toString(); ; dir = dir.substring(0, Math.max(1, dir.lastIndexOf('/')))) {
+                        final List<Long> value = expected.get(dir);
+                        expected.put(dir, List.of(value.get(0) + inode.getFileSize(), value.get(1) + 1));
+                        if (FsImageData.ROOT_PATH.equals(dir)) {
+                            break;
+                        }
+                    }
+                }
+
+                @Override
+                public void onDirectory(INodeView inode, CharSequence path) {
+                    expected.put(PathBuffer.childPath(path, inode), List.of(0L, 0L));
+                }
+
+                @Override
+                public void onSymLink(INodeView inode, CharSequence path) {
+                    // Not counted
+                }
+            });
+            assertThat(expected).hasSize(14);
+            assertThat(expected.get("/").get(1)).isEqualTo(16L);
+
+            for (FsVisitor.Builder builder : List.of(new FsVisitor.Builder(), new FsVisitor.Builder().parallel(),
+                    new FsVisitor.Builder().forkJoin(1), new FsVisitor.Builder().forkJoin().parallelism(2))) {
+                final Map<String, List<Long>> totals = new ConcurrentHashMap<>();
+                final long[] root = builder.aggregate(fsImageData, new SizeAggregator(totals, null));
+                assertThat(totals).isEqualTo(expected);
+                assertThat(root).containsExactly(expected.get("/").get(0), 16L);
+
+                totals.clear();
+                final long[] test3 = builder.aggregate(fsImageData, new SizeAggregator(totals, null), "/test3/foo");
+                assertThat(totals).containsOnlyKeys("/test3/foo", "/test3/foo/bar")
+                        .containsEntry("/test3/foo/bar", expected.get("/test3/foo/bar"));
+                assertThat(test3).containsExactly(expected.get("/test3/foo").get(0), expected.get("/test3/foo").get(1));
+
+                // Pruned directory gets callback with empty accumulator
+                totals.clear();
+                builder.aggregate(fsImageData, new SizeAggregator(totals, "/test3"));
+                assertThat(totals).containsEntry("/test3", List.of(0L, 0L))
+                        .doesNotContainKey("/test3/foo")
+                        .containsEntry("/", List.of(expected.get("/").get(0) - expected.get("/test3").get(0),
+                                expected.get("/").get(1) - expected.get("/test3").get(1)));
+            }
+        }
+    }
+
+    @Test
+    public void testCollect() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+            final Set<String> all = visitPaths(new FsVisitor.Builder(), fsImageData, null, VisitResult.CONTINUE);
+
+            for (FsVisitor.Builder builder : List.of(new FsVisitor.Builder(), new FsVisitor.Builder().parallel(),
+                    new FsVisitor.Builder().forkJoin(1), new FsVisitor.Builder().forkJoin().parallelism(2))) {
+                final Set<Set<String>> accumulators = ConcurrentHashMap.newKeySet();
+                final INodeViewCollector<Set<String>> collector = new INodeViewCollector<>() {
+                    @Override
+                    public Set<String> newAccumulator() {
+                        final Set<String> accumulator = new HashSet<>();
+                        accumulators.add(accumulator);
+                        return accumulator;
+                    }
+
+                    @Override
+                    public void onFile(Set<String> accumulator, INodeView inode, CharSequence path) {
+                        assertThat(accumulator.add(PathBuffer.childPath(path, inode))).isTrue();
+                    }
+
+                    @Override
+                    public VisitResult visitDirectory(Set<String> accumulator, INodeView inode, CharSequence path) {
+                        final String directory = PathBuffer.childPath(path, inode);
+                        assertThat(accumulator.add(directory)).isTrue();
+                        return "/test3".equals(directory) ? VisitResult.SKIP_CHILDREN : VisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public void combine(Set<String> accumulator, Set<String> other) {
+                        assertThat(accumulators).contains(accumulator, other);
+                        accumulator.addAll(other);
+                    }
+                };
+                final Set<String> paths = builder.collect(fsImageData, collector);
+                assertThat(paths).contains("/", "/test3")
+                        .noneMatch(path -> path.startsWith("/test3/"))
+                        .allMatch(all::contains);
+                // Start directory path depends on strategy, see visit(...)
+                final List<String> descendants = all.stream().filter(path -> path.startsWith("/test3/foo/")).toList();
+                assertThat(builder.collect(fsImageData, collector, "/test3/foo"))
+                        .containsAll(descendants).hasSize(descendants.size() + 1);
+            }
+        }
+    }
+
+    @Test
+    public void testVisitBatched() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+            final long totalSize = new FsVisitor.Builder().aggregate(fsImageData, new SizeAggregator(new HashMap<>(),
+                    null))[0];
+
+            for (FsVisitor.Builder builder : List.of(new FsVisitor.Builder(), new FsVisitor.Builder().parallel(),
+                    new FsVisitor.Builder().forkJoin(1), new FsVisitor.Builder().forkJoin().parallelism(2))) {
+                for (int batchSize : new int[]{1, 3, INodeViewBatchVisitor.DEFAULT_BATCH_SIZE}) {
+                    final Set<INodeViewBatch> batches = ConcurrentHashMap.newKeySet();
+                    // {files, directories, symlinks, size}
+                    final long[] counts = builder.visitBatched(fsImageData, new INodeViewBatchVisitor<long[]>() {
+                        @Override
+                        public long[] newAccumulator() {
+                            return new long[4];
+                        }
+
+                        @Override
+                        public void onBatch(long[] accumulator, INodeViewBatch batch) {
+                            batches.add(batch);
+                            assertThat(batch.size()).isBetween(1, batchSize);
+                            for (int i = 0; i < batch.size(); i++) {
+                                final INodeView inode = batch.get(i);
+                                if (inode.isFile()) {
+                                    accumulator[0]++;
+                                    accumulator[3] += inode.getFileSize();
+                                } else if (inode.isDirectory()) {
+                                    accumulator[1]++;
+                                } else {
+                                    accumulator[2]++;
+                                }
+                            }
+                            assertThatExceptionOfType(IndexOutOfBoundsException.class)
+                                    .isThrownBy(() -> batch.get(batch.size()));
+                        }
+
+                        @Override
+                        public void merge(long[] accumulator, long[] other) {
+                            for (int i = 0; i < accumulator.length; i++) {
+                                accumulator[i] += other[i];
+                            }
+                        }
+
+                        @Override
+                        public int batchSize() {
+                            return batchSize;
+                        }
+                    });
+                    assertThat(counts).containsExactly(16L, 14L, 0L, totalSize);
+                    assertThat(batches).isNotEmpty();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+            assertThat(fsImageData.getINodeCount()).isEqualTo(30);
+
+            final List<Long> ids = new ArrayList<>();
+            fsImageData.scan(inode -> ids.add(inode.getId()));
+            assertThat(ids).hasSize(30).doesNotHaveDuplicates().contains(INodeId.ROOT_INODE_ID);
+            final List<Long> range = new ArrayList<>();
+            fsImageData.scan(10, 20, inode -> range.add(inode.getId()));
+            assertThat(range).isEqualTo(ids.subList(10, 20));
+            assertThatExceptionOfType(IndexOutOfBoundsException.class)
+                    .isThrownBy(() -> fsImageData.scan(20, 31, inode -> range.add(inode.getId())));
+
+            final long totalSize = new FsVisitor.Builder().aggregate(fsImageData, new SizeAggregator(new HashMap<>(),
+                    null))[0];
+            for (FsVisitor.Builder builder : List.of(new FsVisitor.Builder(), new FsVisitor.Builder().parallel(),
+                    new FsVisitor.Builder().forkJoin().parallelism(2))) {
+                for (int batchSize : new int[]{1, 7, INodeViewBatchVisitor.DEFAULT_BATCH_SIZE}) {
+                    // {files, directories, size}
+                    final long[] counts = builder.scan(fsImageData, new INodeViewBatchVisitor<long[]>() {
+                        @Override
+                        public long[] newAccumulator() {
+                            return new long[3];
+                        }
+
+                        @Override
+                        public void onBatch(long[] accumulator, INodeViewBatch batch) {
+                            for (int i = 0; i < batch.size(); i++) {
+                                final INodeView inode = batch.get(i);
+                                accumulator[inode.isFile() ? 0 : 1]++;
+                                accumulator[2] += inode.getFileSize();
+                            }
+                        }
+
+                        @Override
+                        public void merge(long[] accumulator, long[] other) {
+                            for (int i = 0; i < accumulator.length; i++) {
+                                accumulator[i] += other[i];
+                            }
+                        }
+
+                        @Override
+                        public int batchSize() {
+                            return batchSize;
+                        }
+                    });
+                    assertThat(counts).containsExactly(16L, 14L, totalSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggregates recursive {size, number of files}, skipping the children of given directory path.
+     */
+    private static class SizeAggregator implements INodeViewAggregator<long[]> {
+        private final Map<String, List<Long>> totals;
+        private final String skipPath;
+
+        SizeAggregator(Map<String, List<Long>> totals, String skipPath) {
+            this.totals = totals;
+            this.skipPath = skipPath;
+        }
+
+        @Override
+        public long[] newAccumulator() {
+            return new long[2];
+        }
+
+        @Override
+        public VisitResult visitDirectory(INodeView inode, CharSequence path) {
+            return PathBuffer.childPath(path, inode).equals(skipPath) ? VisitResult.SKIP_CHILDREN :
+                    VisitResult.CONTINUE;
+        }
+
+        @Override
+        public void onFile(long[] accumulator, INodeView inode, CharSequence path) {
+            accumulator[0] += inode.getFileSize();
+            accumulator[1]++;
+        }
+
+        @Override
+        public void merge(long[] accumulator, long[] child) {
+            accumulator[0] += child[0];
+            accumulator[1] += child[1];
+        }
+
+        @Override
+        public void onDirectoryExit(INodeView inode, CharSequence path, long[] accumulator) {
+            assertThat(totals.put(PathBuffer.childPath(path, inode), List.of(accumulator[0], accumulator[1])))
+                    .isNull();
+        }
+    }
+
+    /**
+     * Visits, returning the given result for the given directory path.
+     *
+     * @return the paths of all visited inodes.
+     */
+    private static Set<String> visitPaths(FsVisitor.Builder builder, FsImageData fsImageData,
+                                          String directoryPath, VisitResult result) throws IOException {
+        final Set<String> paths = ConcurrentHashMap.newKeySet();
+        builder.visit(fsImageData, new INodeViewVisitor() {
+            @Override
+            public void onFile(INodeView inode, CharSequence path) {
+                paths.add(PathBuffer.childPath(path, inode));
+            }
+
+            @Override
+            public void onDirectory(INodeView inode, CharSequence path) {
+                throw new IllegalStateException("Not expected to be invoked");
+            }
+
+            @Override
+            public VisitResult visitDirectory(INodeView inode, CharSequence path) {
+                final String directory = PathBuffer.childPath(path, inode);
+                paths.add(directory);
+                return directory.equals(directoryPath) ? result : VisitResult.CONTINUE;
+            }
+
+            @Override
+            public void onSymLink(INodeView inode, CharSequence path) {
+                paths.add(PathBuffer.childPath(path, inode));
+            }
+        });
+        return paths;
+    }
+}
@@ -0,0 +1,79 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.hdfs.server.namenode.INodeId;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class ParentIndexTest {
+
+    @Test
+    public void testGetPath() throws IOException {
+        for (FsImageLoader.Builder builder : List.of(new FsImageLoader.Builder(),
+                new FsImageLoader.Builder().childIndexes(),
+                new FsImageLoader.Builder().parentIndex(),
+                new FsImageLoader.Builder().parallel().childIndexes().parentIndex())) {
+            try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+                final FsImageData fsImageData = builder.build().load(file);
+
+                // Expected paths, by visiting
+                final Map<Long, String> expected = new HashMap<>();
+                new FsVisitor.Builder().visit(fsImageData, new INodeViewVisitor() {
+                    @Override
+                    public void onFile(INodeView inode, CharSequence path) {
+                        expected.put(inode.getId(), PathBuffer.childPath(path, inode));
+                    }
+
+                    @Override
+                    public void onDirectory(INodeView inode, CharSequence path) {
+                        expected.put(inode.getId(), PathBuffer.childPath(path, inode));
+                    }
+
+                    @Override
+                    public void onSymLink(INodeView inode, CharSequence path) {
+                        expected.put(inode.getId(), PathBuffer.childPath(path, inode));
+                    }
+                });
+                assertThat(expected).hasSize(30).containsEntry(INodeId.ROOT_INODE_ID, "/");
+
+                for (Map.Entry<Long, String> entry : expected.entrySet()) {
+                    assertThat(fsImageData.getPath(entry.getKey())).isEqualTo(entry.getValue());
+                }
+                final Set<String> scanned = new HashSet<>();
+                fsImageData.scan(inode -> scanned.add(fsImageData.getPath(inode)));
+                assertThat(scanned).containsExactlyInAnyOrderElementsOf(expected.values());
+
+                final ParentIndex parentIndex = fsImageData.getParentIndex();
+                assertThat(parentIndex.getParentIndex(fsImageData.getINodeIndex(INodeId.ROOT_INODE_ID)))
+                        .isEqualTo(ParentIndex.NO_PARENT);
+                final long test3Id = fsImageData.getINodeFromPath("/test3").getId();
+                assertThat(parentIndex.getParentIndex(fsImageData.getINodeIndex(
+                        fsImageData.getINodeFromPath("/test3/foo").getId())))
+                        .isEqualTo(fsImageData.getINodeIndex(test3Id));
+
+                assertThatExceptionOfType(IllegalArgumentException.class)
+                        .isThrownBy(() -> fsImageData.getPath(Long.MAX_VALUE));
+
+                // Streamed views have a section position instead of the index
+                final byte[] test3 = fsImageData.getInode(test3Id).toByteArray();
+                final INodeViewBatch batch = new INodeViewBatch(2);
+                batch.add(fsImageData.getINodeIndex(test3Id) + 1, test3, 0, test3.length);
+                batch.add(expected.size(), test3, 0, test3.length);
+                for (int i = 0; i < batch.size(); i++) {
+                    final INodeView streamed = batch.get(i);
+                    assertThatExceptionOfType(IllegalArgumentException.class)
+                            .isThrownBy(() -> fsImageData.getPath(streamed));
+                }
+            }
+        }
+    }
+}
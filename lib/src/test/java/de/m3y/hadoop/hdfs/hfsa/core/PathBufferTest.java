@@ -0,0 +1,80 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INode;
+import org.apache.hadoop.thirdparty.protobuf.ByteString;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class PathBufferTest {
+
+    private static INodeView directory(String name) {
+        final byte[] bytes = INode.newBuilder().setType(INode.Type.DIRECTORY).setId(16400)
+                .setName(ByteString.copyFromUtf8(name)).build().toByteArray();
+        return new INodeView().reset(0, bytes, 0, bytes.length);
+    }
+
+    private static INodeView bufferedDirectory(String name) {
+        final byte[] bytes = INode.newBuilder().setType(INode.Type.DIRECTORY).setId(16400)
+                .setName(ByteString.copyFromUtf8(name)).build().toByteArray();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 5);
+        buffer.put(5, bytes);
+        return new INodeView().reset(0, buffer, 5, bytes.length);
+    }
+
+    @Test
+    public void testPushAndPop() {
+        final PathBuffer path = new PathBuffer();
+        assertThat(path).hasToString("/");
+
+        path.push(directory("datalake"));
+        assertThat(path).hasToString("/datalake");
+        final String cached = path.toString();
+        path.push(bufferedDirectory("asset3"));
+        assertThat(path).hasToString("/datalake/asset3");
+        assertThat(path.length()).isEqualTo("/datalake/asset3".length());
+        assertThat(path.charAt(9)).isEqualTo('/');
+        assertThat(path.subSequence(1, 9)).hasToString("datalake");
+
+        path.pop();
+        assertThat(path.toString()).isSameAs(cached);
+        path.pop();
+        assertThat(path).hasToString("/");
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(path::pop);
+
+        path.reset("/test3");
+        path.push(directory("foo"));
+        assertThat(path).hasToString("/test3/foo");
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> path.charAt(10));
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> path.subSequence(5, 11));
+    }
+
+    @Test
+    public void testNonAsciiAndLongPaths() {
+        final PathBuffer path = new PathBuffer();
+        path.push(directory("dätä"));
+        path.push(bufferedDirectory("资产"));
+        assertThat(path).hasToString("/dätä/资产");
+
+        final StringBuilder expected = new StringBuilder("/dätä/资产");
+        for (int i = 0; i < 100; i++) {
+            path.push(directory("level" + i));
+            expected.append("/level").append(i);
+        }
+        assertThat(path).hasToString(expected.toString());
+        for (int i = 0; i < 100; i++) {
+            path.pop();
+        }
+        assertThat(path).hasToString("/dätä/资产");
+    }
+
+    @Test
+    public void testChildPath() {
+        assertThat(PathBuffer.childPath("/", directory("test3"))).isEqualTo("/test3");
+        assertThat(PathBuffer.childPath("/test3", directory("foo"))).isEqualTo("/test3/foo");
+        assertThat(PathBuffer.childPath(new PathBuffer().reset("/test3"), directory("foo"))).isEqualTo("/test3/foo");
+    }
+}
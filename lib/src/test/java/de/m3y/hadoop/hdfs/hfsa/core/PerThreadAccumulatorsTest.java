@@ -0,0 +1,66 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PerThreadAccumulatorsTest {
+
+    @Test
+    public void testCombine() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final PerThreadAccumulators<long[]> accumulators = new PerThreadAccumulators<>(() -> {
+            created.incrementAndGet();
+            return new long[1];
+        });
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            pool.submit(() -> IntStream.range(0, 100_000).parallel().forEach(i -> accumulators.get()[0] += i)).get();
+        } finally {
+            pool.shutdown();
+        }
+        assertThat(created.get()).isBetween(1, 5);
+
+        final List<long[]> combined = new ArrayList<>();
+        final long[] total = accumulators.combine((acc, other) -> {
+            combined.add(other);
+            acc[0] += other[0];
+        });
+        assertThat(total[0]).isEqualTo(100_000L * (100_000L - 1) / 2);
+        assertThat(combined).hasSize(created.get() - 1).doesNotContain(total);
+    }
+
+    @Test
+    public void testCombineReleasesPoolThreadAccumulators() throws Exception {
+        final PerThreadAccumulators<long[]> accumulators = new PerThreadAccumulators<>(() -> new long[1]);
+        final ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            final long[] accumulated = pool.submit(() -> {
+                final long[] accumulator = accumulators.get();
+                accumulator[0]++;
+                return accumulator;
+            }).get();
+            assertThat(accumulators.combine((acc, other) -> acc[0] += other[0])).isSameAs(accumulated);
+
+            // The still running worker thread does not keep the combined accumulator
+            final long[] next = pool.submit(accumulators::get).get();
+            assertThat(next).isNotSameAs(accumulated).containsExactly(0L);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCombineEmpty() {
+        final PerThreadAccumulators<long[]> accumulators = new PerThreadAccumulators<>(() -> new long[1]);
+        assertThat(accumulators.combine((acc, other) -> {
+            throw new IllegalStateException("Not expected to be invoked");
+        })).containsExactly(0L);
+    }
+}
@@ -0,0 +1,95 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class PipelinedInputStreamTest {
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        final byte[] data = randomBytes(10_000);
+        // Buffer size not dividing the length, and exactly dividing it
+        for (int bufferSize : new int[]{64, 1000, 10_000, 20_000}) {
+            try (InputStream in = new PipelinedInputStream(new ByteArrayInputStream(data), bufferSize, 3, "test")) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                for (int i = 0; i < 100; i++) {
+                    out.write(in.read());
+                }
+                final byte[] buf = new byte[333];
+                int n;
+                while ((n = in.read(buf, 0, buf.length)) >= 0) {
+                    out.write(buf, 0, n);
+                }
+                assertThat(out.toByteArray()).isEqualTo(data);
+                assertThat(in.read()).isEqualTo(-1);
+                assertThat(in.read(buf, 0, buf.length)).isEqualTo(-1);
+                assertThat(in.read(buf, 0, 0)).isZero();
+            }
+        }
+
+        try (InputStream in = new PipelinedInputStream(new ByteArrayInputStream(new byte[0]), 64, 2, "test")) {
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void testReadFailure() throws IOException {
+        final InputStream failing = new InputStream() {
+            private int count;
+
+            @Override
+            public int read() throws IOException {
+                if (count++ < 100) {
+                    return 1;
+                }
+                throw new IOException("Expected failure");
+            }
+        };
+        try (InputStream in = new PipelinedInputStream(failing, 64, 2, "test")) {
+            assertThat(in.readNBytes(64)).hasSize(64);
+            assertThatExceptionOfType(IOException.class).isThrownBy(in::readAllBytes)
+                    .withRootCauseExactlyInstanceOf(IOException.class)
+                    .havingRootCause().withMessage("Expected failure");
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEndOfStream() throws IOException, InterruptedException {
+        final CountDownLatch sourceClosed = new CountDownLatch(1);
+        final InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 1;
+            }
+
+            @Override
+            public void close() {
+                sourceClosed.countDown();
+            }
+        };
+        final InputStream in = new PipelinedInputStream(endless, 64, 2, "test");
+        assertThat(in.readNBytes(1000)).hasSize(1000);
+        in.close();
+        assertThat(sourceClosed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThatExceptionOfType(IOException.class).isThrownBy(in::read);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new PipelinedInputStream(endless, 64, 1, "test"));
+    }
+}
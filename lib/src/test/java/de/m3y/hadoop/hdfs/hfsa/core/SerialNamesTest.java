@@ -0,0 +1,62 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.server.namenode.FSImageFormatPBINode;
+import org.apache.hadoop.hdfs.server.namenode.SerialNumberManager;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SerialNamesTest {
+
+    @Test
+    public void testPermissionStatus() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small_h3_2.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+            final SerialNumberManager.StringTable stringTable = fsImageData.getStringTable();
+            final String[] userNames = fsImageData.getUserNames();
+            final String[] groupNames = fsImageData.getGroupNames();
+            fsImageData.scan(inode -> {
+                final PermissionStatus expected = FSImageFormatPBINode.Loader.loadPermission(
+                        inode.getPermission(), stringTable);
+                final PermissionStatus actual = fsImageData.getPermissionStatus(inode.getPermission());
+                assertThat(actual.getUserName()).isEqualTo(expected.getUserName())
+                        .isEqualTo(userNames[inode.getUserId()])
+                        .isEqualTo(fsImageData.getUserName(FsImageData.getUserId(inode.getPermission())));
+                assertThat(actual.getGroupName()).isEqualTo(expected.getGroupName())
+                        .isEqualTo(groupNames[inode.getGroupId()])
+                        .isEqualTo(fsImageData.getGroupName(FsImageData.getGroupId(inode.getPermission())));
+                assertThat(actual.getPermission()).isEqualTo(expected.getPermission());
+            });
+            assertThat(userNames).contains("mm");
+            assertThat(groupNames).contains("supergroup");
+        }
+    }
+
+    @Test
+    public void testMaskedStringTable() {
+        final int maskBits = 2;
+        final SerialNumberManager.StringTable stringTable = SerialNumberManager.newStringTable(3, maskBits);
+        stringTable.put(1 | 1 << (Integer.SIZE - maskBits), "alice");
+        stringTable.put(1 | 2 << (Integer.SIZE - maskBits), "staff");
+        stringTable.put(2 | 3 << (Integer.SIZE - maskBits), "user.xattr");
+        final SerialNames serialNames = SerialNames.of(stringTable);
+        assertThat(serialNames.getUserNames()).containsExactly(null, "alice");
+        assertThat(serialNames.getGroupNames()).containsExactly(null, "staff");
+
+        final long permission = 1L << SerialNames.USER_OFFSET | 1L << SerialNames.GROUP_OFFSET | 01755;
+        final PermissionStatus expected = FSImageFormatPBINode.Loader.loadPermission(permission, stringTable);
+        final PermissionStatus actual = serialNames.toPermissionStatus(permission);
+        assertThat(actual.getUserName()).isEqualTo(expected.getUserName()).isEqualTo("alice");
+        assertThat(actual.getGroupName()).isEqualTo(expected.getGroupName()).isEqualTo("staff");
+        assertThat(actual.getPermission()).isEqualTo(expected.getPermission());
+        assertThat(actual.getPermission().getStickyBit()).isTrue();
+        assertThat(serialNames.toPermissionStatus(permission).getPermission()).isSameAs(actual.getPermission());
+
+        assertThat(serialNames.getUserName(2)).isNull();
+        assertThat(serialNames.getGroupName(-1)).isNull();
+    }
+}
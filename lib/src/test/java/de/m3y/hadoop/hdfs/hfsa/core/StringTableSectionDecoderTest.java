@@ -0,0 +1,95 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.StringTableSection;
+import org.apache.hadoop.hdfs.server.namenode.SerialNumberManager;
+import org.apache.hadoop.thirdparty.protobuf.CodedOutputStream;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class StringTableSectionDecoderTest {
+
+    static byte[] writeSection(int maskBits, Map<Integer, String> entries) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringTableSection.newBuilder().setNumEntry(entries.size()).setMaskBits(maskBits).build()
+                .writeDelimitedTo(out);
+        for (Map.Entry<Integer, String> entry : entries.entrySet()) {
+            StringTableSection.Entry.newBuilder().setId(entry.getKey()).setStr(entry.getValue()).build()
+                    .writeDelimitedTo(out);
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<Integer, String> toMap(SerialNumberManager.StringTable stringTable) {
+        final Map<Integer, String> map = new HashMap<>();
+        for (Map.Entry<Integer, String> entry : stringTable) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    @Test
+    public void testDecode() throws IOException {
+        final Map<Integer, String> entries = new HashMap<>();
+        entries.put(1 | 1 << 30, "mm");
+        entries.put(2 | 1 << 30, "dätä");
+        entries.put(1 | 2 << 30, "supergroup");
+        entries.put(3 | 3 << 30, "资产");
+        entries.put(-1, "");
+        final byte[] section = writeSection(2, entries);
+
+        final SerialNumberManager.StringTable stringTable =
+                StringTableSectionDecoder.read(new ByteArrayInputStream(section));
+        assertThat(stringTable.getMaskBits()).isEqualTo(2);
+        assertThat(stringTable.size()).isEqualTo(entries.size());
+        assertThat(toMap(stringTable)).isEqualTo(entries);
+
+        final SerialNumberManager.StringTable empty =
+                StringTableSectionDecoder.read(new ByteArrayInputStream(writeSection(0, Map.of())));
+        assertThat(empty.size()).isZero();
+        assertThat(empty.getMaskBits()).isZero();
+    }
+
+    @Test
+    public void testDecodeUnknownFields() throws IOException {
+        final ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        final CodedOutputStream cos = CodedOutputStream.newInstance(entry);
+        cos.writeString(2, "mm");
+        cos.writeFixed64(15, 42L);
+        cos.writeUInt32(1, 7);
+        cos.writeFixed32(16, 42);
+        cos.writeString(17, "unknown");
+        cos.flush();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringTableSection.newBuilder().setNumEntry(1).build().writeDelimitedTo(out);
+        final CodedOutputStream delimited = CodedOutputStream.newInstance(out);
+        delimited.writeUInt32NoTag(entry.size());
+        delimited.writeRawBytes(entry.toByteArray());
+        delimited.flush();
+
+        final SerialNumberManager.StringTable stringTable =
+                StringTableSectionDecoder.decode(out.toByteArray(), out.size());
+        assertThat(toMap(stringTable)).containsExactly(Map.entry(7, "mm"));
+    }
+
+    @Test
+    public void testDecodeMalformed() throws IOException {
+        final byte[] section = writeSection(0, Map.of(1, "mm", 2, "supergroup"));
+        assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> StringTableSectionDecoder.decode(section, section.length - 1));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringTableSection.newBuilder().setNumEntry(2).build().writeDelimitedTo(out);
+        StringTableSection.Entry.newBuilder().setId(1).setStr("mm").build().writeDelimitedTo(out);
+        assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> StringTableSectionDecoder.decode(out.toByteArray(), out.size()))
+                .withMessageContaining("Expected 2 string table entries, but got 1");
+    }
+}
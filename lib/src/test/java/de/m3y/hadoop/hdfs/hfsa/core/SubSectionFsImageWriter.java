@@ -0,0 +1,132 @@
+package de.m3y.hadoop.hdfs.hfsa.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.server.namenode.FSImageFormatProtobuf.SectionName;
+import org.apache.hadoop.hdfs.server.namenode.FSImageUtil;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.FileSummary;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.thirdparty.protobuf.CodedInputStream;
+
+/**
+ * Rewrites an fsimage with INODE and INODE_DIR sections split into INODE_SUB and INODE_DIR_SUB sub-sections,
+ * like a NameNode does with dfs.image.parallel.save enabled.
+ * <p>
+ * Every (sub-)section gets compressed separately, using the codec of the source fsimage.
+ */
+class SubSectionFsImageWriter {
+    private final int numSubSections;
+
+    SubSectionFsImageWriter(int numSubSections) {
+        this.numSubSections = numSubSections;
+    }
+
+    void write(File source, File target) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(source, "r");
+             FileOutputStream fout = new FileOutputStream(target)) {
+            final FileSummary summary = FSImageUtil.loadSummary(in);
+            final Configuration conf = new Configuration();
+            final CompressionCodec codec = summary.getCodec().isEmpty() ? null :
+                    new CompressionCodecFactory(conf).getCodecByClassName(summary.getCodec());
+
+            final DataOutputStream out = new DataOutputStream(fout);
+            out.write(FSImageUtil.MAGIC_HEADER);
+            long offset = FSImageUtil.MAGIC_HEADER.length;
+            final List<FileSummary.Section> sections = new ArrayList<>();
+            for (FileSummary.Section section : summary.getSectionsList()) {
+                final byte[] raw = new byte[(int) section.getLength()];
+                in.seek(section.getOffset());
+                in.readFully(raw);
+                final byte[] data;
+                try (InputStream is = FSImageUtil.wrapInputStreamForCompression(conf, summary.getCodec(),
+                        new ByteArrayInputStream(raw))) {
+                    data = is.readAllBytes();
+                }
+
+                final List<Integer> splits;
+                final SectionName subSectionName;
+                if (SectionName.INODE.name().equals(section.getName())) {
+                    splits = split(data, 1 /* header */);
+                    subSectionName = SectionName.INODE_SUB;
+                } else if (SectionName.INODE_DIR.name().equals(section.getName())) {
+                    splits = split(data, 0);
+                    subSectionName = SectionName.INODE_DIR_SUB;
+                } else {
+                    splits = List.of(0, data.length);
+                    subSectionName = null;
+                }
+
+                final long sectionOffset = offset;
+                for (int i = 0; i < splits.size() - 1; i++) {
+                    final byte[] compressed = compress(codec, data, splits.get(i), splits.get(i + 1));
+                    out.write(compressed);
+                    if (null != subSectionName) {
+                        sections.add(FileSummary.Section.newBuilder().setName(subSectionName.name())
+                                .setOffset(offset).setLength(compressed.length).build());
+                    }
+                    offset += compressed.length;
+                }
+                sections.add(FileSummary.Section.newBuilder(section)
+                        .setOffset(sectionOffset).setLength(offset - sectionOffset).build());
+            }
+
+            final FileSummary newSummary = FileSummary.newBuilder(summary)
+                    .clearSections().addAllSections(sections).build();
+            final ByteArrayOutputStream summaryBytes = new ByteArrayOutputStream();
+            newSummary.writeDelimitedTo(summaryBytes);
+            out.write(summaryBytes.toByteArray());
+            out.writeInt(summaryBytes.size());
+            out.flush();
+        }
+    }
+
+    /**
+     * Splits length delimited records into sub-sections.
+     *
+     * @param data        the section data.
+     * @param skipRecords the number of leading records belonging to first sub-section, such as a header.
+     * @return the split positions, including start and end.
+     */
+    private List<Integer> split(byte[] data, int skipRecords) throws IOException {
+        final List<Integer> recordStarts = new ArrayList<>();
+        final CodedInputStream cis = CodedInputStream.newInstance(data);
+        while (!cis.isAtEnd()) {
+            recordStarts.add(cis.getTotalBytesRead());
+            cis.skipRawBytes(cis.readRawVarint32());
+        }
+        final List<Integer> splits = new ArrayList<>();
+        splits.add(0);
+        final int numRecords = recordStarts.size() - skipRecords;
+        final int recordsPerSubSection = Math.max(1, (numRecords + numSubSections - 1) / numSubSections);
+        for (int i = skipRecords + recordsPerSubSection; i < recordStarts.size(); i += recordsPerSubSection) {
+            splits.add(recordStarts.get(i));
+        }
+        splits.add(data.length);
+        return splits;
+    }
+
+    private static byte[] compress(CompressionCodec codec, byte[] data, int from, int to) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        if (null == codec) {
+            bos.write(data, from, to - from);
+        } else {
+            try (CompressionOutputStream os = codec.createOutputStream(bos)) {
+                os.write(data, from, to - from);
+                os.finish();
+            }
+        }
+        return bos.toByteArray();
+    }
+}
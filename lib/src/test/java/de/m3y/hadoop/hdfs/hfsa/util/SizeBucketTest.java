@@ -53,6 +53,27 @@ public class SizeBucketTest {
                 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 1});
     }
 
+    @Test
+    public void testMerge() {
+        SizeBucket sizeBucket = new SizeBucket();
+        sizeBucket.add(1L);
+        SizeBucket other = new SizeBucket();
+        other.add(1L);
+        other.add(1024L * 1024L * 1024L * 1024L);
+        final int size = other.size();
+        assertThat(size).isGreaterThan(sizeBucket.size());
+
+        sizeBucket.add(other);
+        assertThat(sizeBucket.size()).isEqualTo(size);
+        assertThat(sizeBucket.getBucketCounter(1)).isEqualTo(2);
+        assertThat(sizeBucket.getBucketCounter(size - 1)).isEqualTo(1);
+        assertThat(other.getBucketCounter(1)).isEqualTo(1);
+
+        other.add(sizeBucket);
+        assertThat(other.getBucketCounter(1)).isEqualTo(3);
+        assertThat(other.getBucketCounter(size - 1)).isEqualTo(2);
+    }
+
     @Test
     public void testMaxBucketCount() {
         SizeBucket sizeBucket = new SizeBucket();
@@ -8,9 +8,13 @@ import java.util.concurrent.atomic.LongAdder;
 import com.google.gson.*;
 import de.m3y.hadoop.hdfs.hfsa.core.FsImageLoader;
 import de.m3y.hadoop.hdfs.hfsa.core.FsImageData;
+import de.m3y.hadoop.hdfs.hfsa.core.FsVisitor;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeViewBatchVisitor;
+import de.m3y.hadoop.hdfs.hfsa.core.StreamedFsImage;
 import de.m3y.hadoop.hdfs.hfsa.util.IECBinary;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
+import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -38,6 +42,40 @@ abstract class AbstractReportCommand implements Runnable {
                 .setPrettyPrinting();
     }
 
+    /**
+     * Resolves the permission status for reporting.
+     *
+     * @param fsImageData the fsimage.
+     * @param permission  the numeric permission.
+     * @return the permission status, using the user or group id as name if missing in the string table.
+     */
+    static PermissionStatus resolvePermissionStatus(FsImageData fsImageData, long permission) {
+        final PermissionStatus permissionStatus = fsImageData.getPermissionStatus(permission);
+        if (null != permissionStatus.getUserName() && null != permissionStatus.getGroupName()) {
+            return permissionStatus;
+        }
+        return new PermissionStatus(nameOrId(permissionStatus.getUserName(), FsImageData.getUserId(permission)),
+                nameOrId(permissionStatus.getGroupName(), FsImageData.getGroupId(permission)),
+                permissionStatus.getPermission());
+    }
+
+    /**
+     * @param name the user or group name, or null if missing in the string table.
+     * @param id   the user or group id.
+     * @return the name, or the id if no name.
+     */
+    static String nameOrId(String name, int id) {
+        return null != name ? name : String.valueOf(id);
+    }
+
+    /**
+     * @return a builder for visiting in parallel, limited to the configured number of threads.
+     */
+    protected FsVisitor.Builder createVisitorBuilder() {
+        final FsVisitor.Builder builder = new FsVisitor.Builder().forkJoin();
+        return null != mainCommand.threads ? builder.parallelism(mainCommand.threads) : builder;
+    }
+
     protected FsImageData loadFsImage() {
         try (RandomAccessFile file = new RandomAccessFile(mainCommand.fsImageFile, "r")) {
             if(log.isInfoEnabled()) {
@@ -55,7 +93,46 @@ abstract class AbstractReportCommand implements Runnable {
                 mainCommand.out.println();
             }
 
-            return new FsImageLoader.Builder().parallel().build().load(file);
+            final FsImageLoader.Builder builder = createLoaderBuilder().parallelSections().childIndexes();
+            if (mainCommand.memoryMapped) {
+                builder.memoryMapped();
+            }
+            if (mainCommand.inodeColumns) {
+                builder.inodeColumns();
+            }
+            return builder.build().load(file);
+        } catch (FileNotFoundException e) {
+            mainCommand.err.println("No such fsimage file " + mainCommand.fsImageFile);
+            throw new IllegalStateException("No such fsimage file " + mainCommand.fsImageFile, e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return a builder for loading in parallel, limited to the configured number of threads.
+     */
+    private FsImageLoader.Builder createLoaderBuilder() {
+        final FsImageLoader.Builder builder = new FsImageLoader.Builder().parallel().pipelinedDecompression();
+        if (null != mainCommand.threads) {
+            builder.parallelism(mainCommand.threads);
+        }
+        return builder;
+    }
+
+    /**
+     * Streams all inodes of the fsimage once, without loading the fsimage.
+     *
+     * @param visitor the visitor.
+     * @param <A>     the accumulator type.
+     * @return the streamed result.
+     */
+    protected <A> StreamedFsImage<A> streamFsImage(INodeViewBatchVisitor<A> visitor) {
+        try (RandomAccessFile file = new RandomAccessFile(mainCommand.fsImageFile, "r")) {
+            if (log.isInfoEnabled()) {
+                log.info("Starting streaming {} of size {}", mainCommand.fsImageFile, IECBinary.format(file.length()));
+            }
+            return createLoaderBuilder().build().stream(file, visitor);
         } catch (FileNotFoundException e) {
             mainCommand.err.println("No such fsimage file " + mainCommand.fsImageFile);
             throw new IllegalStateException("No such fsimage file " + mainCommand.fsImageFile, e);
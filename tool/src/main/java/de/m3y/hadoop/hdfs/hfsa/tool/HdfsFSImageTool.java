@@ -59,6 +59,43 @@ public class HdfsFSImageTool {
         @Option(names = {"-fun", "--filter-by-user"},
                 description = "Filter user name by <regexp>.")
         String userNameFilter;
+
+        @Option(names = {"-m", "--memory-mapped"},
+                description = "Memory-maps the INode section of uncompressed fsimages instead of loading it onto the heap.",
+                scope = ScopeType.INHERIT)
+        boolean memoryMapped;
+
+        @Option(names = {"-c", "--inode-columns"},
+                description = "Pre-computes per-inode values such as size and permission at load time, " +
+                        "speeding up reports at the expense of additional memory.",
+                scope = ScopeType.INHERIT)
+        boolean inodeColumns;
+
+        @Option(names = {"-t", "--threads"}, paramLabel = "<n>",
+                description = "Limits loading and visiting to given number of threads. " +
+                        "Default is number of available processors.",
+                converter = PositiveIntegerConverter.class,
+                scope = ScopeType.INHERIT)
+        Integer threads;
+    }
+
+    /**
+     * Rejects values less than 1 while parsing, reported with usage help.
+     */
+    static class PositiveIntegerConverter implements ITypeConverter<Integer> {
+        @Override
+        public Integer convert(String value) {
+            final int number;
+            try {
+                number = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new TypeConversionException("'" + value + "' is not an int");
+            }
+            if (number < 1) {
+                throw new TypeConversionException("Expected a value > 0, but got " + number);
+            }
+            return number;
+        }
     }
 
     @Command(name = "hfsa-tool",
@@ -43,7 +43,10 @@ public class InodeInfoCommand extends AbstractReportCommand {
         String inodeIdOrPath();
     }
 
-    record Success(String inodeIdOrPath, FsImageProto.INodeSection.INode iNode) implements Result {
+    /**
+     * @param path the absolute path, or null if not reachable from root.
+     */
+    record Success(String inodeIdOrPath, FsImageProto.INodeSection.INode iNode, String path) implements Result {
     }
 
     record Failure(String inodeIdOrPath, String message) implements Result {
@@ -71,9 +74,12 @@ public class InodeInfoCommand extends AbstractReportCommand {
         try {
             try {
                 long inodeIdAsLong = Long.parseLong(inodeIdOrPath);
-                return new Success(inodeIdOrPath, fsImageData.getInode(inodeIdAsLong));
+                // Only resolve the path for ids, as building the parent index costs an int per inode
+                return new Success(inodeIdOrPath, fsImageData.getInode(inodeIdAsLong),
+                        fsImageData.getPath(inodeIdAsLong));
             } catch (NumberFormatException ex) {
-                return new Success(inodeIdOrPath, fsImageData.getINodeFromPath(inodeIdOrPath));
+                return new Success(inodeIdOrPath, fsImageData.getINodeFromPath(inodeIdOrPath),
+                        FsImageData.normalizePath(inodeIdOrPath));
             }
         } catch (FileNotFoundException e) {
             return new Failure(inodeIdOrPath,
@@ -95,6 +101,10 @@ public class InodeInfoCommand extends AbstractReportCommand {
     private static InodeInfoCommand.FormattingPrinter createTxtPrinter(PrintStream out) {
         return result -> {
             if (result instanceof Success) {
+                final String path = ((Success) result).path;
+                if (null != path) {
+                    out.println("path: " + path);
+                }
                 out.println(((Success) result).iNode.toString());
             } else if (result instanceof Failure) {
                 out.println(((Failure) result).message);
@@ -116,14 +126,15 @@ public class InodeInfoCommand extends AbstractReportCommand {
             public void print(Result result) {
                 try {
                     if (first) {
-                        csvPrinter.printRecord("ID", "Name", "Type");
+                        csvPrinter.printRecord("ID", "Name", "Type", "Path");
                         first = false;
                     }
                     if (result instanceof Success) {
                         FsImageProto.INodeSection.INode iNode = ((Success) result).iNode;
-                        csvPrinter.printRecord(iNode.getId(), iNode.getName().toStringUtf8(), iNode.getType());
+                        csvPrinter.printRecord(iNode.getId(), iNode.getName().toStringUtf8(), iNode.getType(),
+                                ((Success) result).path);
                     } else if (result instanceof Failure) {
-                        csvPrinter.printRecord(result.inodeIdOrPath(), "- ERR -", "- ERR -");
+                        csvPrinter.printRecord(result.inodeIdOrPath(), "- ERR -", "- ERR -", "- ERR -");
                         mainCommand.err.println(((Failure) result).message());
                     }
                 } catch (IOException ex) {
@@ -149,6 +160,7 @@ public class InodeInfoCommand extends AbstractReportCommand {
                             FsImageProto.INodeSection.INode iNode = ((Success) result).iNode;
                             jsonWriter.beginObject()
                                     .name("inode_arg").value(result.inodeIdOrPath())
+                                    .name("path").value(((Success) result).path)
                                     .name("inode");
                             gson.toJson(iNode, iNode.getClass(), jsonWriter);
                             jsonWriter.endObject();
@@ -12,6 +12,8 @@ import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
 import java.io.IOException;
 import java.util.concurrent.atomic.LongAdder;
 
+import static de.m3y.hadoop.hdfs.hfsa.tool.AbstractReportCommand.resolvePermissionStatus;
+
 /**
  * Helpers for generating JSON output.
  */
@@ -33,7 +35,7 @@ class JsonUtil {
                 switch (value.getType()) {
                     case FILE -> {
                         FsImageProto.INodeSection.INodeFile file = value.getFile();
-                        final PermissionStatus permissionStatus = fsImageData.getPermissionStatus(file.getPermission());
+                        final PermissionStatus permissionStatus = resolvePermissionStatus(fsImageData, file.getPermission());
                         writer
                                 .name("type").value("file")
                                 .name("permission").value(FsUtil.toString(permissionStatus))
@@ -47,7 +49,7 @@ class JsonUtil {
                     }
                     case DIRECTORY -> {
                         FsImageProto.INodeSection.INodeDirectory directory = value.getDirectory();
-                        final PermissionStatus permissionStatus = fsImageData.getPermissionStatus(directory.getPermission());
+                        final PermissionStatus permissionStatus = resolvePermissionStatus(fsImageData, directory.getPermission());
                         writer
                                 .name("type").value("directory")
                                 .name("permission").value(FsUtil.toString(permissionStatus))
@@ -58,7 +60,7 @@ class JsonUtil {
                     }
                     case SYMLINK -> {
                         FsImageProto.INodeSection.INodeSymlink symlink = value.getSymlink();
-                        final PermissionStatus permissionStatus = fsImageData.getPermissionStatus(symlink.getPermission());
+                        final PermissionStatus permissionStatus = resolvePermissionStatus(fsImageData, symlink.getPermission());
                         writer
                                 .name("type").value("symlink")
                                 .name("permission").value(FsUtil.toString(permissionStatus))
@@ -15,9 +15,11 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import de.m3y.hadoop.hdfs.hfsa.core.FsImageData;
 import de.m3y.hadoop.hdfs.hfsa.core.FsVisitor;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeView;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeViewVisitor;
+import de.m3y.hadoop.hdfs.hfsa.core.PathBuffer;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.hadoop.fs.permission.PermissionStatus;
-import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection.INode;
 import org.jspecify.annotations.NonNull;
 import picocli.CommandLine;
 
@@ -50,7 +52,7 @@ public class PathReportCommand extends AbstractReportCommand {
             if (value == null) {
                 out.nullValue();
             } else {
-                final PermissionStatus permissionStatus = fsImageData.getPermissionStatus(value.permission);
+                final PermissionStatus permissionStatus = resolvePermissionStatus(fsImageData, value.permission);
                 out.beginObject()
                         .name("path").value(value.path)
                         .name("user").value(permissionStatus.getUserName())
@@ -78,7 +80,7 @@ public class PathReportCommand extends AbstractReportCommand {
                   long symLinkCount) {
     }
 
-    static class PathVisitor implements FsVisitor {
+    static class PathVisitor implements INodeViewVisitor {
         final INodePredicate predicate;
 
         final PrintStream out;
@@ -95,35 +97,34 @@ public class PathReportCommand extends AbstractReportCommand {
         }
 
         @Override
-        public void onFile(INode inode, String path) {
+        public void onFile(INodeView inode, CharSequence path) {
             onInode(inode, path);
         }
 
         @Override
-        public void onDirectory(INode inode, String path) {
+        public void onDirectory(INodeView inode, CharSequence path) {
             onInode(inode, path);
         }
 
         @Override
-        public void onSymLink(INode inode, String path) {
+        public void onSymLink(INodeView inode, CharSequence path) {
             onInode(inode, path);
         }
 
-        private void onInode(INode iNode, String path) {
+        private void onInode(INodeView iNode, CharSequence path) {
             if (predicate.test(iNode)) {
-                final String iNodeName = iNode.getName().toStringUtf8();
-                final String absolutPath = path.length() > 1 ? path + '/' + iNodeName : path + iNodeName;
+                final String absolutPath = PathBuffer.childPath(path, iNode);
                 char iNodeType = '-';
-                if (iNode.hasFile()) {
+                if (iNode.isFile()) {
                     fileCount.increment();
-                } else if (iNode.hasDirectory()) {
+                } else if (iNode.isDirectory()) {
                     iNodeType = 'd';
                     dirCount.increment();
-                } else if (iNode.hasSymlink()) {
+                } else if (iNode.isSymlink()) {
                     iNodeType = 'l';
                     symLinkCount.increment();
                 }
-                results.add(new Result(fsImageData.getPermission(iNode), absolutPath, iNodeType));
+                results.add(new Result(iNode.getPermission(), absolutPath, iNodeType));
             }
         }
     }
@@ -140,13 +141,13 @@ public class PathReportCommand extends AbstractReportCommand {
 
     @FunctionalInterface
     public interface INodePredicate {
-        boolean test(INode iNode);
+        boolean test(INodeView iNode);
     }
 
     private void createReport(FsImageData fsImageData) throws IOException {
         INodePredicate predicate = getPredicate(fsImageData);
         final PathVisitor visitor = new PathVisitor(fsImageData, mainCommand.out, predicate);
-        final FsVisitor.Builder builder = new FsVisitor.Builder().parallel();
+        final FsVisitor.Builder builder = createVisitorBuilder();
         for (String dir : mainCommand.dirs) {
             builder.visit(fsImageData,
                     visitor,
@@ -186,14 +187,14 @@ public class PathReportCommand extends AbstractReportCommand {
         int maxUserNameLength = 0;
         int maxGroupNameLength = 0;
         for (Result result : visitor.results) {
-            final PermissionStatus permissionStatus = fsImageData.getPermissionStatus(result.permission);
+            final PermissionStatus permissionStatus = resolvePermissionStatus(fsImageData, result.permission);
             maxUserNameLength = Math.max(maxUserNameLength, permissionStatus.getUserName().length());
             maxGroupNameLength = Math.max(maxGroupNameLength, permissionStatus.getGroupName().length());
         }
 
         for (Result result : visitor.results) {
             StringBuilder buf = new StringBuilder();
-            final PermissionStatus permissionStatus = fsImageData.getPermissionStatus(result.permission);
+            final PermissionStatus permissionStatus = resolvePermissionStatus(fsImageData, result.permission);
             buf.append(result.iNodeType);
             buf.append(permissionStatus.getPermission().toString());
             buf.append(' ');
@@ -232,15 +233,15 @@ public class PathReportCommand extends AbstractReportCommand {
                 }
 
                 @Override
-                public boolean test(INode iNode) {
-                    final PermissionStatus permissionStatus = fsImageData.getPermissionStatus(iNode);
+                public boolean test(INodeView iNode) {
+                    final PermissionStatus permissionStatus = resolvePermissionStatus(fsImageData, iNode.getPermission());
                     return userPattern.matcher(permissionStatus.getUserName()).matches();
                 }
             };
         } else {
             predicate = new INodePredicate() {
                 @Override
-                public boolean test(INode iNode) {
+                public boolean test(INodeView iNode) {
                     return true;
                 }
 
@@ -258,7 +259,7 @@ public class PathReportCommand extends AbstractReportCommand {
             printer.printRecord("Path", "Type","Permission");
             for (Result result : visitor.results) {
                 printer.printRecord(result.path, result.iNodeType,
-                        fsImageData.getPermissionStatus(result.permission));
+                        resolvePermissionStatus(fsImageData, result.permission));
             }
         }
     }
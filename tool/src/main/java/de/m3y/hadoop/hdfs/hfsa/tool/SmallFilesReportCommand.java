@@ -12,12 +12,11 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import de.m3y.hadoop.hdfs.hfsa.core.FsImageData;
-import de.m3y.hadoop.hdfs.hfsa.core.FsVisitor;
-import de.m3y.hadoop.hdfs.hfsa.util.FsUtil;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeView;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeViewCollector;
 import de.m3y.hadoop.hdfs.hfsa.util.IECBinary;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.hadoop.fs.permission.PermissionStatus;
-import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
 import picocli.CommandLine;
 
 /**
@@ -47,6 +46,10 @@ public class SmallFilesReportCommand extends AbstractReportCommand {
             pathToCounter.computeIfAbsent(path, v -> new LongAdder()).increment();
         }
 
+        void merge(UserReport other) {
+            mergeCounters(pathToCounter, other.pathToCounter);
+        }
+
         void computeStats() {
             sumSmallFiles = pathToCounter.values().stream().mapToLong(LongAdder::longValue).sum();
         }
@@ -67,6 +70,13 @@ public class SmallFilesReportCommand extends AbstractReportCommand {
             pathToCounter.computeIfAbsent(path, v -> new LongAdder()).increment();
         }
 
+        void merge(Report other) {
+            for (UserReport userReport : other.userToReport.values()) {
+                getOrCreateUserReport(userReport.userName).merge(userReport);
+            }
+            mergeCounters(pathToCounter, other.pathToCounter);
+        }
+
         void computeStats() {
             for (UserReport userReport : userToReport.values()) {
                 userReport.computeStats();
@@ -87,6 +97,15 @@ public class SmallFilesReportCommand extends AbstractReportCommand {
         }
     }
 
+    private static void mergeCounters(Map<String, LongAdder> pathToCounter, Map<String, LongAdder> other) {
+        for (Map.Entry<String, LongAdder> entry : other.entrySet()) {
+            pathToCounter.merge(entry.getKey(), entry.getValue(), (counter, otherCounter) -> {
+                counter.add(otherCounter.longValue());
+                return counter;
+            });
+        }
+    }
+
     static class IECBinaryConverter implements CommandLine.ITypeConverter<Long> {
         @Override
         public Long convert(String value) {
@@ -276,35 +295,36 @@ public class SmallFilesReportCommand extends AbstractReportCommand {
 
 
     private Report computeReport(FsImageData fsImageData, String dir) {
-        Report report = new Report();
         Predicate<String> userNameFilter = createUserNameFilter(mainCommand.userNameFilter);
 
+        final Report report;
         try {
-            FsVisitor visitor = new FsVisitor() {
+            // Every worker collects its own report, combined after visiting
+            INodeViewCollector<Report> collector = new INodeViewCollector<>() {
+                @Override
+                public Report newAccumulator() {
+                    return new Report();
+                }
+
                 @Override
-                public void onFile(FsImageProto.INodeSection.INode inode, String path) {
-                    FsImageProto.INodeSection.INodeFile f = inode.getFile();
-                    final long fileSizeBytes = FsUtil.getFileSize(f);
+                public void onFile(Report report, INodeView inode, CharSequence path) {
+                    final long fileSizeBytes = inode.getFileSize();
                     if (fileSizeBytes < fileSizeLimitBytes) {
-                        PermissionStatus p = fsImageData.getPermissionStatus(f.getPermission());
+                        PermissionStatus p = resolvePermissionStatus(fsImageData, inode.getPermission());
+                        final String filePath = path.toString();
                         if (userNameFilter.test(p.getUserName())) {
-                            report.getOrCreateUserReport(p.getUserName()).increment(path);
+                            report.getOrCreateUserReport(p.getUserName()).increment(filePath);
                         }
-                        report.increment(path);
+                        report.increment(filePath);
                     }
                 }
 
                 @Override
-                public void onDirectory(FsImageProto.INodeSection.INode inode, String path) {
-                    // Not needed
-                }
-
-                @Override
-                public void onSymLink(FsImageProto.INodeSection.INode inode, String path) {
-                    // Not needed
+                public void combine(Report report, Report other) {
+                    report.merge(other);
                 }
             };
-            new FsVisitor.Builder().parallel().visit(fsImageData, visitor, dir);
+            report = createVisitorBuilder().collect(fsImageData, collector, dir);
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
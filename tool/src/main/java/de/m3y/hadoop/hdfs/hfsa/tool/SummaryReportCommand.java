@@ -5,16 +5,17 @@ import java.io.PrintStream;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
 import java.util.regex.Pattern;
 
 import com.google.gson.GsonBuilder;
 import de.m3y.hadoop.hdfs.hfsa.core.FsImageData;
-import de.m3y.hadoop.hdfs.hfsa.core.FsVisitor;
-import de.m3y.hadoop.hdfs.hfsa.util.FsUtil;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeView;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeViewBatch;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeViewBatchVisitor;
+import de.m3y.hadoop.hdfs.hfsa.core.StreamedFsImage;
 import de.m3y.hadoop.hdfs.hfsa.util.SizeBucket;
 import org.apache.commons.csv.CSVPrinter;
-import org.apache.hadoop.fs.permission.PermissionStatus;
-import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
 import picocli.CommandLine;
 
 /**
@@ -45,6 +46,16 @@ class SummaryReportCommand extends AbstractReportCommand {
         AbstractStats() {
             fileSizeBuckets = new SizeBucket();
         }
+
+        void add(AbstractStats other) {
+            sumFiles += other.sumFiles;
+            sumDirectories.add(other.sumDirectories.longValue());
+            sumSymLinks.add(other.sumSymLinks.longValue());
+            sumBlocks += other.sumBlocks;
+            sumFileSize += other.sumFileSize;
+            sumConsumedFileSize += other.sumConsumedFileSize;
+            fileSizeBuckets.add(other.fileSizeBuckets);
+        }
     }
 
     static class UserStats extends AbstractStats {
@@ -86,6 +97,152 @@ class SummaryReportCommand extends AbstractReportCommand {
         UserStats getOrCreateUserStats(String userName) {
             return userStats.computeIfAbsent(userName, UserStats::new);
         }
+
+    }
+
+    /**
+     * Counters per user or group id, stored as one array per counter.
+     * <p>
+     * The ids are the dense serial numbers of the fsimage string table,
+     * so counting requires no name lookup or hashing per inode.
+     */
+    static class IdStats {
+        long[] sumFiles;
+        long[] sumDirectories;
+        long[] sumSymLinks;
+        long[] sumBlocks;
+        long[] sumFileSize;
+        long[] sumConsumedFileSize;
+        SizeBucket[] fileSizeBuckets;
+
+        IdStats(int size) {
+            sumFiles = new long[size];
+            sumDirectories = new long[size];
+            sumSymLinks = new long[size];
+            sumBlocks = new long[size];
+            sumFileSize = new long[size];
+            sumConsumedFileSize = new long[size];
+            fileSizeBuckets = new SizeBucket[size];
+        }
+
+        int size() {
+            return sumFiles.length;
+        }
+
+        private void ensureCapacity(int id) {
+            if (id >= size()) {
+                final int size = Math.max(id + 1, size() * 2);
+                sumFiles = Arrays.copyOf(sumFiles, size);
+                sumDirectories = Arrays.copyOf(sumDirectories, size);
+                sumSymLinks = Arrays.copyOf(sumSymLinks, size);
+                sumBlocks = Arrays.copyOf(sumBlocks, size);
+                sumFileSize = Arrays.copyOf(sumFileSize, size);
+                sumConsumedFileSize = Arrays.copyOf(sumConsumedFileSize, size);
+                fileSizeBuckets = Arrays.copyOf(fileSizeBuckets, size);
+            }
+        }
+
+        void addFile(int id, long fileSize, long consumedSize, long fileBlocks) {
+            ensureCapacity(id);
+            sumFiles[id]++;
+            sumFileSize[id] += fileSize;
+            sumConsumedFileSize[id] += consumedSize;
+            sumBlocks[id] += fileBlocks;
+            SizeBucket sizeBucket = fileSizeBuckets[id];
+            if (null == sizeBucket) {
+                sizeBucket = new SizeBucket();
+                fileSizeBuckets[id] = sizeBucket;
+            }
+            sizeBucket.add(fileSize);
+        }
+
+        void addDirectory(int id) {
+            ensureCapacity(id);
+            sumDirectories[id]++;
+        }
+
+        void addSymLink(int id) {
+            ensureCapacity(id);
+            sumSymLinks[id]++;
+        }
+
+        void add(IdStats other) {
+            ensureCapacity(other.size() - 1);
+            for (int id = 0; id < other.size(); id++) {
+                sumFiles[id] += other.sumFiles[id];
+                sumDirectories[id] += other.sumDirectories[id];
+                sumSymLinks[id] += other.sumSymLinks[id];
+                sumBlocks[id] += other.sumBlocks[id];
+                sumFileSize[id] += other.sumFileSize[id];
+                sumConsumedFileSize[id] += other.sumConsumedFileSize[id];
+                if (null != other.fileSizeBuckets[id]) {
+                    if (null == fileSizeBuckets[id]) {
+                        fileSizeBuckets[id] = new SizeBucket();
+                    }
+                    fileSizeBuckets[id].add(other.fileSizeBuckets[id]);
+                }
+            }
+        }
+
+        boolean isEmpty(int id) {
+            return 0 == sumFiles[id] && 0 == sumDirectories[id] && 0 == sumSymLinks[id];
+        }
+
+        void copyTo(int id, AbstractStats stats) {
+            stats.sumFiles += sumFiles[id];
+            stats.sumDirectories.add(sumDirectories[id]);
+            stats.sumSymLinks.add(sumSymLinks[id]);
+            stats.sumBlocks += sumBlocks[id];
+            stats.sumFileSize += sumFileSize[id];
+            stats.sumConsumedFileSize += sumConsumedFileSize[id];
+            if (null != fileSizeBuckets[id]) {
+                stats.fileSizeBuckets.add(fileSizeBuckets[id]);
+            }
+        }
+    }
+
+    /**
+     * Per worker accumulator, counting by user and group id.
+     */
+    static class IdReport {
+        final IdStats userStats;
+        final IdStats groupStats;
+
+        IdReport(int numUsers, int numGroups) {
+            userStats = new IdStats(numUsers);
+            groupStats = new IdStats(numGroups);
+        }
+
+        void merge(IdReport other) {
+            userStats.add(other.userStats);
+            groupStats.add(other.groupStats);
+        }
+
+        /**
+         * Resolves the user and group names, and sums up the overall stats.
+         *
+         * @param userNames  the user names by id.
+         * @param groupNames the group names by id.
+         * @param dirPath    the report directory.
+         * @return the report.
+         */
+        Report toReport(IntFunction<String> userNames, IntFunction<String> groupNames, String dirPath) {
+            final Report report = new Report(dirPath);
+            for (int id = 0; id < userStats.size(); id++) {
+                if (!userStats.isEmpty(id)) {
+                    final UserStats stats = report.getOrCreateUserStats(nameOrId(userNames.apply(id), id));
+                    userStats.copyTo(id, stats);
+                    // Every inode has exactly one user
+                    report.overallStats.add(stats);
+                }
+            }
+            for (int id = 0; id < groupStats.size(); id++) {
+                if (!groupStats.isEmpty(id)) {
+                    groupStats.copyTo(id, report.getOrCreateGroupStats(nameOrId(groupNames.apply(id), id)));
+                }
+            }
+            return report;
+        }
     }
 
 
@@ -132,8 +289,24 @@ class SummaryReportCommand extends AbstractReportCommand {
                     "(default: ${DEFAULT-VALUE}). ")
     SortOption sort = SortOption.fs;
 
+    @CommandLine.Option(names = {"--scan"},
+            description = "Scans all inodes sequentially for path '/' instead of walking the directory tree, " +
+                    "which is faster. Unlike the tree walk, totals include files and directories " +
+                    "only referenced by snapshots.")
+    boolean scan;
+
+    @CommandLine.Option(names = {"--stream"},
+            description = "Streams the fsimage once instead of loading it, requiring little heap. " +
+                    "Only supports path '/'. Like --scan and unlike the tree walk, totals include files and " +
+                    "directories only referenced by snapshots.")
+    boolean stream;
+
     @Override
     public void run() {
+        if (stream) {
+            runStreaming();
+            return;
+        }
         final FsImageData fsImageData = loadFsImage();
         if (null != fsImageData) {
             for (String dir : mainCommand.dirs) {
@@ -141,22 +314,45 @@ class SummaryReportCommand extends AbstractReportCommand {
                 long start = System.currentTimeMillis();
                 final Report report = computeReport(fsImageData, dir);
                 log.info("Visiting finished [{}ms].", System.currentTimeMillis() - start);
+                print(report);
+            }
+        }
+    }
 
-                switch (mainCommand.outputFormat) {
-                    case json:
-                        GsonBuilder gsonBuilder = createGsonBuilder();
-                        gsonBuilder.registerTypeAdapter(SizeBucket.class, new JsonUtil.SizeBucketTypeAdapter());
-                        mainCommand.out.println(gsonBuilder.create().toJson(report));
-                        break;
-                    case csv:
-                        doCsvSummary(report);
-                        break;
-                    case txt:
-                        doSummary(report);
-                        break;
-                }
+    private void runStreaming() {
+        for (String dir : mainCommand.dirs) {
+            if (!FsImageData.ROOT_PATH.equals(dir)) {
+                mainCommand.err.println("Streaming only supports path " + FsImageData.ROOT_PATH + " but got " + dir);
+                throw new IllegalArgumentException("Streaming only supports path " + FsImageData.ROOT_PATH +
+                        " but got " + dir);
             }
         }
+        log.info("Streaming ...");
+        long start = System.currentTimeMillis();
+        final StreamedFsImage<IdReport> streamed = streamFsImage(createVisitor(0, 0));
+        final Report report = streamed.getResult().toReport(streamed::getUserName, streamed::getGroupName,
+                FsImageData.ROOT_PATH);
+        log.info("Streaming finished [{}ms].", System.currentTimeMillis() - start);
+        // Same report for every (root) path, as when loading
+        for (int i = 0; i < mainCommand.dirs.length; i++) {
+            print(report);
+        }
+    }
+
+    private void print(Report report) {
+        switch (mainCommand.outputFormat) {
+            case json:
+                GsonBuilder gsonBuilder = createGsonBuilder();
+                gsonBuilder.registerTypeAdapter(SizeBucket.class, new JsonUtil.SizeBucketTypeAdapter());
+                mainCommand.out.println(gsonBuilder.create().toJson(report));
+                break;
+            case csv:
+                doCsvSummary(report);
+                break;
+            case txt:
+                doSummary(report);
+                break;
+        }
     }
 
     void doCsvSummary(Report report) {
@@ -293,94 +489,65 @@ class SummaryReportCommand extends AbstractReportCommand {
     }
 
     Report computeReport(FsImageData fsImageData, String dirPath) {
-        final Report report = new Report(dirPath);
-        final OverallStats overallStats = report.overallStats;
+        final INodeViewBatchVisitor<IdReport> visitor = createVisitor(fsImageData.getUserNames().length,
+                fsImageData.getGroupNames().length);
+        try {
+            final IdReport report;
+            if (scan && FsImageData.ROOT_PATH.equals(dirPath)) {
+                // Also counts inodes not reachable from root, e.g. only referenced by snapshots
+                report = createVisitorBuilder().scan(fsImageData, visitor);
+            } else {
+                report = createVisitorBuilder().visitBatched(fsImageData, visitor, dirPath);
+            }
+            return report.toReport(fsImageData::getUserName, fsImageData::getGroupName, dirPath);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        final FsVisitor visitor = new FsVisitor() {
+    /**
+     * Creates a visitor where every worker counts by user and group id, merged and resolved to names after visiting.
+     *
+     * @param numUsers  the initial number of user ids.
+     * @param numGroups the initial number of group ids.
+     * @return the visitor.
+     */
+    private static INodeViewBatchVisitor<IdReport> createVisitor(int numUsers, int numGroups) {
+        return new INodeViewBatchVisitor<>() {
             @Override
-            public void onFile(FsImageProto.INodeSection.INode inode, String path) {
-                FsImageProto.INodeSection.INodeFile f = inode.getFile();
-
-                PermissionStatus p = fsImageData.getPermissionStatus(f.getPermission());
-
-                final long fileSize = FsUtil.getFileSize(f);
-                final long consumedSize = FsUtil.getConsumedFileSize(f);
-                final long fileBlocks = f.getBlocksCount();
-                synchronized (overallStats) {
-                    overallStats.fileSizeBuckets.add(fileSize);
-                    overallStats.sumBlocks += fileBlocks;
-                    overallStats.sumFileSize += fileSize;
-                    overallStats.sumConsumedFileSize += consumedSize;
-                    overallStats.sumFiles++;
-                }
-
-                // Group stats
-                final String groupName = p.getGroupName();
-                final GroupStats groupStat = report.getOrCreateGroupStats(groupName);
-                synchronized (groupStat) {
-                    groupStat.sumFiles++;
-                    groupStat.sumFileSize += fileSize;
-                    groupStat.sumConsumedFileSize += consumedSize;
-                    groupStat.fileSizeBuckets.add(fileSize);
-                    groupStat.sumBlocks += fileBlocks;
-                }
-
-                // User stats
-                final String userName = p.getUserName();
-                final UserStats userStat = report.getOrCreateUserStats(userName);
-                synchronized (userStat) {
-                    userStat.sumFiles++;
-                    userStat.sumFileSize += fileSize;
-                    userStat.sumConsumedFileSize += consumedSize;
-                    userStat.fileSizeBuckets.add(fileSize);
-                    userStat.sumBlocks += fileBlocks;
-                }
+            public IdReport newAccumulator() {
+                return new IdReport(numUsers, numGroups);
             }
 
             @Override
-            public void onDirectory(FsImageProto.INodeSection.INode inode, String path) {
-                FsImageProto.INodeSection.INodeDirectory d = inode.getDirectory();
-                PermissionStatus p = fsImageData.getPermissionStatus(d.getPermission());
-
-                // Group stats
-                final String groupName = p.getGroupName();
-                final GroupStats groupStat = report.getOrCreateGroupStats(groupName);
-                groupStat.sumDirectories.increment();
-
-                // User stats
-                final String userName = p.getUserName();
-                final UserStats userStat = report.getOrCreateUserStats(userName);
-                userStat.sumDirectories.increment();
-
-                overallStats.sumDirectories.increment();
+            public void onBatch(IdReport report, INodeViewBatch batch) {
+                final IdStats userStats = report.userStats;
+                final IdStats groupStats = report.groupStats;
+                for (int i = 0; i < batch.size(); i++) {
+                    final INodeView inode = batch.get(i);
+                    final int userId = inode.getUserId();
+                    final int groupId = inode.getGroupId();
+                    if (inode.isFile()) {
+                        final long fileSize = inode.getFileSize();
+                        final long consumedSize = inode.getConsumedFileSize();
+                        final long fileBlocks = inode.getBlocksCount();
+                        userStats.addFile(userId, fileSize, consumedSize, fileBlocks);
+                        groupStats.addFile(groupId, fileSize, consumedSize, fileBlocks);
+                    } else if (inode.isDirectory()) {
+                        userStats.addDirectory(userId);
+                        groupStats.addDirectory(groupId);
+                    } else {
+                        userStats.addSymLink(userId);
+                        groupStats.addSymLink(groupId);
+                    }
+                }
             }
 
             @Override
-            public void onSymLink(FsImageProto.INodeSection.INode inode, String path) {
-                final FsImageProto.INodeSection.INodeSymlink symlink = inode.getSymlink();
-                PermissionStatus p = fsImageData.getPermissionStatus(symlink.getPermission());
-
-                // Group stats
-                final String groupName = p.getGroupName();
-                final GroupStats groupStat = report.getOrCreateGroupStats(groupName);
-                groupStat.sumSymLinks.increment();
-
-                // User stats
-                final String userName = p.getUserName();
-                final UserStats userStat = report.getOrCreateUserStats(userName);
-                userStat.sumSymLinks.increment();
-
-                overallStats.sumSymLinks.increment();
+            public void merge(IdReport report, IdReport other) {
+                report.merge(other);
             }
         };
-
-        try {
-            new FsVisitor.Builder().parallel().visit(fsImageData, visitor, dirPath);
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
-
-        return report;
     }
 
 }
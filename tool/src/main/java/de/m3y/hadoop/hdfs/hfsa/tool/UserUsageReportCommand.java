@@ -13,12 +13,13 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import de.m3y.hadoop.hdfs.hfsa.core.FsImageData;
-import de.m3y.hadoop.hdfs.hfsa.core.FsVisitor;
-import de.m3y.hadoop.hdfs.hfsa.util.FsUtil;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeView;
+import de.m3y.hadoop.hdfs.hfsa.core.INodeViewAggregator;
+import de.m3y.hadoop.hdfs.hfsa.core.PathBuffer;
+import de.m3y.hadoop.hdfs.hfsa.core.PerThreadAccumulators;
 import de.m3y.hadoop.hdfs.hfsa.util.IECBinary;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.hadoop.fs.permission.PermissionStatus;
-import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
 import picocli.CommandLine;
 
 /**
@@ -38,6 +39,12 @@ public class UserUsageReportCommand extends AbstractReportCommand {
         void increment(String path, long size) {
             pathToSize.computeIfAbsent(path, v -> new LongAdder()).add(size);
         }
+
+        void merge(SizeReport other) {
+            for (Map.Entry<String, LongAdder> entry : other.pathToSize.entrySet()) {
+                increment(entry.getKey(), entry.getValue().longValue());
+            }
+        }
     }
 
     @CommandLine.Option(names = {"-l", "--limit"},
@@ -177,58 +184,55 @@ public class UserUsageReportCommand extends AbstractReportCommand {
     };
 
     private SizeReport computeReport(FsImageData fsImageData, String dir) {
-        SizeReport report = new SizeReport();
+        // Every worker reports its own directories, combined after visiting
+        final PerThreadAccumulators<SizeReport> reports = new PerThreadAccumulators<>(SizeReport::new);
 
         long minAge = System.currentTimeMillis() - ageMs;
+        final long[] total;
         try {
-            FsVisitor visitor = new FsVisitor() {
+            // Accumulates {size, number of files} of the user, per directory subtree
+            INodeViewAggregator<long[]> aggregator = new INodeViewAggregator<>() {
+                @Override
+                public long[] newAccumulator() {
+                    return new long[2];
+                }
+
                 @Override
-                public void onFile(FsImageProto.INodeSection.INode inode, String path) {
-                    FsImageProto.INodeSection.INodeFile f = inode.getFile();
-                    if (f.getModificationTime() < minAge) {
-                        PermissionStatus p = fsImageData.getPermissionStatus(f.getPermission());
+                public void onFile(long[] accumulator, INodeView inode, CharSequence path) {
+                    if (inode.getModificationTime() < minAge) {
+                        PermissionStatus p = resolvePermissionStatus(fsImageData, inode.getPermission());
                         if (user.equalsIgnoreCase(p.getUserName())) {
-                            final long fileSizeBytes = FsUtil.getFileSize(f);
-                            report.increment(path, fileSizeBytes);
+                            accumulator[0] += inode.getFileSize();
+                            accumulator[1]++;
                         }
                     }
                 }
 
                 @Override
-                public void onDirectory(FsImageProto.INodeSection.INode inode, String path) {
-                    // Not needed
+                public void merge(long[] accumulator, long[] child) {
+                    accumulator[0] += child[0];
+                    accumulator[1] += child[1];
                 }
 
                 @Override
-                public void onSymLink(FsImageProto.INodeSection.INode inode, String path) {
-                    // Not needed
+                public void onDirectoryExit(INodeView inode, CharSequence path, long[] accumulator) {
+                    if (accumulator[1] > 0) {
+                        reports.get().increment(PathBuffer.childPath(path, inode), accumulator[0]);
+                    }
                 }
             };
-            new FsVisitor.Builder().parallel().visit(fsImageData, visitor, dir);
+            total = createVisitorBuilder().aggregate(fsImageData, aggregator, dir);
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
-        aggregatePaths(report.pathToSize);
-
-        return report;
-    }
-
-    private void aggregatePaths(Map<String, LongAdder> pathToCounter) {
-        final List<Map.Entry<String, LongAdder>> entries = new ArrayList<>(pathToCounter.entrySet());
-        final Map<String, LongAdder> aggregates = new HashMap<>();
-        for (Map.Entry<String, LongAdder> entry : entries) {
-            String path = entry.getKey();
-            if (FsImageData.ROOT_PATH.equals(path)) {
-                continue;
-            }
-            long smallFilesCount = entry.getValue().longValue();
-            for (int idx = path.lastIndexOf('/'); idx >= 0; idx = path.lastIndexOf('/', idx - 1)) {
-                String parentPath = (0 == idx ? FsImageData.ROOT_PATH : path.substring(0, idx));
-                aggregates.computeIfAbsent(parentPath, v -> new LongAdder()).add(smallFilesCount);
+        final SizeReport report = reports.combine(SizeReport::merge);
+        // Parent directories of start dir contain total
+        if (total[1] > 0 && !FsImageData.ROOT_PATH.equals(dir)) {
+            for (int idx = dir.lastIndexOf('/'); idx >= 0; idx = dir.lastIndexOf('/', idx - 1)) {
+                report.increment(0 == idx ? FsImageData.ROOT_PATH : dir.substring(0, idx), total[0]);
             }
         }
-        for (Map.Entry<String, LongAdder> entry : aggregates.entrySet()) {
-            pathToCounter.computeIfAbsent(entry.getKey(), v -> new LongAdder()).add(entry.getValue().longValue());
-        }
+
+        return report;
     }
 }
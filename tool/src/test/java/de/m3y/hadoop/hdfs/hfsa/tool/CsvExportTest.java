@@ -80,7 +80,7 @@ public class CsvExportTest {
         HdfsFSImageTool.run(new String[]{"-v", "src/test/resources/fsi_small.img", "inode", "-o", "csv", "16385"});
 
         String output = byteArrayOutputStream.toString();
-        assertThat(output).contains("ID,Name,Type");
-        assertThat(output).contains("16385,,DIRECTORY");
+        assertThat(output).contains("ID,Name,Type,Path");
+        assertThat(output).contains("16385,,DIRECTORY,/");
     }
 }
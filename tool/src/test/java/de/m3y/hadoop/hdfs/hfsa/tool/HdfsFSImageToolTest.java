@@ -5,6 +5,7 @@ import java.io.PrintStream;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
+import picocli.CommandLine;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -27,6 +28,21 @@ public class HdfsFSImageToolTest {
                 .matches(pattern);
     }
 
+    @Test
+    public void testInvalidThreads() {
+        for (String threads : new String[]{"0", "-1", "x"}) {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            HdfsFSImageTool.out = new PrintStream(byteArrayOutputStream);
+            HdfsFSImageTool.err = HdfsFSImageTool.out;
+
+            assertThat(HdfsFSImageTool.run(new String[]{"-t", threads, "src/test/resources/fsi_small.img"}))
+                    .isEqualTo(CommandLine.ExitCode.USAGE);
+            assertThat(byteArrayOutputStream.toString())
+                    .startsWith("Invalid value for option '--threads': ")
+                    .contains("Usage: hfsa-tool");
+        }
+    }
+
     @Test
     public void testHelp() {
         final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -38,20 +54,27 @@ public class HdfsFSImageToolTest {
         assertThat(byteArrayOutputStream)
                 .hasToString("""
                         Analyze Hadoop FSImage file for user/group reports
-                        Usage: hfsa-tool [-hVv] [-fun=<userNameFilter>] [-o=<outputFormat>] [-p=<dirs>[,
-                                         <dirs>...]]... FILE [COMMAND]
-                              FILE        FSImage file to process.
+                        Usage: hfsa-tool [-chmVv] [-fun=<userNameFilter>] [-o=<outputFormat>] [-t=<n>]
+                                         [-p=<dirs>[,<dirs>...]]... FILE [COMMAND]
+                              FILE              FSImage file to process.
+                          -c, --inode-columns   Pre-computes per-inode values such as size and
+                                                  permission at load time, speeding up reports at the
+                                                  expense of additional memory.
                               -fun, --filter-by-user=<userNameFilter>
-                                          Filter user name by <regexp>.
-                          -h, --help      Show this help message and exit.
+                                                Filter user name by <regexp>.
+                          -h, --help            Show this help message and exit.
+                          -m, --memory-mapped   Memory-maps the INode section of uncompressed fsimages
+                                                  instead of loading it onto the heap.
                           -o, --output=<outputFormat>
-                                          Enable output format (json, csv or txt). Default is txt.
-                                            Default: txt
+                                                Enable output format (json, csv or txt). Default is txt.
+                                                  Default: txt
                           -p, --path=<dirs>[,<dirs>...]
-                                          Directory path(s) to start traversing (default: [/]).
-                                            Default: [/]
-                          -v              Turns on verbose output. Use `-vv` for debug output.
-                          -V, --version   Print version information and exit.
+                                                Directory path(s) to start traversing (default: [/]).
+                                                  Default: [/]
+                          -t, --threads=<n>     Limits loading and visiting to given number of threads.
+                                                  Default is number of available processors.
+                          -v                    Turns on verbose output. Use `-vv` for debug output.
+                          -V, --version         Print version information and exit.
                         Commands:
                           summary         Generates an HDFS usage summary (default command if no other
                                             command specified)
@@ -25,6 +25,7 @@ public class InodeInfoCommandTest {
             assertThat(byteArrayOutputStream)
                     .hasToString(
                             """
+                                    path: /
                                     type: DIRECTORY
                                     id: 16385
                                     name: ""
@@ -35,6 +36,7 @@ public class InodeInfoCommandTest {
                                       permission: 1099511759341
                                     }
                                     
+                                    path: /test3
                                     type: DIRECTORY
                                     id: 16388
                                     name: "test3"
@@ -45,6 +47,7 @@ public class InodeInfoCommandTest {
                                       permission: 1099511759341
                                     }
                                     
+                                    path: /test3/test_160MiB.img
                                     type: FILE
                                     id: 16402
                                     name: "test_160MiB.img"
@@ -67,6 +70,7 @@ public class InodeInfoCommandTest {
                                       storagePolicyID: 0
                                     }
                                     
+                                    path: /test2
                                     type: DIRECTORY
                                     id: 16387
                                     name: "test2"
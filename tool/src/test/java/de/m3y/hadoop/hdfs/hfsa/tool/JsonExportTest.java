@@ -48,6 +48,7 @@ public class JsonExportTest {
         assertThat(output).contains("\"id\": 16385");
         assertThat(output).contains("\"name\":");
         assertThat(output).contains("\"type\": \"directory\"");
+        assertThat(output).contains("\"path\": \"/\"");
     }
 
     @Test
@@ -2,8 +2,13 @@ package de.m3y.hadoop.hdfs.hfsa.tool;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.RandomAccessFile;
 
+import de.m3y.hadoop.hdfs.hfsa.core.FsImageData;
+import de.m3y.hadoop.hdfs.hfsa.core.FsImageLoader;
+import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -83,4 +88,25 @@ public class PathReportCommandTest {
         }
     }
 
+    @Test
+    public void testResolvePermissionStatusOfUnknownIds() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("src/test/resources/fsi_small.img", "r")) {
+            final FsImageData fsImageData = new FsImageLoader.Builder().build().load(file);
+            final long mm = fsImageData.getINodeView(fsImageData.getINodeFromPath("/").getId()).getPermission();
+            assertThat(AbstractReportCommand.resolvePermissionStatus(fsImageData, mm))
+                    .extracting(PermissionStatus::getUserName, PermissionStatus::getGroupName)
+                    .containsExactly("mm", "supergroup");
+
+            // Ids missing in the string table resolve to null names, reported as ids
+            final int unknownUserId = fsImageData.getUserNames().length;
+            final int unknownGroupId = fsImageData.getGroupNames().length + 1;
+            final long unknown = (long) unknownUserId << 40 | (long) unknownGroupId << 16 | 0644;
+            assertThat(fsImageData.getUserName(unknownUserId)).isNull();
+            assertThat(fsImageData.getGroupName(unknownGroupId)).isNull();
+            final PermissionStatus resolved = AbstractReportCommand.resolvePermissionStatus(fsImageData, unknown);
+            assertThat(resolved.getUserName()).isEqualTo(String.valueOf(unknownUserId));
+            assertThat(resolved.getGroupName()).isEqualTo(String.valueOf(unknownGroupId));
+            assertThat(resolved.getPermission().toShort()).isEqualTo((short) 0644);
+        }
+    }
 }
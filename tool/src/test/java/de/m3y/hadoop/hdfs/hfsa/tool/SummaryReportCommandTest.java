@@ -2,10 +2,17 @@ package de.m3y.hadoop.hdfs.hfsa.tool;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.List;
 
+import de.m3y.hadoop.hdfs.hfsa.core.FsImageData;
+import de.m3y.hadoop.hdfs.hfsa.core.FsImageLoader;
+import de.m3y.hadoop.hdfs.hfsa.core.FsVisitor;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
 import org.junit.Test;
 
 import static de.m3y.hadoop.hdfs.hfsa.tool.SummaryReportCommand.UserStats;
@@ -54,6 +61,105 @@ public class SummaryReportCommandTest {
         }
     }
 
+    @Test
+    public void testRunWithINodeColumns() {
+        assertThat(runSummary(true, null)).isEqualTo(runSummary(false, null));
+    }
+
+    @Test
+    public void testRunWithThreads() {
+        assertThat(runSummary(false, 1)).isEqualTo(runSummary(false, null));
+        assertThat(runSummary(true, 2)).isEqualTo(runSummary(false, null));
+    }
+
+    @Test
+    public void testRootWithSnapshots() throws IOException {
+        final File fsImageFile = new File("src/test/resources/fsi_snapshot.img");
+        final FsImageData fsImageData;
+        try (RandomAccessFile file = new RandomAccessFile(fsImageFile, "r")) {
+            fsImageData = new FsImageLoader.Builder().build().load(file);
+        }
+        // Tree walk only reaches current inodes, not the ones deleted but kept by snapshot s1
+        final long[] expected = new long[3]; // files, directories, size
+        new FsVisitor.Builder().visit(fsImageData, new FsVisitor() {
+            @Override
+            public void onFile(FsImageProto.INodeSection.INode inode, String path) {
+                expected[0]++;
+                for (HdfsProtos.BlockProto block : inode.getFile().getBlocksList()) {
+                    expected[2] += block.getNumBytes();
+                }
+            }
+
+            @Override
+            public void onDirectory(FsImageProto.INodeSection.INode inode, String path) {
+                expected[1]++;
+            }
+
+            @Override
+            public void onSymLink(FsImageProto.INodeSection.INode inode, String path) {
+                // None
+            }
+        });
+        assertThat(expected[0]).isEqualTo(3);
+
+        SummaryReportCommand summaryReportCommand = new SummaryReportCommand();
+        summaryReportCommand.mainCommand = new HdfsFSImageTool.MainCommand();
+        summaryReportCommand.mainCommand.fsImageFile = fsImageFile;
+        SummaryReportCommand.OverallStats stats = summaryReportCommand.computeReport(fsImageData, "/").overallStats;
+        assertThat(stats.sumFiles).isEqualTo(expected[0]);
+        assertThat(stats.sumDirectories.longValue()).isEqualTo(expected[1]);
+        assertThat(stats.sumFileSize).isEqualTo(expected[2]);
+
+        // Scanning also counts the deleted file and directory with its file, only referenced by the snapshot
+        summaryReportCommand.scan = true;
+        stats = summaryReportCommand.computeReport(fsImageData, "/").overallStats;
+        assertThat(stats.sumFiles).isEqualTo(expected[0] + 2);
+        assertThat(stats.sumDirectories.longValue()).isEqualTo(expected[1] + 1);
+
+        // Streaming counts like scanning
+        summaryReportCommand.stream = true;
+        final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (PrintStream printStream = new PrintStream(streamed)) {
+            summaryReportCommand.mainCommand.out = printStream;
+            summaryReportCommand.mainCommand.err = printStream;
+            summaryReportCommand.run();
+        }
+        final ByteArrayOutputStream scanned = new ByteArrayOutputStream();
+        summaryReportCommand.stream = false;
+        try (PrintStream printStream = new PrintStream(scanned)) {
+            summaryReportCommand.mainCommand.out = printStream;
+            summaryReportCommand.mainCommand.err = printStream;
+            summaryReportCommand.run();
+        }
+        assertThat(streamed).hasToString(scanned.toString());
+    }
+
+    @Test
+    public void testRunStreaming() {
+        assertThat(runSummary(false, null, true)).isEqualTo(runSummary(false, null));
+        assertThat(runSummary(false, 2, true)).isEqualTo(runSummary(false, null));
+    }
+
+    private static String runSummary(boolean inodeColumns, Integer threads) {
+        return runSummary(inodeColumns, threads, false);
+    }
+
+    private static String runSummary(boolean inodeColumns, Integer threads, boolean stream) {
+        SummaryReportCommand summaryReportCommand = new SummaryReportCommand();
+        summaryReportCommand.stream = stream;
+        summaryReportCommand.mainCommand = new HdfsFSImageTool.MainCommand();
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (PrintStream printStream = new PrintStream(byteArrayOutputStream)) {
+            summaryReportCommand.mainCommand.out = printStream;
+            summaryReportCommand.mainCommand.err = summaryReportCommand.mainCommand.out;
+            summaryReportCommand.mainCommand.fsImageFile = new File("src/test/resources/fsi_small.img");
+            summaryReportCommand.mainCommand.inodeColumns = inodeColumns;
+            summaryReportCommand.mainCommand.threads = threads;
+            summaryReportCommand.run();
+        }
+        return byteArrayOutputStream.toString();
+    }
+
     @Test
     public void testRunWithFilterForUserFoo() {
         SummaryReportCommand summaryReportCommand = new SummaryReportCommand();